@@ -0,0 +1,80 @@
+package com.example.demo.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * /analyze 单请求各阶段基准：吞吐量 + 分配率（默认带 -prof gc）
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AnalysisPipelineBenchmark {
+
+	private static final String OPTIONS = "{\"generateActionList\":true,\"depth\":\"FAST\",\"sanitize\":true}";
+
+	private static final String TRIED = "检查了 application.properties 配置，重启了服务，也看了完整的异常堆栈和日志，确认依赖版本没有问题";
+
+	@Param({ "NPE", "BEAN", "SQL", "PORT" })
+	private String kind;
+
+	@Param({ "1024", "4096", "8000" })
+	private int size;
+
+	private final LogAnalysisService service = new LogAnalysisService();
+
+	private final FakeAiClient aiClient = new FakeAiClient();
+
+	private final LogClassifier classifier = new LogClassifier();
+
+	private final LogFingerprinter fingerprinter = new LogFingerprinter();
+
+	private String rawLog;
+
+	private String sanitizedLog;
+
+	@Setup
+	public void setUp() {
+		rawLog = LogSamples.of(kind, size);
+		sanitizedLog = service.sanitizeLog(rawLog);
+	}
+
+	@Benchmark
+	public String sanitizeLog() {
+		return service.sanitizeLog(rawLog);
+	}
+
+	@Benchmark
+	public String calculateLogHash() {
+		return service.calculateLogHash(sanitizedLog, "SPRING", OPTIONS);
+	}
+
+	@Benchmark
+	public String fingerprint() {
+		return fingerprinter.fingerprint(sanitizedLog);
+	}
+
+	@Benchmark
+	public LogProfile classify() {
+		return classifier.classify(sanitizedLog);
+	}
+
+	@Benchmark
+	public String generateTitle() {
+		return service.generateTitle(rawLog, "SPRING");
+	}
+
+	@Benchmark
+	public String deriveErrorCategory() {
+		return service.deriveErrorCategory(sanitizedLog);
+	}
+
+	@Benchmark
+	public AiClient.AnalysisResult fakeAiAnalyzeLog() {
+		return aiClient.analyzeLog(sanitizedLog, "SPRING", true, "DEEP", TRIED);
+	}
+}
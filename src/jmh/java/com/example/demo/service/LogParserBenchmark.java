@@ -0,0 +1,54 @@
+package com.example.demo.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 日志解析基准：切分事件与异常链的吞吐，以及按根因分类 vs 扫描全文分类
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LogParserBenchmark {
+
+	@Param({ "NPE", "BEAN", "SQL", "PORT" })
+	private String kind;
+
+	@Param({ "1024", "8000", "65536" })
+	private int size;
+
+	private final LogParser parser = new LogParser();
+
+	private final LogClassifier classifier = new LogClassifier();
+
+	private String log;
+
+	@Setup
+	public void setUp() {
+		log = LogSamples.of(kind, size);
+	}
+
+	@Benchmark
+	public LogParser.ParsedLog parse() {
+		return parser.parse(log);
+	}
+
+	@Benchmark
+	public LogParser.ExceptionInfo rootCause() {
+		return parser.parse(log).rootCause();
+	}
+
+	@Benchmark
+	public LogProfile classifyRootCause() {
+		return parser.classify(log);
+	}
+
+	@Benchmark
+	public LogProfile classifyFullText() {
+		return classifier.classify(log);
+	}
+}
@@ -0,0 +1,84 @@
+package com.example.demo.service;
+
+/**
+ * 基准用的真实风格日志样本（NPE / BeanCreationException / SQL / 端口冲突），可按目标长度填充
+ */
+final class LogSamples {
+
+	static final String NPE = """
+			2026-01-12 10:15:32.118 ERROR 23817 --- [nio-8080-exec-3] o.a.c.c.C.[.[.[/].[dispatcherServlet]    : Servlet.service() for servlet [dispatcherServlet] in context with path [] threw exception [Request processing failed: java.lang.NullPointerException: Cannot invoke "com.example.shop.model.Customer.getAddress()" because "customer" is null] with root cause
+
+			java.lang.NullPointerException: Cannot invoke "com.example.shop.model.Customer.getAddress()" because "customer" is null
+				at com.example.shop.service.OrderService.createOrder(OrderService.java:87)
+				at com.example.shop.controller.OrderController.submit(OrderController.java:54)
+				at java.base/jdk.internal.reflect.DirectMethodHandleAccessor.invoke(DirectMethodHandleAccessor.java:103)
+				at org.springframework.web.method.support.InvocableHandlerMethod.doInvoke(InvocableHandlerMethod.java:255)
+				at org.springframework.web.servlet.DispatcherServlet.doDispatch(DispatcherServlet.java:1089)
+			""";
+
+	static final String BEAN = """
+			2026-01-12 09:02:11.532  WARN 4410 --- [           main] ConfigServletWebServerApplicationContext : Exception encountered during context initialization - cancelling refresh attempt: org.springframework.beans.factory.BeanCreationException: Error creating bean with name 'orderController': Unsatisfied dependency expressed through field 'paymentClient'
+			org.springframework.beans.factory.BeanCreationException: Error creating bean with name 'orderController' defined in file [/app/classes/com/example/shop/controller/OrderController.class]
+				at org.springframework.beans.factory.support.AbstractAutowireCapableBeanFactory.doCreateBean(AbstractAutowireCapableBeanFactory.java:606)
+				at org.springframework.beans.factory.support.AbstractBeanFactory.getBean(AbstractBeanFactory.java:208)
+			Caused by: org.springframework.beans.factory.NoSuchBeanDefinitionException: No qualifying bean of type 'com.example.shop.client.PaymentClient' available: expected at least 1 bean which qualifies as autowire candidate.
+				at org.springframework.beans.factory.support.DefaultListableBeanFactory.raiseNoMatchingBeanFound(DefaultListableBeanFactory.java:1880)
+				... 21 common frames omitted
+			""";
+
+	static final String SQL = """
+			2026-01-12 11:40:03.004 ERROR 9981 --- [nio-8080-exec-7] o.h.engine.jdbc.spi.SqlExceptionHelper   : Table "ORDERS" not found; SQL statement: select o1_0.id from orders o1_0 where o1_0.customer_id=? [42102-224]
+			org.springframework.dao.InvalidDataAccessResourceUsageException: could not prepare statement [Table "ORDERS" not found]
+				at org.springframework.orm.jpa.vendor.HibernateJpaDialect.convertHibernateAccessException(HibernateJpaDialect.java:277)
+			Caused by: java.sql.SQLSyntaxErrorException: Table "ORDERS" not found; SQL statement: select o1_0.id from orders o1_0 where o1_0.customer_id=?
+				at org.h2.message.DbException.getJdbcSQLException(DbException.java:514)
+				at com.zaxxer.hikari.pool.ProxyPreparedStatement.executeQuery(ProxyPreparedStatement.java:52)
+			datasource url=jdbc:mysql://10.20.3.14:3306/shop user=shop_rw@example.com password=Sh0pSecret!
+			""";
+
+	static final String PORT = """
+			2026-01-12 08:00:00.912 ERROR 1 --- [           main] o.s.b.d.LoggingFailureAnalysisReporter   :
+
+			***************************
+			APPLICATION FAILED TO START
+			***************************
+
+			Description:
+
+			Web server failed to start. Port 8080 was already in use.
+
+			Action:
+
+			Identify and stop the process that's listening on port 8080 or configure this application to listen on another port.
+			java.net.BindException: Address already in use
+				at java.base/sun.nio.ch.Net.bind0(Native Method)
+				at org.apache.tomcat.util.net.NioEndpoint.initServerSocket(NioEndpoint.java:239)
+			""";
+
+	private static final String FILLER = "2026-01-12 10:15:31.877  INFO 23817 --- [nio-8080-exec-3] c.e.shop.filter.AuditFilter : request from 192.168.10.24 ops=alice@example.com pwd=tok3n latency=12ms\n";
+
+	private LogSamples() {
+	}
+
+	static String of(String kind) {
+		return switch (kind) {
+			case "NPE" -> NPE;
+			case "BEAN" -> BEAN;
+			case "SQL" -> SQL;
+			case "PORT" -> PORT;
+			default -> throw new IllegalArgumentException(kind);
+		};
+	}
+
+	/**
+	 * 以普通业务日志行在前面填充到目标长度，异常段落保留在末尾
+	 */
+	static String of(String kind, int size) {
+		String body = of(kind);
+		StringBuilder sb = new StringBuilder(Math.max(size, body.length()));
+		while (sb.length() + FILLER.length() + body.length() <= size) {
+			sb.append(FILLER);
+		}
+		return sb.append(body).toString();
+	}
+}
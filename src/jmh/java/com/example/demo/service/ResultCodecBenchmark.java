@@ -0,0 +1,69 @@
+package com.example.demo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 查看报告时的结果解码：旧的三列 JSON（readValue(json, List.class)）对比 result_cbor 一次解码
+ * <p>
+ * Setup 时打印两种存储的字节数。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResultCodecBenchmark {
+
+	@Param({ "NPE", "BEAN", "SQL" })
+	private String kind;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private final AnalysisResultCodec codec = new AnalysisResultCodec();
+
+	private String topCausesJson;
+
+	private String verificationStepsJson;
+
+	private String suggestedFixesJson;
+
+	private byte[] resultCbor;
+
+	@Setup
+	public void setUp() throws Exception {
+		AiClient.AnalysisResult result = new FakeAiClient()
+				.analyzeLog(LogSamples.of(kind, 4096), "SPRING", true, "DEEP", null);
+		topCausesJson = objectMapper.writeValueAsString(result.getTopCauses());
+		verificationStepsJson = objectMapper.writeValueAsString(result.getVerificationSteps());
+		suggestedFixesJson = objectMapper.writeValueAsString(result.getSuggestedFixes());
+		resultCbor = codec.encode(result.getTopCauses(), result.getVerificationSteps(), result.getSuggestedFixes());
+
+		int jsonBytes = (topCausesJson + verificationStepsJson + suggestedFixesJson)
+				.getBytes(StandardCharsets.UTF_8).length;
+		System.out.println("\n[" + kind + "] stored bytes: json=" + jsonBytes + ", cbor=" + resultCbor.length);
+	}
+
+	@Benchmark
+	public Object decodeLegacyJsonMaps() throws Exception {
+		return new Object[] {
+				objectMapper.readValue(topCausesJson, List.class),
+				objectMapper.readValue(verificationStepsJson, List.class),
+				objectMapper.readValue(suggestedFixesJson, List.class) };
+	}
+
+	@Benchmark
+	public AnalysisResultCodec.Payload decodeLegacyJsonTyped() {
+		return codec.decode(null, topCausesJson, verificationStepsJson, suggestedFixesJson);
+	}
+
+	@Benchmark
+	public AnalysisResultCodec.Payload decodeCbor() {
+		return codec.decode(resultCbor, null, null, null);
+	}
+}
@@ -0,0 +1,57 @@
+package com.example.demo.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 脱敏基准：原四次 replaceAll 链 vs 单次扫描的 LogRedactor
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SanitizeLogBenchmark {
+
+	private static final String[] LINES = {
+			"2026-01-12 10:15:32.118 ERROR 12345 --- [nio-8080-exec-3] o.a.c.c.C.[.[.[/].[dispatcherServlet] : Servlet.service() threw exception\n",
+			"java.lang.NullPointerException: Cannot invoke \"com.example.demo.model.User.getId()\" because \"user\" is null\n",
+			"\tat com.example.demo.controller.LogAnalysisController.analyze(LogAnalysisController.java:72)\n",
+			"2026-01-12 10:15:33.002  WARN 12345 --- [main] c.z.h.HikariConfig : url=jdbc:mysql://10.12.0.8:3306/app user=admin password=s3cr3t!\n",
+			"2026-01-12 10:15:33.417  INFO 12345 --- [main] c.e.d.s.MailService : notify ops-team@example.com from 192.168.1.20 pwd = hunter2\n",
+			"\tat org.springframework.beans.factory.support.AbstractBeanFactory.getBean(AbstractBeanFactory.java:208)\n",
+	};
+
+	@Param({ "1024", "8192", "1048576" })
+	private int size;
+
+	private String log;
+
+	private final LogRedactor redactor = new LogRedactor();
+
+	@Setup
+	public void setUp() {
+		StringBuilder sb = new StringBuilder(size + 256);
+		for (int i = 0; sb.length() < size; i++) {
+			sb.append(LINES[i % LINES.length]);
+		}
+		sb.setLength(size);
+		log = sb.toString();
+	}
+
+	@Benchmark
+	public String chainedReplaceAll() {
+		return log
+				.replaceAll("\\b\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}\\b", "[IP]")
+				.replaceAll("\\b[A-Za-z0-9._%+-]+@[A-Za-z0-9.-]+\\.[A-Z|a-z]{2,}\\b", "[EMAIL]")
+				.replaceAll("password\\s*=\\s*[^\\s]+", "password=[HIDDEN]")
+				.replaceAll("pwd\\s*=\\s*[^\\s]+", "pwd=[HIDDEN]");
+	}
+
+	@Benchmark
+	public String singlePassRedactor() {
+		return redactor.redact(log);
+	}
+}
@@ -0,0 +1,65 @@
+package com.example.demo.service;
+
+import com.example.demo.model.SuggestedFix;
+import com.example.demo.model.VerificationStep;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * tried 过滤基准：逐条比较（每个候选都扫描一遍 tried） vs 规则索引（tried 切分一次后查表），tried 从一句话到长段落
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TriedFilterBenchmark {
+
+	/** 不与任何候选相似的描述，保证逐条比较走完全部片段 */
+	private static final String FILLER = "前端页面偶尔白屏，刷新后恢复正常，时间点与发布窗口不一致，运维那边暂时没有发现异样。";
+
+	@Param({ "NPE", "BEAN", "SQL", "PORT" })
+	private String kind;
+
+	@Param({ "80", "1000", "8000" })
+	private int triedLength;
+
+	private RuleSet.Rule rule;
+
+	private String tried;
+
+	@Setup
+	public void setUp() {
+		rule = new RuleKnowledgeBase().current().match(new LogClassifier().classify(LogSamples.of(kind, 1024)));
+		StringBuilder sb = new StringBuilder(triedLength + FILLER.length());
+		while (sb.length() < triedLength) {
+			sb.append(FILLER);
+		}
+		tried = sb.substring(0, triedLength);
+	}
+
+	@Benchmark
+	public void pairwise(Blackhole bh) {
+		String triedLower = tried.toLowerCase();
+		for (VerificationStep step : rule.getSteps()) {
+			bh.consume((step.step() != null && TriedIndex.similar(step.step().toLowerCase(), triedLower))
+					|| (step.command() != null && TriedIndex.similar(step.command().toLowerCase(), triedLower)));
+		}
+		for (SuggestedFix fix : rule.fixes("DEEP")) {
+			bh.consume(fix.fix() != null && TriedIndex.similar(fix.fix().toLowerCase(), triedLower));
+		}
+	}
+
+	@Benchmark
+	public void indexed(Blackhole bh) {
+		TriedIndex index = rule.getTriedIndex();
+		long triedBits = index.match(tried);
+		List<VerificationStep> steps = index.filter(rule.getSteps(), triedBits);
+		bh.consume(steps);
+		bh.consume(index.filter(rule.fixes("DEEP"), triedBits));
+	}
+}
@@ -0,0 +1,359 @@
+package com.example.demo.loadtest;
+
+import com.example.demo.service.HistorySearchIndex;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 端到端压测：在预置的大数据集上，用已登录的并发虚拟用户请求 /analyze、/history?q=、/report/{id}，
+ * 输出各接口的 p50 / p95 / p99 与吞吐量（同时写入 target/loadtest/report.json），超出延迟预算或错误率时失败。
+ * <p>
+ * 只在 loadtest profile 中运行（./mvnw -Ploadtest test），参数都是系统属性：
+ * <ul>
+ * <li>数据集：loadtest.users（默认 10000）、loadtest.analyses（默认 1000000），见 {@link LoadDataSeeder}</li>
+ * <li>负载：loadtest.concurrency（虚拟用户数，默认 32）、loadtest.warmup-seconds（默认 15）、
+ * loadtest.duration-seconds（默认 60）、loadtest.distinct-logs（/analyze 提交的不同日志数，默认 200）</li>
+ * <li>请求比例：loadtest.mix.analyze / history / report（默认 2 / 4 / 4）</li>
+ * <li>预算：loadtest.budget.&lt;接口&gt;.p95-ms、.p99-ms，loadtest.budget.error-rate（默认 0.01）；
+ * loadtest.enforce=false 时只报告不失败</li>
+ * </ul>
+ * 每个虚拟用户以不同的种子生成请求序列，相同参数下的请求顺序可以复现。
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"spring.datasource.url=jdbc:h2:mem:logsage-load;DB_CLOSE_DELAY=-1",
+		"spring.jpa.show-sql=false",
+		"spring.h2.console.enabled=false",
+		"logsage.ai.provider=fake",
+		"logsage.daily.limit=1000000000" })
+@Import(LoadDataSeeder.class)
+@Tag("loadtest")
+class AnalysisLoadTest {
+
+	private static final Pattern CSRF = Pattern.compile("name=\"_csrf\" value=\"([^\"]+)\"");
+
+	private static final Pattern SESSION = Pattern.compile("JSESSIONID=([^;]+)");
+
+	/** /history?q= 的搜索词：标题中的模块名、异常名，以及日志片段中的词 */
+	private static final String[] QUERIES = { "Order", "Payment", "Inventory", "Shipping", "NullPointerException",
+			"BeanCreationException", "SQLSyntaxErrorException", "BindException", "placeholder", "timeout",
+			"record", "Controller" };
+
+	enum Endpoint {
+		ANALYZE("analyze", 2, 500, 1000),
+		HISTORY("history", 4, 300, 600),
+		REPORT("report", 4, 200, 400);
+
+		final String key;
+		final int weight;
+		final long p95BudgetMs;
+		final long p99BudgetMs;
+
+		Endpoint(String key, int weight, long p95BudgetMs, long p99BudgetMs) {
+			this.key = key;
+			this.weight = Integer.getInteger("loadtest.mix." + key, weight);
+			this.p95BudgetMs = Long.getLong("loadtest.budget." + key + ".p95-ms", p95BudgetMs);
+			this.p99BudgetMs = Long.getLong("loadtest.budget." + key + ".p99-ms", p99BudgetMs);
+		}
+	}
+
+	@Value("${local.server.port}")
+	private int port;
+
+	@Autowired
+	private HistorySearchIndex historySearchIndex;
+
+	@Test
+	void latencyWithinBudgets() throws Exception {
+		int concurrency = Integer.getInteger("loadtest.concurrency", 32);
+		int warmupSeconds = Integer.getInteger("loadtest.warmup-seconds", 15);
+		int durationSeconds = Integer.getInteger("loadtest.duration-seconds", 60);
+		double errorRateBudget = Double.parseDouble(System.getProperty("loadtest.budget.error-rate", "0.01"));
+		boolean enforce = Boolean.parseBoolean(System.getProperty("loadtest.enforce", "true"));
+
+		awaitHistoryIndex();
+
+		// 登录不计入延迟
+		List<VirtualUser> virtualUsers = new ArrayList<>(concurrency);
+		int users = LoadDataSeeder.users();
+		for (int i = 0; i < concurrency; i++) {
+			VirtualUser vu = new VirtualUser((int) ((long) i * users / concurrency), i);
+			vu.login();
+			virtualUsers.add(vu);
+		}
+
+		long measureStart = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds);
+		long end = measureStart + TimeUnit.SECONDS.toNanos(durationSeconds);
+		ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+		Map<Endpoint, LatencySamples> merged = new EnumMap<>(Endpoint.class);
+		try {
+			List<Future<Map<Endpoint, LatencySamples>>> futures = new ArrayList<>();
+			for (VirtualUser vu : virtualUsers) {
+				futures.add(pool.submit(() -> vu.run(measureStart, end)));
+			}
+			for (Future<Map<Endpoint, LatencySamples>> future : futures) {
+				future.get().forEach((endpoint, samples) ->
+						merged.computeIfAbsent(endpoint, e -> new LatencySamples()).addAll(samples));
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+
+		List<LatencySamples.Summary> summaries = new ArrayList<>();
+		List<String> violations = new ArrayList<>();
+		for (Endpoint endpoint : Endpoint.values()) {
+			LatencySamples samples = merged.getOrDefault(endpoint, new LatencySamples());
+			LatencySamples.Summary summary = samples.summarize(endpoint.key, durationSeconds);
+			summaries.add(summary);
+			if (endpoint.weight > 0) {
+				check(violations, summary, endpoint, errorRateBudget);
+			}
+		}
+		report(summaries, concurrency, durationSeconds, violations);
+
+		if (enforce) {
+			assertTrue(violations.isEmpty(), "超出压测预算：\n" + String.join("\n", violations));
+		}
+	}
+
+	/** 历史搜索在索引重建完成前会回退到数据库查询，等重建完成再开始 */
+	private void awaitHistoryIndex() throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(10);
+		while (!historySearchIndex.isReady()) {
+			if (System.nanoTime() > deadline) {
+				throw new IllegalStateException("历史搜索索引 10 分钟内未重建完成");
+			}
+			Thread.sleep(200);
+		}
+	}
+
+	private static void check(List<String> violations, LatencySamples.Summary summary, Endpoint endpoint,
+			double errorRateBudget) {
+		if (summary.requests() == 0) {
+			violations.add(endpoint.key + "：计量期间没有完成的请求");
+			return;
+		}
+		if (summary.p95Ms() > endpoint.p95BudgetMs) {
+			violations.add(String.format("%s p95 %.1f ms > %d ms", endpoint.key, summary.p95Ms(), endpoint.p95BudgetMs));
+		}
+		if (summary.p99Ms() > endpoint.p99BudgetMs) {
+			violations.add(String.format("%s p99 %.1f ms > %d ms", endpoint.key, summary.p99Ms(), endpoint.p99BudgetMs));
+		}
+		if (summary.errorRate() > errorRateBudget) {
+			violations.add(String.format("%s 错误率 %.2f%% > %.2f%%", endpoint.key, summary.errorRate() * 100,
+					errorRateBudget * 100));
+		}
+	}
+
+	private static void report(List<LatencySamples.Summary> summaries, int concurrency, int durationSeconds,
+			List<String> violations) throws IOException {
+		StringBuilder table = new StringBuilder()
+				.append(String.format("%n压测结果（%d 个用户，%d 条记录，%d 个并发虚拟用户，计量 %d 秒）%n",
+						LoadDataSeeder.users(), LoadDataSeeder.analyses(), concurrency, durationSeconds))
+				.append(LatencySamples.Summary.header()).append('\n');
+		for (LatencySamples.Summary summary : summaries) {
+			table.append(summary).append('\n');
+		}
+		System.out.println(table);
+
+		Map<String, Object> json = new LinkedHashMap<>();
+		json.put("users", LoadDataSeeder.users());
+		json.put("analyses", LoadDataSeeder.analyses());
+		json.put("concurrency", concurrency);
+		json.put("durationSeconds", durationSeconds);
+		json.put("endpoints", summaries);
+		json.put("violations", violations);
+		Path file = Path.of("target", "loadtest", "report.json");
+		Files.createDirectories(file.getParent());
+		new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file.toFile(), json);
+	}
+
+	/**
+	 * 一个已登录的虚拟用户：单线程依次发出请求，自己记录样本
+	 */
+	private final class VirtualUser {
+		private final int user;
+		private final Random random;
+		private final HttpClient client = HttpClient.newBuilder()
+				.connectTimeout(Duration.ofSeconds(5))
+				.followRedirects(HttpClient.Redirect.NEVER)
+				.build();
+		private final Map<Endpoint, LatencySamples> samples = new EnumMap<>(Endpoint.class);
+		private final Endpoint[] mix;
+		private String session;
+		private String csrf;
+
+		VirtualUser(int user, long seed) {
+			this.user = user;
+			this.random = new Random(seed);
+			List<Endpoint> weighted = new ArrayList<>();
+			for (Endpoint endpoint : Endpoint.values()) {
+				for (int i = 0; i < endpoint.weight; i++) {
+					weighted.add(endpoint);
+				}
+			}
+			this.mix = weighted.toArray(new Endpoint[0]);
+			for (Endpoint endpoint : Endpoint.values()) {
+				samples.put(endpoint, new LatencySamples());
+			}
+		}
+
+		/**
+		 * 表单登录（带 CSRF），之后从分析页取本会话的 CSRF 令牌供 POST /analyze 使用
+		 */
+		void login() throws IOException, InterruptedException {
+			String loginToken = csrf(send(get("/login")).body());
+			HttpResponse<String> login = send(post("/login", form(
+					"username", LoadDataSeeder.email(user),
+					"password", LoadDataSeeder.PASSWORD,
+					"_csrf", loginToken)));
+			String location = login.headers().firstValue("Location").orElse("");
+			if (login.statusCode() != 302 || location.contains("error")) {
+				throw new IllegalStateException("登录失败：" + LoadDataSeeder.email(user) + " -> " + location);
+			}
+			csrf = csrf(send(get("/analyze")).body());
+		}
+
+		Map<Endpoint, LatencySamples> run(long measureStart, long end) throws InterruptedException {
+			while (true) {
+				Endpoint endpoint = mix[random.nextInt(mix.length)];
+				HttpRequest request = request(endpoint);
+				long start = System.nanoTime();
+				if (start >= end) {
+					return samples;
+				}
+				boolean ok;
+				try {
+					HttpResponse<String> response = send(request);
+					ok = response.statusCode() == 200
+							&& !(endpoint == Endpoint.ANALYZE && response.body().contains("alert-error"));
+				} catch (IOException e) {
+					ok = false;
+				}
+				long elapsed = System.nanoTime() - start;
+				if (start >= measureStart) {
+					if (ok) {
+						samples.get(endpoint).record(elapsed);
+					} else {
+						samples.get(endpoint).error();
+					}
+				}
+			}
+		}
+
+		private HttpRequest request(Endpoint endpoint) {
+			switch (endpoint) {
+				case ANALYZE:
+					return post("/analyze", form(
+							"rawLog", sampleLog(random.nextInt(Integer.getInteger("loadtest.distinct-logs", 200))),
+							"logType", "JAVA",
+							"sanitize", "true",
+							"generateActionList", "true",
+							"depth", "FAST",
+							"_csrf", csrf));
+				case HISTORY:
+					return get("/history?q=" + URLEncoder.encode(QUERIES[random.nextInt(QUERIES.length)],
+							StandardCharsets.UTF_8));
+				default:
+					int own = LoadDataSeeder.analysesOf(user);
+					return own > 0
+							? get("/report/" + LoadDataSeeder.analysisId(user, random.nextInt(own)))
+							: get("/history");
+			}
+		}
+
+		private HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+			HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+			// 登录后会话 ID 会更换
+			for (String cookie : response.headers().allValues("Set-Cookie")) {
+				Matcher matcher = SESSION.matcher(cookie);
+				if (matcher.find()) {
+					session = matcher.group(1);
+				}
+			}
+			return response;
+		}
+
+		private HttpRequest get(String path) {
+			return builder(path).GET().build();
+		}
+
+		private HttpRequest post(String path, String form) {
+			return builder(path)
+					.header("Content-Type", "application/x-www-form-urlencoded")
+					.POST(HttpRequest.BodyPublishers.ofString(form))
+					.build();
+		}
+
+		private HttpRequest.Builder builder(String path) {
+			HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + path))
+					.timeout(Duration.ofSeconds(30));
+			if (session != null) {
+				builder.header("Cookie", "JSESSIONID=" + session);
+			}
+			return builder;
+		}
+	}
+
+	private static String csrf(String html) {
+		Matcher matcher = CSRF.matcher(html);
+		if (!matcher.find()) {
+			throw new IllegalStateException("页面中没有 CSRF 令牌");
+		}
+		return matcher.group(1);
+	}
+
+	private static String form(String... pairs) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < pairs.length; i += 2) {
+			if (sb.length() > 0) {
+				sb.append('&');
+			}
+			sb.append(URLEncoder.encode(pairs[i], StandardCharsets.UTF_8))
+					.append('=')
+					.append(URLEncoder.encode(pairs[i + 1], StandardCharsets.UTF_8));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * 第 n 种提交的日志：栈帧中的类名不同，指纹（缓存键）也不同
+	 */
+	private static String sampleLog(int n) {
+		return "2026-01-01 10:00:00.000 ERROR 1 --- [nio-8080-exec-" + (n % 10) + "] c.e.load.Controller"
+				+ " : Request failed\n"
+				+ "java.lang.NullPointerException: Cannot invoke \"Object.toString()\" because \"value\" is null\n"
+				+ "\tat com.example.load.Service" + n + ".process(Service" + n + ".java:" + (20 + n % 50) + ")\n"
+				+ "\tat com.example.load.Controller.handle(Controller.java:31)\n";
+	}
+}
@@ -0,0 +1,73 @@
+package com.example.demo.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * 一个接口的延迟样本（每个虚拟用户各记一份，结束后合并，记录时无需同步）
+ */
+final class LatencySamples {
+
+	private long[] nanos = new long[4096];
+
+	private int size;
+
+	private int errors;
+
+	void record(long elapsedNanos) {
+		if (size == nanos.length) {
+			nanos = Arrays.copyOf(nanos, size * 2);
+		}
+		nanos[size++] = elapsedNanos;
+	}
+
+	void error() {
+		errors++;
+	}
+
+	void addAll(LatencySamples other) {
+		if (size + other.size > nanos.length) {
+			nanos = Arrays.copyOf(nanos, Math.max(size + other.size, size * 2));
+		}
+		System.arraycopy(other.nanos, 0, nanos, size, other.size);
+		size += other.size;
+		errors += other.errors;
+	}
+
+	/**
+	 * 汇总：成功请求的分位数（nearest-rank）与吞吐量，错误率按全部请求计算
+	 *
+	 * @param seconds 计量时长
+	 */
+	Summary summarize(String endpoint, double seconds) {
+		long[] sorted = Arrays.copyOf(nanos, size);
+		Arrays.sort(sorted);
+		int total = size + errors;
+		return new Summary(endpoint, total, errors, total / seconds,
+				millis(sorted, 50), millis(sorted, 95), millis(sorted, 99),
+				size > 0 ? sorted[size - 1] / 1e6 : 0,
+				total > 0 ? (double) errors / total : 0);
+	}
+
+	private static double millis(long[] sorted, double percentile) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+		return sorted[Math.max(0, rank - 1)] / 1e6;
+	}
+
+	record Summary(String endpoint, int requests, int errors, double throughput, double p50Ms, double p95Ms,
+			double p99Ms, double maxMs, double errorRate) {
+
+		@Override
+		public String toString() {
+			return String.format("%-8s %9d %7d %10.1f %9.1f %9.1f %9.1f %9.1f", endpoint, requests, errors,
+					throughput, p50Ms, p95Ms, p99Ms, maxMs);
+		}
+
+		static String header() {
+			return String.format("%-8s %9s %7s %10s %9s %9s %9s %9s", "endpoint", "requests", "errors", "req/s",
+					"p50 ms", "p95 ms", "p99 ms", "max ms");
+		}
+	}
+}
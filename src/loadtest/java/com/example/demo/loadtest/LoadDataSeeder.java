@@ -0,0 +1,195 @@
+package com.example.demo.loadtest;
+
+import com.example.demo.service.AiClient;
+import com.example.demo.service.AnalysisResultCodec;
+import com.example.demo.service.FakeAiClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 压测数据：loadtest.users 个用户与 loadtest.analyses 条分析记录（按分类轮换），由 JDBC 批量写入
+ * <p>
+ * 在 ApplicationStartedEvent 中写入，早于 ApplicationReadyEvent 触发的历史索引重建，索引会包含全部数据。
+ * 数据只由参数决定（不用随机数），每次运行相同：
+ * 第 u 个用户（从 0 开始）的邮箱为 load-u@example.com，密码都是 {@link #PASSWORD}（只计算一次 BCrypt）；
+ * 第 i 条记录（从 0 开始）的 ID 为 i + 1，属于第 i % users 个用户。
+ */
+public class LoadDataSeeder {
+
+	private static final Logger log = LoggerFactory.getLogger(LoadDataSeeder.class);
+
+	static final String PASSWORD = "load-test-password";
+
+	/** 与实体上 log_analysis_seq 的 allocationSize 一致 */
+	private static final int ALLOCATION_SIZE = 50;
+
+	private static final int BATCH = 10_000;
+
+	static final String[] MODULES = { "Order", "Payment", "Inventory", "Account", "Shipping", "Cart", "Coupon",
+			"Search" };
+
+	/** 分类 → 标题中的异常名与日志片段模板（%s 为模块名） */
+	private static final String[][] CATEGORIES = {
+			{ "NPE", "NullPointerException",
+					"java.lang.NullPointerException: Cannot invoke \"String.length()\" because \"name\" is null\n"
+							+ "\tat com.example.shop.%sService.handle(%sService.java:42)" },
+			{ "BEAN", "BeanCreationException",
+					"org.springframework.beans.factory.BeanCreationException: Error creating bean with name "
+							+ "'%sController'\n\tat org.springframework.beans.factory.support.AbstractBeanFactory.getBean" },
+			{ "SQL", "SQLSyntaxErrorException",
+					"java.sql.SQLSyntaxErrorException: Table '%s_record' doesn't exist\n"
+							+ "\tat com.mysql.cj.jdbc.ClientPreparedStatement.executeQuery" },
+			{ "PORT", "BindException",
+					"java.net.BindException: Address already in use (%sGateway on port 8080)\n"
+							+ "\tat sun.nio.ch.Net.bind0(Native Method)" },
+			{ "CONFIG", "IllegalArgumentException",
+					"java.lang.IllegalArgumentException: Could not resolve placeholder '%s.timeout' in value "
+							+ "\"${%s.timeout}\"" } };
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private PasswordEncoder passwordEncoder;
+
+	@Autowired
+	private FakeAiClient fakeAiClient;
+
+	private final AnalysisResultCodec codec = new AnalysisResultCodec();
+
+	static int users() {
+		return Integer.getInteger("loadtest.users", 10_000);
+	}
+
+	static int analyses() {
+		return Integer.getInteger("loadtest.analyses", 1_000_000);
+	}
+
+	@EventListener(ApplicationStartedEvent.class)
+	public void seed() {
+		long start = System.nanoTime();
+		int users = users();
+		int analyses = analyses();
+		seedUsers(users);
+		List<Long> userIds = jdbcTemplate.queryForList(
+				"SELECT id FROM users WHERE email LIKE 'load-%@example.com' ORDER BY id", Long.class);
+		if (userIds.size() != users) {
+			throw new IllegalStateException("压测用户数不符：" + userIds.size() + " != " + users);
+		}
+		seedAnalyses(userIds, analyses);
+		log.info("压测数据已写入：{} 个用户，{} 条分析记录，用时 {} ms", users, analyses,
+				(System.nanoTime() - start) / 1_000_000);
+	}
+
+	private void seedUsers(int users) {
+		String hash = passwordEncoder.encode(PASSWORD);
+		Timestamp createdAt = Timestamp.valueOf(LocalDateTime.now().minusDays(30));
+		for (int from = 0; from < users; from += BATCH) {
+			int offset = from;
+			int size = Math.min(BATCH, users - from);
+			jdbcTemplate.batchUpdate("INSERT INTO users (email, password, created_at) VALUES (?, ?, ?)",
+					new BatchPreparedStatementSetter() {
+						@Override
+						public void setValues(PreparedStatement ps, int i) throws SQLException {
+							ps.setString(1, email(offset + i));
+							ps.setString(2, hash);
+							ps.setTimestamp(3, createdAt);
+						}
+
+						@Override
+						public int getBatchSize() {
+							return size;
+						}
+					});
+		}
+	}
+
+	/**
+	 * 每个分类的输出只生成一次（FakeAiClient 的规则结果），所有记录共用
+	 */
+	private void seedAnalyses(List<Long> userIds, int analyses) {
+		Output[] outputs = new Output[CATEGORIES.length];
+		for (int c = 0; c < CATEGORIES.length; c++) {
+			String sample = String.format(CATEGORIES[c][2], MODULES[0], MODULES[0]);
+			AiClient.AnalysisResult result = fakeAiClient.analyzeLog(sample, "JAVA", true, "FAST", null);
+			byte[] cbor = result.getEncoded() != null
+					? result.getEncoded()
+					: codec.encode(result.getTopCauses(), result.getVerificationSteps(), result.getSuggestedFixes());
+			String summary = result.getTopCauses().isEmpty() ? result.getTldr() : result.getTopCauses().get(0).cause();
+			outputs[c] = new Output(result.getTldr(), cbor, result.getNeedMoreInfo(), summary);
+		}
+
+		LocalDateTime now = LocalDateTime.now();
+		String sql = "INSERT INTO log_analysis (id, user_id, log_type, sanitized_log, title, tldr, result_cbor, "
+				+ "need_more_info, options, error_category, history_summary, created_at) "
+				+ "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+		for (int from = 0; from < analyses; from += BATCH) {
+			int offset = from;
+			int size = Math.min(BATCH, analyses - from);
+			jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+				@Override
+				public void setValues(PreparedStatement ps, int i) throws SQLException {
+					int n = offset + i;
+					int c = n % CATEGORIES.length;
+					String module = MODULES[(n / CATEGORIES.length) % MODULES.length];
+					Output output = outputs[c];
+					ps.setLong(1, n + 1L);
+					ps.setLong(2, userIds.get(n % userIds.size()));
+					ps.setString(3, n % 3 == 0 ? "SPRING" : "JAVA");
+					ps.setString(4, String.format(CATEGORIES[c][2], module, module));
+					ps.setString(5, module + " " + CATEGORIES[c][1] + " 分析");
+					ps.setString(6, output.tldr());
+					ps.setBytes(7, output.cbor());
+					ps.setString(8, output.needMoreInfo());
+					ps.setString(9, "{\"sanitize\":true,\"generateActionList\":true,\"depth\":\"FAST\"}");
+					ps.setString(10, CATEGORIES[c][0]);
+					ps.setString(11, output.summary());
+					// 越新的记录 ID 越大，一分钟一条
+					ps.setTimestamp(12, Timestamp.valueOf(now.minusMinutes(analyses - n)));
+				}
+
+				@Override
+				public int getBatchSize() {
+					return size;
+				}
+			});
+		}
+		// 压测中新增的记录从已写入的 ID 之后分配（pooled 优化器把取到的序列值当作本段上界）
+		jdbcTemplate.execute("ALTER SEQUENCE log_analysis_seq RESTART WITH " + (analyses + ALLOCATION_SIZE));
+	}
+
+	static String email(int user) {
+		return "load-" + user + "@example.com";
+	}
+
+	/**
+	 * 第 user 个用户的第 k 条记录的 ID
+	 */
+	static long analysisId(int user, int k) {
+		return (long) k * users() + user + 1;
+	}
+
+	/**
+	 * 第 user 个用户的记录数
+	 */
+	static int analysesOf(int user) {
+		int users = users();
+		int analyses = analyses();
+		return analyses / users + (user < analyses % users ? 1 : 0);
+	}
+
+	private record Output(String tldr, byte[] cbor, String needMoreInfo, String summary) {
+	}
+}
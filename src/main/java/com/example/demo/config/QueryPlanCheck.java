@@ -0,0 +1,102 @@
+package com.example.demo.config;
+
+import com.example.demo.repository.AnalysisCacheRepository;
+import com.example.demo.repository.LogAnalysisRepository;
+import com.example.demo.repository.SharedAnalysisResultRepository;
+import com.example.demo.repository.UsageDailyRepository;
+import com.example.demo.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 启动时的查询计划检查：对历史、报告、缓存、额度等热点查询执行 EXPLAIN，
+ * 任何一条走全表扫描（索引缺失或迁移未执行）都拒绝启动
+ * <p>
+ * SQL 取自仓库方法实际生成的语句：以不存在的参数调用一次，由 {@link SqlCapture} 记录，
+ * 再不绑定参数直接 EXPLAIN；仓库查询改动后检查随之更新。logsage.schema.check-plans=false 时跳过。
+ */
+@Component
+public class QueryPlanCheck implements ApplicationRunner {
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private LogAnalysisRepository logAnalysisRepository;
+
+	@Autowired
+	private AnalysisCacheRepository analysisCacheRepository;
+
+	@Autowired
+	private SharedAnalysisResultRepository sharedAnalysisResultRepository;
+
+	@Autowired
+	private UsageDailyRepository usageDailyRepository;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Value("${logsage.schema.check-plans:false}")
+	private boolean enabled;
+
+	private static final LocalDateTime CURSOR_TIME = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+	/**
+	 * 查询名 → 调用对应仓库方法
+	 */
+	Map<String, Runnable> queries() {
+		Map<String, Runnable> queries = new LinkedHashMap<>();
+		queries.put("history", () -> logAnalysisRepository.findHistoryPage(0L, CURSOR_TIME, 0L, Limit.of(21)));
+		queries.put("historyByCategory", () -> logAnalysisRepository.findHistoryPageByCategory(0L, "NPE",
+				CURSOR_TIME, 0L, Limit.of(21)));
+		queries.put("historyRowsByIds", () -> logAnalysisRepository.findHistoryRowsByIds(0L, List.of(1L, 2L, 3L)));
+		queries.put("report", () -> logAnalysisRepository.findById(0L));
+		queries.put("analysisCache", () -> analysisCacheRepository.findByUserIdAndLogHash(0L, "x"));
+		queries.put("sharedResult", () -> sharedAnalysisResultRepository.findByContentHash("x"));
+		queries.put("usageDaily", () -> usageDailyRepository.findByUserIdAndDate(0L, LocalDate.of(2000, 1, 1)));
+		queries.put("userByEmail", () -> userRepository.findByEmail("x"));
+		return queries;
+	}
+
+	@Override
+	public void run(ApplicationArguments args) {
+		if (!enabled) {
+			return;
+		}
+		for (Map.Entry<String, String> entry : explainAll().entrySet()) {
+			if (isFullScan(entry.getValue())) {
+				throw new RuntimeException("查询 " + entry.getKey() + " 未使用索引，请检查数据库迁移：\n" + entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * 每条查询的执行计划
+	 */
+	public Map<String, String> explainAll() {
+		Map<String, String> plans = new LinkedHashMap<>();
+		for (Map.Entry<String, Runnable> entry : queries().entrySet()) {
+			List<String> sql = SqlCapture.capture(entry.getValue());
+			if (sql.isEmpty()) {
+				throw new RuntimeException("查询 " + entry.getKey() + " 没有执行 SQL，无法检查执行计划");
+			}
+			plans.put(entry.getKey(), jdbcTemplate.queryForObject("EXPLAIN " + sql.get(0), String.class));
+		}
+		return plans;
+	}
+
+	/** H2 的计划中全表扫描显示为 PUBLIC.表名.tableScan */
+	static boolean isFullScan(String plan) {
+		return plan != null && plan.contains(".tableScan");
+	}
+}
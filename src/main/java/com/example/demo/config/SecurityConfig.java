@@ -2,14 +2,22 @@ package com.example.demo.config;
 
 import com.example.demo.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
 
 /**
@@ -21,30 +29,85 @@ public class SecurityConfig {
 	@Autowired
 	private UserService userService;
 
+	@Value("${logsage.metrics.username:prometheus}")
+	private String metricsUsername;
+
+	@Value("${logsage.metrics.password:}")
+	private String metricsPassword;
+
 	@Bean
 	public PasswordEncoder passwordEncoder() {
 		return new BCryptPasswordEncoder();
 	}
 
+	/**
+	 * 登录时查询一次用户，之后的请求从会话中的 {@link UserPrincipal} 取用户 ID 与默认选项
+	 */
 	@Bean
 	public UserDetailsService userDetailsService() {
 		return username -> {
 			return userService.findByEmail(username)
-					.map(user -> org.springframework.security.core.userdetails.User
-							.withUsername(user.getEmail())
-							.password(user.getPassword())
-							.roles("USER")
-							.build())
+					.map(UserPrincipal::new)
 					.orElseThrow(() -> new UsernameNotFoundException("用户不存在: " + username));
 		};
 	}
 
+	/**
+	 * /actuator/prometheus 只接受专用的抓取账号（logsage.metrics.username / password，HTTP Basic）：
+	 * 指标含用量等运营数据，自助注册的用户不能读取；未配置密码时拒绝所有请求
+	 */
+	@Bean
+	@Order(0)
+	public SecurityFilterChain metricsSecurityFilterChain(HttpSecurity http) throws Exception {
+		http
+				.securityMatcher("/actuator/prometheus")
+				.sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+				.csrf(csrf -> csrf.disable());
+		if (metricsPassword == null || metricsPassword.isBlank()) {
+			http.authorizeHttpRequests(auth -> auth.anyRequest().denyAll());
+			return http.build();
+		}
+		DaoAuthenticationProvider provider = new DaoAuthenticationProvider(new InMemoryUserDetailsManager(
+				User.withUsername(metricsUsername)
+						.password(passwordEncoder().encode(metricsPassword))
+						.roles("METRICS")
+						.build()));
+		provider.setPasswordEncoder(passwordEncoder());
+		http
+				.authorizeHttpRequests(auth -> auth.anyRequest().hasRole("METRICS"))
+				.httpBasic(Customizer.withDefaults())
+				.authenticationManager(new ProviderManager(provider));
+
+		return http.build();
+	}
+
+	/**
+	 * /api/** 供脚本调用：只接受 HTTP Basic，不读取也不创建登录会话。
+	 * 跨站页面无法让浏览器附带这类凭据，因此这里不需要 CSRF 令牌；浏览器中的登录会话访问 /api/** 返回 401
+	 */
+	@Bean
+	@Order(1)
+	public SecurityFilterChain apiSecurityFilterChain(HttpSecurity http) throws Exception {
+		http
+				.securityMatcher("/api/**")
+				.authorizeHttpRequests(auth -> auth.anyRequest().authenticated())
+				.httpBasic(Customizer.withDefaults())
+				.sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+				.csrf(csrf -> csrf.disable());
+
+		return http.build();
+	}
+
 	@Bean
+	@Order(2)
 	public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
 		http
 				.authorizeHttpRequests(auth -> auth
 						.requestMatchers("/login", "/register", "/register/submit", "/css/**", "/h2-console/**")
 						.permitAll()
+						// 健康检查无需登录；prometheus 由上面的专用过滤链保护
+						.requestMatchers("/actuator/health")
+						.permitAll()
 						.anyRequest().authenticated())
 				.formLogin(form -> form
 						.loginPage("/login")
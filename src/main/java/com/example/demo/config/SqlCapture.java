@@ -0,0 +1,37 @@
+package com.example.demo.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 记录当前线程经 Hibernate 执行的 SQL，供 {@link QueryPlanCheck} 取得仓库查询实际生成的语句；
+ * 未开启记录时原样放行
+ */
+public class SqlCapture implements StatementInspector {
+	private static final ThreadLocal<List<String>> CAPTURED = new ThreadLocal<>();
+
+	@Override
+	public String inspect(String sql) {
+		List<String> captured = CAPTURED.get();
+		if (captured != null) {
+			captured.add(sql);
+		}
+		return sql;
+	}
+
+	/**
+	 * 执行 action 并返回期间生成的 SQL（按执行顺序）
+	 */
+	static List<String> capture(Runnable action) {
+		List<String> captured = new ArrayList<>();
+		CAPTURED.set(captured);
+		try {
+			action.run();
+		} finally {
+			CAPTURED.remove();
+		}
+		return captured;
+	}
+}
@@ -0,0 +1,125 @@
+package com.example.demo.config;
+
+import com.example.demo.model.User;
+import com.example.demo.service.UserService;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.CredentialsContainer;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 登录用户（保存在会话的 SecurityContext 中）：带上用户 ID 与默认选项，控制器取当前用户时不再查询 users 表
+ * <p>
+ * 登录时由 {@link SecurityConfig#userDetailsService()} 从 User 实体构建，认证后密码被清除；
+ * 修改设置后由 {@link #applySettings} 原地更新（同一用户的其他会话在重新登录前仍是旧值）。
+ */
+public class UserPrincipal implements UserDetails, CredentialsContainer {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final List<GrantedAuthority> AUTHORITIES = List.of(new SimpleGrantedAuthority("ROLE_USER"));
+
+	private final Long id;
+
+	private final String email;
+
+	private String password;
+
+	// 默认选项可能在其他请求线程中被更新
+	private volatile String defaultType;
+
+	private volatile Boolean defaultSanitize;
+
+	private volatile String defaultDepth;
+
+	public UserPrincipal(User user) {
+		this.id = user.getId();
+		this.email = user.getEmail();
+		this.password = user.getPassword();
+		applySettings(user);
+	}
+
+	/**
+	 * 获取当前登录用户：通常直接取会话中的 UserPrincipal，不查询数据库；
+	 * 认证主体不是 UserPrincipal 时才按用户名查询 users 表
+	 */
+	public static UserPrincipal current(UserService userService) {
+		Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+		if (auth.getPrincipal() instanceof UserPrincipal principal) {
+			return principal;
+		}
+		return userService.findByEmail(auth.getName())
+				.map(UserPrincipal::new)
+				.orElseThrow(() -> new RuntimeException("用户不存在"));
+	}
+
+	/**
+	 * 用保存后的 User 实体更新默认选项
+	 */
+	public void applySettings(User user) {
+		this.defaultType = user.getDefaultType();
+		this.defaultSanitize = user.getDefaultSanitize();
+		this.defaultDepth = user.getDefaultDepth();
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+	public String getEmail() {
+		return email;
+	}
+
+	public String getDefaultType() {
+		return defaultType;
+	}
+
+	public Boolean getDefaultSanitize() {
+		return defaultSanitize;
+	}
+
+	public String getDefaultDepth() {
+		return defaultDepth;
+	}
+
+	@Override
+	public String getUsername() {
+		return email;
+	}
+
+	@Override
+	public String getPassword() {
+		return password;
+	}
+
+	@Override
+	public Collection<? extends GrantedAuthority> getAuthorities() {
+		return AUTHORITIES;
+	}
+
+	@Override
+	public void eraseCredentials() {
+		this.password = null;
+	}
+
+	// 与 Spring Security 自带的 User 一致，按用户名比较
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof UserPrincipal other && email.equals(other.email);
+	}
+
+	@Override
+	public int hashCode() {
+		return email.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return "UserPrincipal[id=" + id + ", email=" + email + "]";
+	}
+}
@@ -0,0 +1,163 @@
+package com.example.demo.controller;
+
+import com.example.demo.config.UserPrincipal;
+import com.example.demo.model.AnalysisJob;
+import com.example.demo.service.AnalysisJobService;
+import com.example.demo.service.JobRejectedException;
+import com.example.demo.service.LogAnalysisService;
+import com.example.demo.service.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * 异步分析任务接口：提交后立即返回任务 ID，通过轮询或 SSE 获取状态与结果
+ */
+@RestController
+@RequestMapping("/api/jobs")
+public class AnalysisJobController {
+	@Autowired
+	private AnalysisJobService analysisJobService;
+
+	@Autowired
+	private UserService userService;
+
+	@Value("${logsage.jobs.sse-timeout-ms:300000}")
+	private long sseTimeoutMs;
+
+	/**
+	 * 提交任务的请求体（字段含义与 POST /analyze 相同）
+	 */
+	public record JobRequest(String rawLog, String logType, Boolean sanitize, Boolean generateActionList,
+			String depth, String tried) {
+	}
+
+	/**
+	 * 提交分析任务，返回 202 与任务状态；输入不合法返回 400，队列已满或进行中的任务过多时返回 429
+	 */
+	@PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<Map<String, Object>> submit(@RequestBody JobRequest request) {
+		UserPrincipal user = UserPrincipal.current(userService);
+		if (request.rawLog() == null || request.rawLog().isBlank() || request.logType() == null) {
+			return error(HttpStatus.BAD_REQUEST, "rawLog 和 logType 不能为空");
+		}
+		if (request.rawLog().length() > LogAnalysisService.MAX_INPUT_CHARS) {
+			return error(HttpStatus.BAD_REQUEST, LogAnalysisService.INPUT_TOO_LONG);
+		}
+
+		AnalysisJob job;
+		try {
+			job = analysisJobService.submit(user.getId(), request.rawLog(), request.logType(),
+					request.sanitize() == null || request.sanitize(),
+					request.generateActionList() == null || request.generateActionList(),
+					request.depth() != null ? request.depth() : "FAST",
+					request.tried());
+		} catch (JobRejectedException e) {
+			return error(HttpStatus.TOO_MANY_REQUESTS, e.getMessage());
+		} catch (IllegalArgumentException e) {
+			return error(HttpStatus.BAD_REQUEST, e.getMessage());
+		}
+		return ResponseEntity.accepted()
+				.location(URI.create("/api/jobs/" + job.getId()))
+				.body(toView(job));
+	}
+
+	/**
+	 * 查询任务状态；成功时包含完整报告
+	 */
+	@GetMapping("/{id}")
+	public ResponseEntity<Map<String, Object>> status(@PathVariable String id) {
+		UserPrincipal user = UserPrincipal.current(userService);
+		return analysisJobService.find(id, user.getId())
+				.map(job -> ResponseEntity.ok(toView(job)))
+				.orElseGet(() -> error(HttpStatus.NOT_FOUND, "任务不存在或已过期"));
+	}
+
+	/**
+	 * 取消任务；已结束的任务返回其最终状态
+	 */
+	@DeleteMapping("/{id}")
+	public ResponseEntity<Map<String, Object>> cancel(@PathVariable String id) {
+		UserPrincipal user = UserPrincipal.current(userService);
+		return analysisJobService.cancel(id, user.getId())
+				.map(job -> ResponseEntity.ok(toView(job)))
+				.orElseGet(() -> error(HttpStatus.NOT_FOUND, "任务不存在或已过期"));
+	}
+
+	/**
+	 * SSE 推送状态变化（事件名 status），任务结束后关闭连接
+	 */
+	@GetMapping(path = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public ResponseEntity<SseEmitter> events(@PathVariable String id) {
+		UserPrincipal user = UserPrincipal.current(userService);
+		Optional<AnalysisJob> found = analysisJobService.find(id, user.getId());
+		if (found.isEmpty()) {
+			return ResponseEntity.notFound().build();
+		}
+		AnalysisJob job = found.get();
+		SseEmitter emitter = new SseEmitter(sseTimeoutMs);
+		AtomicBoolean closed = new AtomicBoolean();
+		Consumer<AnalysisJob> listener = current -> {
+			if (closed.get()) {
+				return;
+			}
+			try {
+				emitter.send(SseEmitter.event().name("status").data(toView(current)));
+				if (current.isFinished() && closed.compareAndSet(false, true)) {
+					emitter.complete();
+				}
+			} catch (IOException | IllegalStateException e) {
+				// 客户端已断开
+				closed.set(true);
+			}
+		};
+		emitter.onCompletion(() -> job.unsubscribe(listener));
+		emitter.onTimeout(() -> job.unsubscribe(listener));
+		emitter.onError(e -> job.unsubscribe(listener));
+		job.subscribe(listener);
+		return ResponseEntity.ok(emitter);
+	}
+
+	private Map<String, Object> toView(AnalysisJob job) {
+		Map<String, Object> view = new LinkedHashMap<>();
+		view.put("id", job.getId());
+		view.put("status", job.getStatus().name());
+		view.put("createdAt", String.valueOf(job.getCreatedAt()));
+		view.put("startedAt", job.getStartedAt() != null ? job.getStartedAt().toString() : null);
+		view.put("finishedAt", job.getFinishedAt() != null ? job.getFinishedAt().toString() : null);
+		view.put("eventsUrl", "/api/jobs/" + job.getId() + "/events");
+		if (job.getStatus() == AnalysisJob.Status.SUCCEEDED) {
+			view.put("reportId", job.getReport().getId());
+			view.put("reportUrl", "/report/" + job.getReport().getId());
+			view.put("result", job.getReport());
+		}
+		if (job.getError() != null) {
+			view.put("error", job.getError());
+		}
+		return view;
+	}
+
+	private static ResponseEntity<Map<String, Object>> error(HttpStatus status, String message) {
+		Map<String, Object> body = new LinkedHashMap<>();
+		body.put("error", message);
+		return ResponseEntity.status(status).body(body);
+	}
+}
@@ -0,0 +1,108 @@
+package com.example.demo.controller;
+
+import com.example.demo.config.UserPrincipal;
+import com.example.demo.service.BatchAnalysisService;
+import com.example.demo.service.LogAnalysisService;
+import com.example.demo.service.QuotaExceededException;
+import com.example.demo.service.UserService;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批量分析接口：一次提交多条日志（JSON 数组或 NDJSON，每行一个对象），同步返回每条的报告
+ */
+@RestController
+@RequestMapping("/api/batch")
+public class BatchAnalysisController {
+	private static final Logger log = LoggerFactory.getLogger(BatchAnalysisController.class);
+
+	@Autowired
+	private BatchAnalysisService batchAnalysisService;
+
+	@Autowired
+	private LogAnalysisService logAnalysisService;
+
+	@Autowired
+	private UserService userService;
+
+	private final ObjectReader itemReader = new ObjectMapper().readerFor(BatchAnalysisService.Item.class);
+
+	/**
+	 * JSON 数组：[{"rawLog": "...", "logType": "JAVA"}, ...]
+	 */
+	@PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<Map<String, Object>> analyzeJson(@RequestBody List<BatchAnalysisService.Item> items) {
+		return analyze(items);
+	}
+
+	/**
+	 * NDJSON：每行一个对象，逐行读取，超过条数上限时立即拒绝
+	 */
+	@PostMapping(consumes = MediaType.APPLICATION_NDJSON_VALUE)
+	public ResponseEntity<Map<String, Object>> analyzeNdjson(InputStream body) {
+		List<BatchAnalysisService.Item> items = new ArrayList<>();
+		try (MappingIterator<BatchAnalysisService.Item> lines = itemReader.readValues(body)) {
+			while (lines.hasNextValue()) {
+				if (items.size() == batchAnalysisService.getMaxItems()) {
+					return error(HttpStatus.BAD_REQUEST, "单次最多提交 " + batchAnalysisService.getMaxItems() + " 条日志");
+				}
+				items.add(lines.nextValue());
+			}
+		} catch (IOException | RuntimeException e) {
+			return error(HttpStatus.BAD_REQUEST, "第 " + (items.size() + 1) + " 行不是有效的 JSON 对象");
+		}
+		return analyze(items);
+	}
+
+	private ResponseEntity<Map<String, Object>> analyze(List<BatchAnalysisService.Item> items) {
+		UserPrincipal user = UserPrincipal.current(userService);
+		if (items == null || items.isEmpty()) {
+			return error(HttpStatus.BAD_REQUEST, "至少需要一条日志");
+		}
+		if (items.size() > batchAnalysisService.getMaxItems()) {
+			return error(HttpStatus.BAD_REQUEST, "单次最多提交 " + batchAnalysisService.getMaxItems() + " 条日志");
+		}
+
+		BatchAnalysisService.BatchResult result;
+		try {
+			result = batchAnalysisService.analyze(user.getId(), items);
+		} catch (QuotaExceededException e) {
+			return error(HttpStatus.TOO_MANY_REQUESTS, e.getMessage());
+		} catch (RuntimeException e) {
+			// 异常信息可能含 SQL、约束名等内部细节，只写入日志
+			log.error("批量分析失败（用户 {}，{} 条）", user.getId(), items.size(), e);
+			return error(HttpStatus.INTERNAL_SERVER_ERROR, "批量分析失败，请稍后重试");
+		}
+		Map<String, Object> body = new LinkedHashMap<>();
+		body.put("analyzed", result.analyzed());
+		body.put("cached", result.cached());
+		body.put("failed", result.failed());
+		body.put("remaining", logAnalysisService.getDailyUsage(user.getId()).get("remaining"));
+		body.put("items", result.items());
+		return ResponseEntity.ok(body);
+	}
+
+	private static ResponseEntity<Map<String, Object>> error(HttpStatus status, String message) {
+		Map<String, Object> body = new LinkedHashMap<>();
+		body.put("error", message);
+		return ResponseEntity.status(status).body(body);
+	}
+}
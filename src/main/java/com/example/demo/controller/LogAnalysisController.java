@@ -1,24 +1,43 @@
 package com.example.demo.controller;
 
-import com.example.demo.model.LogAnalysis;
+import com.example.demo.config.UserPrincipal;
+import com.example.demo.model.AnalysisReport;
+import com.example.demo.model.HistoryPage;
 import com.example.demo.model.User;
+import com.example.demo.service.AiClient;
 import com.example.demo.service.LogAnalysisService;
 import com.example.demo.service.UserService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.HashMap;
-import java.util.List;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 日志分析控制器
@@ -31,16 +50,37 @@ public class LogAnalysisController {
 	@Autowired
 	private UserService userService;
 
+	@Value("${logsage.stream.workers:8}")
+	private int streamWorkers;
+
+	@Value("${logsage.stream.queue-capacity:100}")
+	private int streamQueueCapacity;
+
+	/** 每个流式请求缓冲的事件数（一次分析最多五个部分） */
+	private static final int STREAM_BUFFER = 16;
+
 	private final ObjectMapper objectMapper = new ObjectMapper();
 
-	/**
-	 * 获取当前登录用户
-	 */
-	private User getCurrentUser() {
-		Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-		String email = auth.getName();
-		return userService.findByEmail(email)
-				.orElseThrow(() -> new RuntimeException("用户不存在"));
+	/** 流式分析在这里执行，响应线程只负责写出事件 */
+	private ThreadPoolExecutor streamExecutor;
+
+	@PostConstruct
+	void init() {
+		AtomicInteger threadNumber = new AtomicInteger();
+		streamExecutor = new ThreadPoolExecutor(streamWorkers, streamWorkers, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(streamQueueCapacity),
+				runnable -> {
+					Thread thread = new Thread(runnable, "analysis-stream-" + threadNumber.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				},
+				new ThreadPoolExecutor.AbortPolicy());
+		streamExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	@PreDestroy
+	void shutdown() {
+		streamExecutor.shutdownNow();
 	}
 
 	/**
@@ -48,12 +88,8 @@ public class LogAnalysisController {
 	 */
 	@GetMapping("/analyze")
 	public String analyzePage(Model model) {
-		User user = getCurrentUser();
-		Map<String, Object> usage = logAnalysisService.getDailyUsage(user.getId());
-		model.addAttribute("usage", usage);
-		model.addAttribute("defaultType", user.getDefaultType() != null ? user.getDefaultType() : "JAVA");
-		model.addAttribute("defaultSanitize", user.getDefaultSanitize());
-		model.addAttribute("defaultDepth", user.getDefaultDepth() != null ? user.getDefaultDepth() : "FAST");
+		UserPrincipal user = UserPrincipal.current(userService);
+		addAnalyzePageAttributes(model, user);
 		return "analyze";
 	}
 
@@ -68,39 +104,21 @@ public class LogAnalysisController {
 			@RequestParam(required = false) String tried,
 			@RequestParam(required = false) String saveAsReport,
 			Model model) {
-		User user = getCurrentUser();
+		UserPrincipal user = UserPrincipal.current(userService);
 
 		try {
 			// 检查输入长度
-			if (rawLog != null && rawLog.length() > 8000) {
-				model.addAttribute("error", "日志长度超过 8000 字符限制");
-				Map<String, Object> usage = logAnalysisService.getDailyUsage(user.getId());
-				model.addAttribute("usage", usage);
-				model.addAttribute("defaultType", user.getDefaultType() != null ? user.getDefaultType() : "JAVA");
-				model.addAttribute("defaultSanitize", user.getDefaultSanitize());
-				model.addAttribute("defaultDepth", user.getDefaultDepth() != null ? user.getDefaultDepth() : "FAST");
+			if (rawLog != null && rawLog.length() > LogAnalysisService.MAX_INPUT_CHARS) {
+				model.addAttribute("error", LogAnalysisService.INPUT_TOO_LONG);
+				addAnalyzePageAttributes(model, user);
 				return "analyze";
 			}
 
-			// 执行分析
-			LogAnalysis analysis = logAnalysisService.analyzeLog(user.getId(), rawLog, logType, sanitize,
+			// 执行分析（返回的报告已解析好，可直接渲染）
+			AnalysisReport analysis = logAnalysisService.analyzeLog(user.getId(), rawLog, logType, sanitize,
 					generateActionList, depth, tried);
 
-			// 解析 JSON 字段
-			Map<String, Object> analysisData = new HashMap<>();
-			analysisData.put("id", analysis.getId());
-			analysisData.put("tldr", analysis.getTldr());
-			try {
-				analysisData.put("topCauses", objectMapper.readValue(analysis.getTopCauses(), List.class));
-				analysisData.put("verificationSteps",
-						objectMapper.readValue(analysis.getVerificationSteps(), List.class));
-				analysisData.put("suggestedFixes", objectMapper.readValue(analysis.getSuggestedFixes(), List.class));
-			} catch (Exception e) {
-				// 忽略解析错误
-			}
-			analysisData.put("needMoreInfo", analysis.getNeedMoreInfo());
-
-			model.addAttribute("analysis", analysisData);
+			model.addAttribute("analysis", analysis);
 			model.addAttribute("rawLog", rawLog);
 			model.addAttribute("logType", logType);
 			model.addAttribute("tried", tried);
@@ -111,104 +129,195 @@ public class LogAnalysisController {
 			}
 
 			// 更新使用情况
-			Map<String, Object> usage = logAnalysisService.getDailyUsage(user.getId());
-			model.addAttribute("usage", usage);
-			model.addAttribute("defaultType", user.getDefaultType() != null ? user.getDefaultType() : "JAVA");
-			model.addAttribute("defaultSanitize", user.getDefaultSanitize());
-			model.addAttribute("defaultDepth", user.getDefaultDepth() != null ? user.getDefaultDepth() : "FAST");
+			addAnalyzePageAttributes(model, user);
 
 			return "analyze";
 		} catch (Exception e) {
 			model.addAttribute("error", e.getMessage());
-			Map<String, Object> usage = logAnalysisService.getDailyUsage(user.getId());
-			model.addAttribute("usage", usage);
-			model.addAttribute("defaultType", user.getDefaultType() != null ? user.getDefaultType() : "JAVA");
-			model.addAttribute("defaultSanitize", user.getDefaultSanitize());
-			model.addAttribute("defaultDepth", user.getDefaultDepth() != null ? user.getDefaultDepth() : "FAST");
+			addAnalyzePageAttributes(model, user);
 			return "analyze";
 		}
 	}
 
 	/**
-	 * 历史记录页面（支持搜索 q、分类筛选 cat）
+	 * 流式分析（页面用 fetch 读取 text/event-stream）：每个部分生成后立即推送 section 事件，
+	 * 分析记录保存后推送 done（报告 ID），失败时推送 error
+	 * <p>
+	 * 分析在 streamExecutor 上执行，部分结果只放入有界队列（不阻塞 AI 调用），由响应线程取出写出
+	 */
+	@PostMapping(value = "/analyze/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public ResponseEntity<StreamingResponseBody> analyzeStream(@RequestParam String rawLog,
+			@RequestParam String logType,
+			@RequestParam(required = false, defaultValue = "true") boolean sanitize,
+			@RequestParam(required = false, defaultValue = "true") boolean generateActionList,
+			@RequestParam(required = false, defaultValue = "FAST") String depth,
+			@RequestParam(required = false) String tried) {
+		Long userId = UserPrincipal.current(userService).getId();
+		BlockingQueue<AiClient.PartialResult> sections = new ArrayBlockingQueue<>(STREAM_BUFFER);
+		CompletableFuture<AnalysisReport> analysis;
+		try {
+			// 队列满时丢弃该部分（done 之后页面可以打开完整报告），不让写出速度拖慢分析
+			analysis = CompletableFuture.supplyAsync(() -> logAnalysisService.analyzeLog(userId, rawLog, logType,
+					sanitize, generateActionList, depth, tried, sections::offer), streamExecutor);
+		} catch (RejectedExecutionException e) {
+			analysis = CompletableFuture.failedFuture(new RuntimeException("分析队列已满，请稍后重试"));
+		}
+		CompletableFuture<AnalysisReport> result = analysis;
+		StreamingResponseBody body = out -> {
+			EventWriter events = new EventWriter(out);
+			try {
+				while (!result.isDone() && !events.closed) {
+					AiClient.PartialResult section = sections.poll(100, TimeUnit.MILLISECONDS);
+					if (section != null) {
+						events.send("section", sectionData(section));
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			// 分析结束前放入的部分都已在队列中
+			for (AiClient.PartialResult section; (section = sections.poll()) != null; ) {
+				events.send("section", sectionData(section));
+			}
+			if (events.closed) {
+				return;
+			}
+			try {
+				AnalysisReport report = result.join();
+				Map<String, Object> done = new LinkedHashMap<>();
+				done.put("id", report.getId());
+				done.put("title", report.getTitle());
+				done.put("remaining", logAnalysisService.getDailyUsage(userId).get("remaining"));
+				events.send("done", done);
+			} catch (CompletionException e) {
+				Throwable cause = e.getCause() != null ? e.getCause() : e;
+				events.send("error", Map.of("message", cause.getMessage() != null ? cause.getMessage() : "分析失败"));
+			}
+		};
+		return ResponseEntity.ok()
+				.contentType(MediaType.TEXT_EVENT_STREAM)
+				.header("Cache-Control", "no-cache")
+				.header("X-Accel-Buffering", "no")
+				.body(body);
+	}
+
+	private static Map<String, Object> sectionData(AiClient.PartialResult section) {
+		Map<String, Object> data = new LinkedHashMap<>();
+		data.put("section", section.section());
+		data.put("value", section.value());
+		return data;
+	}
+
+	/**
+	 * 逐条写出 SSE 事件并立即 flush；浏览器断开后不再写出，但分析继续完成并保存
+	 */
+	private final class EventWriter {
+		private final OutputStream out;
+		private boolean closed;
+
+		EventWriter(OutputStream out) {
+			this.out = out;
+		}
+
+		void send(String event, Object data) {
+			if (closed) {
+				return;
+			}
+			try {
+				String frame = "event: " + event + "\ndata: " + objectMapper.writeValueAsString(data) + "\n\n";
+				out.write(frame.getBytes(StandardCharsets.UTF_8));
+				out.flush();
+			} catch (IOException e) {
+				closed = true;
+			}
+		}
+	}
+
+	/**
+	 * 上传大日志分析（流式处理，不受文本输入的长度限制），完成后跳转到报告详情页
+	 */
+	@PostMapping("/analyze/upload")
+	public String analyzeUpload(@RequestParam("file") MultipartFile file, @RequestParam String logType,
+			@RequestParam(required = false, defaultValue = "true") boolean sanitize,
+			@RequestParam(required = false, defaultValue = "true") boolean generateActionList,
+			@RequestParam(required = false, defaultValue = "FAST") String depth,
+			@RequestParam(required = false) String tried,
+			Model model) {
+		UserPrincipal user = UserPrincipal.current(userService);
+
+		try {
+			if (file.isEmpty()) {
+				throw new RuntimeException("请选择要上传的日志文件");
+			}
+			AnalysisReport analysis;
+			try (InputStream in = file.getInputStream()) {
+				analysis = logAnalysisService.analyzeUpload(user.getId(), in, logType, sanitize,
+						generateActionList, depth, tried);
+			}
+			return "redirect:/report/" + analysis.getId();
+		} catch (Exception e) {
+			model.addAttribute("error", e.getMessage());
+			addAnalyzePageAttributes(model, user);
+			return "analyze";
+		}
+	}
+
+	/** 分析页面公共数据：今日用量、默认选项与文本输入上限 */
+	private void addAnalyzePageAttributes(Model model, UserPrincipal user) {
+		Map<String, Object> usage = logAnalysisService.getDailyUsage(user.getId());
+		model.addAttribute("usage", usage);
+		model.addAttribute("defaultType", user.getDefaultType() != null ? user.getDefaultType() : "JAVA");
+		model.addAttribute("defaultSanitize", user.getDefaultSanitize());
+		model.addAttribute("defaultDepth", user.getDefaultDepth() != null ? user.getDefaultDepth() : "FAST");
+		model.addAttribute("maxInputChars", LogAnalysisService.MAX_INPUT_CHARS);
+	}
+
+	/**
+	 * 历史记录页面（支持搜索 q、分类筛选 cat，cursor + size 游标分页）
 	 */
 	@GetMapping("/history")
 	public String historyPage(
 			@RequestParam(required = false, defaultValue = "") String q,
 			@RequestParam(required = false, defaultValue = "ALL") String cat,
+			@RequestParam(required = false) String cursor,
+			@RequestParam(required = false, defaultValue = "20") int size,
 			Model model) {
-		User user = getCurrentUser();
-		List<LogAnalysis> list = logAnalysisService.getHistory(user.getId(), q, cat);
-
-		// 构建紧凑列表项：createdAt、title、errorCategory、summary
-		List<Map<String, Object>> history = new java.util.ArrayList<>();
-		for (LogAnalysis item : list) {
-			Map<String, Object> row = new HashMap<>();
-			row.put("id", item.getId());
-			row.put("title", item.getTitle());
-			row.put("createdAt", item.getCreatedAt());
-			String ec = item.getErrorCategory();
-			row.put("errorCategory", ec != null ? ec : "CONFIG");
-			row.put("summary", getSummaryForHistory(item));
-			history.add(row);
+		UserPrincipal user = UserPrincipal.current(userService);
+		int pageSize = Math.max(1, Math.min(size, 100));
+		HistoryPage page;
+		try {
+			page = logAnalysisService.getHistory(user.getId(), q, cat, cursor, pageSize);
+		} catch (RuntimeException e) {
+			// 游标已失效：提示并显示第一页
+			model.addAttribute("error", e.getMessage());
+			cursor = null;
+			page = logAnalysisService.getHistory(user.getId(), q, cat, null, pageSize);
 		}
 
-		model.addAttribute("history", history);
+		model.addAttribute("history", page.items());
+		model.addAttribute("nextCursor", page.nextCursor());
+		model.addAttribute("firstPage", cursor == null || cursor.isBlank());
+		model.addAttribute("size", pageSize);
 		model.addAttribute("q", q != null ? q : "");
 		model.addAttribute("cat", cat != null ? cat : "ALL");
 		return "history";
 	}
 
-	/** 取第一条 topCause 的 cause，否则 tldr，否则 "No summary" */
-	private String getSummaryForHistory(LogAnalysis item) {
-		try {
-			if (item.getTopCauses() != null && !item.getTopCauses().isEmpty()) {
-				@SuppressWarnings("unchecked")
-				List<Map<String, Object>> causes = objectMapper.readValue(item.getTopCauses(), List.class);
-				if (!causes.isEmpty() && causes.get(0).get("cause") != null) {
-					return String.valueOf(causes.get(0).get("cause"));
-				}
-			}
-		} catch (Exception e) {
-			// ignore
-		}
-		if (item.getTldr() != null && !item.getTldr().isEmpty()) {
-			return item.getTldr().length() > 120 ? item.getTldr().substring(0, 120) + "…" : item.getTldr();
-		}
-		return "No summary";
-	}
-
 	/**
 	 * 报告详情页面
 	 */
 	@GetMapping("/report/{id}")
 	public String reportPage(@PathVariable Long id, Model model) {
-		User user = getCurrentUser();
-		Optional<LogAnalysis> analysisOpt = logAnalysisService.getAnalysisById(id, user.getId());
+		UserPrincipal user = UserPrincipal.current(userService);
+		Optional<AnalysisReport> report = logAnalysisService.getReport(id, user.getId());
 
-		if (analysisOpt.isEmpty()) {
+		if (report.isEmpty()) {
 			model.addAttribute("error", "报告不存在或无权限访问");
 			return "error";
 		}
 
-		LogAnalysis analysis = analysisOpt.get();
-		Map<String, Object> analysisData = new HashMap<>();
-		analysisData.put("id", analysis.getId());
-		analysisData.put("title", analysis.getTitle());
-		analysisData.put("logType", analysis.getLogType());
-		analysisData.put("createdAt", analysis.getCreatedAt());
-		analysisData.put("tldr", analysis.getTldr());
-		try {
-			analysisData.put("topCauses", objectMapper.readValue(analysis.getTopCauses(), List.class));
-			analysisData.put("verificationSteps",
-					objectMapper.readValue(analysis.getVerificationSteps(), List.class));
-			analysisData.put("suggestedFixes", objectMapper.readValue(analysis.getSuggestedFixes(), List.class));
-		} catch (Exception e) {
-			// 忽略解析错误
-		}
-		analysisData.put("needMoreInfo", analysis.getNeedMoreInfo());
-
-		model.addAttribute("analysis", analysisData);
+		model.addAttribute("analysis", report.get());
 		return "report";
 	}
 
@@ -217,7 +326,7 @@ public class LogAnalysisController {
 	 */
 	@GetMapping("/settings")
 	public String settingsPage(Model model) {
-		User user = getCurrentUser();
+		UserPrincipal user = UserPrincipal.current(userService);
 		Map<String, Object> usage = logAnalysisService.getDailyUsage(user.getId());
 		model.addAttribute("usage", usage);
 		model.addAttribute("user", user);
@@ -231,8 +340,10 @@ public class LogAnalysisController {
 	public String updateSettings(@RequestParam(required = false) String defaultType,
 			@RequestParam(required = false) Boolean defaultSanitize,
 			@RequestParam(required = false) String defaultDepth) {
-		User user = getCurrentUser();
-		userService.updateUserSettings(user.getId(), defaultType, defaultSanitize, defaultDepth);
+		UserPrincipal user = UserPrincipal.current(userService);
+		User saved = userService.updateUserSettings(user.getId(), defaultType, defaultSanitize, defaultDepth);
+		// 会话中的登录用户同步更新，之后的页面直接使用新的默认选项
+		user.applySettings(saved);
 		return "redirect:/settings?updated=true";
 	}
 }
@@ -12,7 +12,8 @@ import java.time.LocalDateTime;
 })
 public class AnalysisCache {
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "analysis_cache_seq")
+	@SequenceGenerator(name = "analysis_cache_seq", sequenceName = "analysis_cache_seq", allocationSize = 50) // 允许批量插入
 	private Long id;
 
 	@Column(name = "user_id", nullable = false)
@@ -0,0 +1,155 @@
+package com.example.demo.model;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * 异步分析任务（仅保存在内存中，结束后保留一段时间供查询）
+ * <p>
+ * 状态只会单向流转：QUEUED → RUNNING → SUCCEEDED / FAILED，未结束前可随时 CANCELLED。
+ * 每次状态变化都会通知订阅者（SSE 推送）。
+ */
+public class AnalysisJob {
+
+	public enum Status {
+		QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED;
+
+		public boolean isFinished() {
+			return this == SUCCEEDED || this == FAILED || this == CANCELLED;
+		}
+	}
+
+	private final String id;
+	private final Long userId;
+	private final LocalDateTime createdAt;
+	private volatile Status status = Status.QUEUED;
+	private volatile LocalDateTime startedAt;
+	private volatile LocalDateTime finishedAt;
+	private volatile AnalysisReport report;
+	private volatile String error;
+	private final List<Consumer<AnalysisJob>> listeners = new CopyOnWriteArrayList<>();
+
+	public AnalysisJob(String id, Long userId) {
+		this.id = id;
+		this.userId = userId;
+		this.createdAt = LocalDateTime.now();
+	}
+
+	/**
+	 * 开始执行；任务已被取消时返回 false
+	 */
+	public boolean markRunning() {
+		synchronized (this) {
+			if (status != Status.QUEUED) {
+				return false;
+			}
+			startedAt = LocalDateTime.now();
+			status = Status.RUNNING;
+		}
+		notifyListeners();
+		return true;
+	}
+
+	public boolean succeed(AnalysisReport report) {
+		synchronized (this) {
+			if (status.isFinished()) {
+				return false;
+			}
+			// 先写结果再写状态：读到 SUCCEEDED 时一定能读到 report
+			this.report = report;
+			finish(Status.SUCCEEDED);
+		}
+		notifyListeners();
+		return true;
+	}
+
+	public boolean fail(String error) {
+		synchronized (this) {
+			if (status.isFinished()) {
+				return false;
+			}
+			this.error = error;
+			finish(Status.FAILED);
+		}
+		notifyListeners();
+		return true;
+	}
+
+	/**
+	 * 取消；已结束的任务返回 false
+	 */
+	public boolean cancel() {
+		synchronized (this) {
+			if (status.isFinished()) {
+				return false;
+			}
+			finish(Status.CANCELLED);
+		}
+		notifyListeners();
+		return true;
+	}
+
+	private void finish(Status finalStatus) {
+		finishedAt = LocalDateTime.now();
+		status = finalStatus;
+	}
+
+	/**
+	 * 订阅状态变化；订阅时立即收到一次当前状态
+	 */
+	public void subscribe(Consumer<AnalysisJob> listener) {
+		listeners.add(listener);
+		listener.accept(this);
+	}
+
+	public void unsubscribe(Consumer<AnalysisJob> listener) {
+		listeners.remove(listener);
+	}
+
+	private void notifyListeners() {
+		for (Consumer<AnalysisJob> listener : listeners) {
+			listener.accept(this);
+		}
+		if (status.isFinished()) {
+			listeners.clear();
+		}
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public Long getUserId() {
+		return userId;
+	}
+
+	public LocalDateTime getCreatedAt() {
+		return createdAt;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	public boolean isFinished() {
+		return status.isFinished();
+	}
+
+	public LocalDateTime getStartedAt() {
+		return startedAt;
+	}
+
+	public LocalDateTime getFinishedAt() {
+		return finishedAt;
+	}
+
+	public AnalysisReport getReport() {
+		return report;
+	}
+
+	public String getError() {
+		return error;
+	}
+}
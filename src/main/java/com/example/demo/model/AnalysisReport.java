@@ -0,0 +1,82 @@
+package com.example.demo.model;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 可直接渲染的分析报告（不可变，结果已解码为类型化记录，可放入进程内缓存跨请求共享）
+ */
+public final class AnalysisReport {
+	private final Long id;
+	private final String title;
+	private final String logType;
+	private final LocalDateTime createdAt;
+	private final String errorCategory;
+	private final String tldr;
+	private final List<Cause> topCauses;
+	private final List<VerificationStep> verificationSteps;
+	private final List<SuggestedFix> suggestedFixes;
+	private final String needMoreInfo;
+
+	/**
+	 * @param analysis 提供 id、标题、类型、时间、错误分类；输出字段单独传入（共享模式下输出不在该记录上）
+	 */
+	public AnalysisReport(LogAnalysis analysis, String tldr, List<Cause> topCauses,
+			List<VerificationStep> verificationSteps, List<SuggestedFix> suggestedFixes, String needMoreInfo) {
+		this.id = analysis.getId();
+		this.title = analysis.getTitle();
+		this.logType = analysis.getLogType();
+		this.createdAt = analysis.getCreatedAt();
+		this.errorCategory = analysis.getErrorCategory();
+		this.tldr = tldr;
+		this.topCauses = freeze(topCauses);
+		this.verificationSteps = freeze(verificationSteps);
+		this.suggestedFixes = freeze(suggestedFixes);
+		this.needMoreInfo = needMoreInfo;
+	}
+
+	private static <T> List<T> freeze(List<T> items) {
+		return items != null ? List.copyOf(items) : null;
+	}
+
+	// Getter
+	public Long getId() {
+		return id;
+	}
+
+	public String getTitle() {
+		return title;
+	}
+
+	public String getLogType() {
+		return logType;
+	}
+
+	public LocalDateTime getCreatedAt() {
+		return createdAt;
+	}
+
+	public String getErrorCategory() {
+		return errorCategory;
+	}
+
+	public String getTldr() {
+		return tldr;
+	}
+
+	public List<Cause> getTopCauses() {
+		return topCauses;
+	}
+
+	public List<VerificationStep> getVerificationSteps() {
+		return verificationSteps;
+	}
+
+	public List<SuggestedFix> getSuggestedFixes() {
+		return suggestedFixes;
+	}
+
+	public String getNeedMoreInfo() {
+		return needMoreInfo;
+	}
+}
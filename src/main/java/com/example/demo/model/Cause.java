@@ -0,0 +1,7 @@
+package com.example.demo.model;
+
+/**
+ * 可能原因（confidence 为 0~1 的置信度）
+ */
+public record Cause(String cause, double confidence, String evidence) {
+}
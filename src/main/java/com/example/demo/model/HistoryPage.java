@@ -0,0 +1,83 @@
+package com.example.demo.model;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 历史列表的一页（按 createdAt、id 倒序的游标分页；索引搜索时按相关度排序、以偏移量分页）
+ * <p>
+ * 游标带来源前缀：两种游标互不通用，来源不符或格式不对时拒绝，而不是悄悄回到第一页。
+ *
+ * @param items      列表项：id、title、createdAt、errorCategory、summary
+ * @param nextCursor 下一页游标，没有下一页时为 null
+ */
+public record HistoryPage(List<Map<String, Object>> items, String nextCursor) {
+
+	/** 数据库游标前缀 */
+	static final String DATABASE = "d.";
+
+	/** 索引搜索游标前缀 */
+	static final String INDEX = "i.";
+
+	public static boolean isIndexCursor(String value) {
+		return value != null && value.startsWith(INDEX);
+	}
+
+	public static String encodeOffset(int offset) {
+		return INDEX + offset;
+	}
+
+	/**
+	 * 解析索引搜索游标（相关度结果中的偏移量）；为空时为 0
+	 */
+	public static int parseOffset(String value) {
+		if (value == null || value.isBlank()) {
+			return 0;
+		}
+		try {
+			if (isIndexCursor(value)) {
+				return Math.max(0, Integer.parseInt(value.substring(INDEX.length())));
+			}
+		} catch (NumberFormatException e) {
+			// 按格式错误处理
+		}
+		throw invalid();
+	}
+
+	private static RuntimeException invalid() {
+		return new RuntimeException("分页游标已失效，请从第一页重新查看");
+	}
+
+	/**
+	 * 游标：上一页最后一条的 (createdAt, id)，编码为 "d.createdAt~id"
+	 */
+	public record Cursor(LocalDateTime createdAt, Long id) {
+
+		/** 第一页：比任何记录都靠后的哨兵值，查询条件保持不变，可以走索引 */
+		public static final Cursor FIRST = new Cursor(LocalDateTime.of(9999, 12, 31, 23, 59), Long.MAX_VALUE);
+
+		/**
+		 * 解析游标；为空时为第一页，不是数据库游标或格式不对时抛出异常
+		 */
+		public static Cursor parse(String value) {
+			if (value == null || value.isBlank()) {
+				return FIRST;
+			}
+			int sep = value.lastIndexOf('~');
+			if (!value.startsWith(DATABASE) || sep <= DATABASE.length()) {
+				throw invalid();
+			}
+			try {
+				return new Cursor(LocalDateTime.parse(value.substring(DATABASE.length(), sep)),
+						Long.parseLong(value.substring(sep + 1)));
+			} catch (RuntimeException e) {
+				throw invalid();
+			}
+		}
+
+		public String encode() {
+			return DATABASE + createdAt + "~" + id;
+		}
+	}
+}
@@ -1,16 +1,21 @@
 package com.example.demo.model;
 
 import jakarta.persistence.*;
+import java.sql.Blob;
 import java.time.LocalDateTime;
 
 /**
  * 日志分析报告实体类
  */
 @Entity
-@Table(name = "log_analysis")
+@Table(name = "log_analysis", indexes = {
+		@Index(name = "idx_log_analysis_user_created", columnList = "user_id, created_at, id"),
+		@Index(name = "idx_log_analysis_user_category_created", columnList = "user_id, error_category, created_at, id")
+})
 public class LogAnalysis {
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "log_analysis_seq")
+	@SequenceGenerator(name = "log_analysis_seq", sequenceName = "log_analysis_seq", allocationSize = 50) // 允许批量插入
 	private Long id;
 
 	@Column(name = "user_id", nullable = false)
@@ -25,20 +30,30 @@ public class LogAnalysis {
 	@Column(name = "sanitized_log", columnDefinition = "TEXT")
 	private String sanitizedLog; // 脱敏后的日志
 
+	@Lob
+	@Column(name = "log_body_gz")
+	private Blob logBodyGz; // 上传的大日志：（脱敏后）全文 GZIP，sanitizedLog 只保存异常块摘录；以流写入与读取，不整体载入内存
+
+	@Column(name = "log_size")
+	private Long logSize; // 上传的大日志：全文字符数
+
 	@Column(name = "title")
 	private String title; // 自动生成的标题
 
 	@Column(name = "tldr", columnDefinition = "TEXT")
 	private String tldr; // TL;DR 摘要
 
+	@Column(name = "result_cbor", length = 65535)
+	private byte[] resultCbor; // topCauses / verificationSteps / suggestedFixes 的 CBOR 编码（见 AnalysisResultCodec）
+
 	@Column(name = "top_causes", columnDefinition = "TEXT")
-	private String topCauses; // Top 3 可能原因（JSON 格式）
+	private String topCauses; // Top 3 可能原因（JSON 格式，仅旧记录）
 
 	@Column(name = "verification_steps", columnDefinition = "TEXT")
-	private String verificationSteps; // 最短验证步骤（JSON 格式）
+	private String verificationSteps; // 最短验证步骤（JSON 格式，仅旧记录）
 
 	@Column(name = "suggested_fixes", columnDefinition = "TEXT")
-	private String suggestedFixes; // 建议修复（JSON 格式）
+	private String suggestedFixes; // 建议修复（JSON 格式，仅旧记录）
 
 	@Column(name = "need_more_info", columnDefinition = "TEXT")
 	private String needMoreInfo; // 需要更多信息
@@ -52,6 +67,15 @@ public class LogAnalysis {
 	@Column(name = "error_category", length = 20)
 	private String errorCategory; // 错误分类：NPE, BEAN, PORT, SQL, CONFIG
 
+	@Column(name = "shared_result_id")
+	private Long sharedResultId; // 共享模式：输出存放在 SharedAnalysisResult，本行不再重复保存
+
+	@Column(name = "fingerprint", length = 64)
+	private String fingerprint; // 归一化后的日志指纹（异常类链 + 前几个栈帧），近似相同的日志相同
+
+	@Column(name = "history_summary", length = 500)
+	private String historySummary; // 历史列表摘要（第一条原因或 TL;DR），分析时计算
+
 	@Column(name = "created_at")
 	private LocalDateTime createdAt;
 
@@ -100,6 +124,22 @@ public class LogAnalysis {
 		this.sanitizedLog = sanitizedLog;
 	}
 
+	public Blob getLogBodyGz() {
+		return logBodyGz;
+	}
+
+	public void setLogBodyGz(Blob logBodyGz) {
+		this.logBodyGz = logBodyGz;
+	}
+
+	public Long getLogSize() {
+		return logSize;
+	}
+
+	public void setLogSize(Long logSize) {
+		this.logSize = logSize;
+	}
+
 	public String getTitle() {
 		return title;
 	}
@@ -116,6 +156,14 @@ public class LogAnalysis {
 		this.tldr = tldr;
 	}
 
+	public byte[] getResultCbor() {
+		return resultCbor;
+	}
+
+	public void setResultCbor(byte[] resultCbor) {
+		this.resultCbor = resultCbor;
+	}
+
 	public String getTopCauses() {
 		return topCauses;
 	}
@@ -172,6 +220,30 @@ public class LogAnalysis {
 		this.errorCategory = errorCategory;
 	}
 
+	public Long getSharedResultId() {
+		return sharedResultId;
+	}
+
+	public void setSharedResultId(Long sharedResultId) {
+		this.sharedResultId = sharedResultId;
+	}
+
+	public String getFingerprint() {
+		return fingerprint;
+	}
+
+	public void setFingerprint(String fingerprint) {
+		this.fingerprint = fingerprint;
+	}
+
+	public String getHistorySummary() {
+		return historySummary;
+	}
+
+	public void setHistorySummary(String historySummary) {
+		this.historySummary = historySummary;
+	}
+
 	public LocalDateTime getCreatedAt() {
 		return createdAt;
 	}
@@ -0,0 +1,119 @@
+package com.example.demo.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 跨用户共享的分析输出（共享模式下，相同脱敏日志 + 选项只分析、存储一次）
+ * content_hash 只由脱敏后的内容 + 日志类型 + 选项计算
+ */
+@Entity
+@Table(name = "shared_analysis_result", uniqueConstraints = {
+		@UniqueConstraint(columnNames = { "content_hash" })
+})
+public class SharedAnalysisResult {
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Long id;
+
+	@Column(name = "content_hash", nullable = false, length = 64)
+	private String contentHash; // SHA-256 哈希值
+
+	@Column(name = "tldr", columnDefinition = "TEXT")
+	private String tldr;
+
+	@Column(name = "result_cbor", length = 65535)
+	private byte[] resultCbor; // topCauses / verificationSteps / suggestedFixes 的 CBOR 编码（见 AnalysisResultCodec）
+
+	@Column(name = "top_causes", columnDefinition = "TEXT")
+	private String topCauses; // JSON 格式，仅旧记录
+
+	@Column(name = "verification_steps", columnDefinition = "TEXT")
+	private String verificationSteps; // JSON 格式，仅旧记录
+
+	@Column(name = "suggested_fixes", columnDefinition = "TEXT")
+	private String suggestedFixes; // JSON 格式，仅旧记录
+
+	@Column(name = "need_more_info", columnDefinition = "TEXT")
+	private String needMoreInfo;
+
+	@Column(name = "created_at")
+	private LocalDateTime createdAt;
+
+	public SharedAnalysisResult() {
+		this.createdAt = LocalDateTime.now();
+	}
+
+	// Getter 和 Setter
+	public Long getId() {
+		return id;
+	}
+
+	public void setId(Long id) {
+		this.id = id;
+	}
+
+	public String getContentHash() {
+		return contentHash;
+	}
+
+	public void setContentHash(String contentHash) {
+		this.contentHash = contentHash;
+	}
+
+	public String getTldr() {
+		return tldr;
+	}
+
+	public void setTldr(String tldr) {
+		this.tldr = tldr;
+	}
+
+	public byte[] getResultCbor() {
+		return resultCbor;
+	}
+
+	public void setResultCbor(byte[] resultCbor) {
+		this.resultCbor = resultCbor;
+	}
+
+	public String getTopCauses() {
+		return topCauses;
+	}
+
+	public void setTopCauses(String topCauses) {
+		this.topCauses = topCauses;
+	}
+
+	public String getVerificationSteps() {
+		return verificationSteps;
+	}
+
+	public void setVerificationSteps(String verificationSteps) {
+		this.verificationSteps = verificationSteps;
+	}
+
+	public String getSuggestedFixes() {
+		return suggestedFixes;
+	}
+
+	public void setSuggestedFixes(String suggestedFixes) {
+		this.suggestedFixes = suggestedFixes;
+	}
+
+	public String getNeedMoreInfo() {
+		return needMoreInfo;
+	}
+
+	public void setNeedMoreInfo(String needMoreInfo) {
+		this.needMoreInfo = needMoreInfo;
+	}
+
+	public LocalDateTime getCreatedAt() {
+		return createdAt;
+	}
+
+	public void setCreatedAt(LocalDateTime createdAt) {
+		this.createdAt = createdAt;
+	}
+}
@@ -0,0 +1,7 @@
+package com.example.demo.model;
+
+/**
+ * 修复建议（risk：低 / 中 / 高）
+ */
+public record SuggestedFix(String fix, String risk) {
+}
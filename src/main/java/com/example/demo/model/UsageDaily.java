@@ -12,7 +12,8 @@ import java.time.LocalDate;
 })
 public class UsageDaily {
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "usage_daily_seq")
+	@SequenceGenerator(name = "usage_daily_seq", sequenceName = "usage_daily_seq", allocationSize = 50) // 允许批量插入
 	private Long id;
 
 	@Column(name = "user_id", nullable = false)
@@ -0,0 +1,7 @@
+package com.example.demo.model;
+
+/**
+ * 验证步骤：做什么、为什么、可直接复制的命令
+ */
+public record VerificationStep(String step, String why, String command) {
+}
@@ -4,6 +4,8 @@ import com.example.demo.model.AnalysisCache;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -13,4 +15,7 @@ import java.util.Optional;
 public interface AnalysisCacheRepository extends JpaRepository<AnalysisCache, Long> {
 	// 根据用户ID和日志哈希查找缓存
 	Optional<AnalysisCache> findByUserIdAndLogHash(Long userId, String logHash);
+
+	/** 批量分析：一次查出多个哈希的缓存 */
+	List<AnalysisCache> findByUserIdAndLogHashIn(Long userId, Collection<String> logHashes);
 }
@@ -0,0 +1,18 @@
+package com.example.demo.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * 历史列表投影：只查询列表需要的列，不加载日志正文和 JSON 字段
+ */
+public interface HistoryRow {
+	Long getId();
+
+	String getTitle();
+
+	LocalDateTime getCreatedAt();
+
+	String getErrorCategory();
+
+	String getHistorySummary();
+}
@@ -0,0 +1,20 @@
+package com.example.demo.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * 重建历史搜索索引所需的列
+ */
+public interface IndexSourceRow {
+	Long getId();
+
+	Long getUserId();
+
+	String getTitle();
+
+	String getSanitizedLog();
+
+	LocalDateTime getCreatedAt();
+
+	String getErrorCategory();
+}
@@ -1,11 +1,15 @@
 package com.example.demo.repository;
 
 import com.example.demo.model.LogAnalysis;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -14,17 +18,62 @@ import java.util.List;
 @Repository
 public interface LogAnalysisRepository extends JpaRepository<LogAnalysis, Long> {
 
+	/** 历史列表只查询列表列；游标条件对应 (user_id, created_at, id) 索引 */
+	String HISTORY_COLUMNS = "SELECT la.id AS id, la.title AS title, la.createdAt AS createdAt, "
+			+ "la.errorCategory AS errorCategory, la.historySummary AS historySummary FROM LogAnalysis la ";
+
+	String BEFORE_CURSOR = " AND (la.createdAt < :cursorTime OR (la.createdAt = :cursorTime AND la.id < :cursorId)) "
+			+ "ORDER BY la.createdAt DESC, la.id DESC";
+
+	String MATCHES_QUERY = " AND (LOWER(la.title) LIKE LOWER(CONCAT('%', :q, '%')) "
+			+ "OR LOWER(la.sanitizedLog) LIKE LOWER(CONCAT('%', :q, '%')))";
+
 	/** 根据用户ID查找所有分析报告，按创建时间倒序 */
 	List<LogAnalysis> findByUserIdOrderByCreatedAtDesc(Long userId);
 
-	/** 按用户 + 错误分类筛选，按创建时间倒序 */
-	List<LogAnalysis> findByUserIdAndErrorCategoryOrderByCreatedAtDesc(Long userId, String errorCategory);
+	/** 历史列表：游标 (cursorTime, cursorId) 之后的一页 */
+	@Query(HISTORY_COLUMNS + "WHERE la.userId = :userId" + BEFORE_CURSOR)
+	List<HistoryRow> findHistoryPage(@Param("userId") Long userId, @Param("cursorTime") LocalDateTime cursorTime,
+			@Param("cursorId") Long cursorId, Limit limit);
+
+	/** 历史列表：按错误分类筛选 */
+	@Query(HISTORY_COLUMNS + "WHERE la.userId = :userId AND la.errorCategory = :cat" + BEFORE_CURSOR)
+	List<HistoryRow> findHistoryPageByCategory(@Param("userId") Long userId, @Param("cat") String cat,
+			@Param("cursorTime") LocalDateTime cursorTime, @Param("cursorId") Long cursorId, Limit limit);
+
+	/** 历史列表：关键词搜索（title 或 sanitizedLog 包含） */
+	@Query(HISTORY_COLUMNS + "WHERE la.userId = :userId" + MATCHES_QUERY + BEFORE_CURSOR)
+	List<HistoryRow> searchHistoryPage(@Param("userId") Long userId, @Param("q") String q,
+			@Param("cursorTime") LocalDateTime cursorTime, @Param("cursorId") Long cursorId, Limit limit);
+
+	/** 历史列表：分类 + 关键词搜索 */
+	@Query(HISTORY_COLUMNS + "WHERE la.userId = :userId AND la.errorCategory = :cat" + MATCHES_QUERY + BEFORE_CURSOR)
+	List<HistoryRow> searchHistoryPageByCategory(@Param("userId") Long userId, @Param("cat") String cat,
+			@Param("q") String q, @Param("cursorTime") LocalDateTime cursorTime, @Param("cursorId") Long cursorId,
+			Limit limit);
+
+	/** 历史列表：按 ID 取指定记录（搜索索引命中后取当前页） */
+	@Query(HISTORY_COLUMNS + "WHERE la.userId = :userId AND la.id IN :ids")
+	List<HistoryRow> findHistoryRowsByIds(@Param("userId") Long userId, @Param("ids") Collection<Long> ids);
+
+	/** 重建搜索索引：按 ID 分批读取 */
+	@Query("SELECT la.id AS id, la.userId AS userId, la.title AS title, la.sanitizedLog AS sanitizedLog, "
+			+ "la.createdAt AS createdAt, la.errorCategory AS errorCategory FROM LogAnalysis la "
+			+ "WHERE la.id > :afterId ORDER BY la.id")
+	List<IndexSourceRow> findIndexSource(@Param("afterId") Long afterId, Limit limit);
+
+	String SUMMARY_SOURCE_COLUMNS = "SELECT la.id AS id, la.resultCbor AS resultCbor, la.topCauses AS topCauses, "
+			+ "la.tldr AS tldr, la.sharedResultId AS sharedResultId FROM LogAnalysis la ";
+
+	/** 摘要尚未计算的记录（按 ID 取） */
+	@Query(SUMMARY_SOURCE_COLUMNS + "WHERE la.id IN :ids")
+	List<SummarySourceRow> findSummarySources(@Param("ids") Collection<Long> ids);
 
-	/** 按用户 + 关键词搜索（title 或 sanitizedLog 包含），按创建时间倒序 */
-	@Query("SELECT la FROM LogAnalysis la WHERE la.userId = :userId AND (LOWER(la.title) LIKE LOWER(CONCAT('%', :q, '%')) OR LOWER(la.sanitizedLog) LIKE LOWER(CONCAT('%', :q, '%'))) ORDER BY la.createdAt DESC")
-	List<LogAnalysis> searchByUserIdAndQueryOrderByCreatedAtDesc(@Param("userId") Long userId, @Param("q") String q);
+	/** 回填摘要：按 ID 分批读取尚未保存摘要的记录 */
+	@Query(SUMMARY_SOURCE_COLUMNS + "WHERE la.historySummary IS NULL AND la.id > :afterId ORDER BY la.id")
+	List<SummarySourceRow> findSummarySourcesMissingSummary(@Param("afterId") Long afterId, Limit limit);
 
-	/** 按用户 + 分类 + 关键词搜索，按创建时间倒序 */
-	@Query("SELECT la FROM LogAnalysis la WHERE la.userId = :userId AND la.errorCategory = :cat AND (LOWER(la.title) LIKE LOWER(CONCAT('%', :q, '%')) OR LOWER(la.sanitizedLog) LIKE LOWER(CONCAT('%', :q, '%'))) ORDER BY la.createdAt DESC")
-	List<LogAnalysis> searchByUserIdAndCategoryAndQueryOrderByCreatedAtDesc(@Param("userId") Long userId, @Param("cat") String cat, @Param("q") String q);
+	@Modifying
+	@Query("UPDATE LogAnalysis la SET la.historySummary = :summary WHERE la.id = :id")
+	int updateHistorySummary(@Param("id") Long id, @Param("summary") String summary);
 }
@@ -0,0 +1,16 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.SharedAnalysisResult;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+/**
+ * 共享分析输出数据访问接口
+ */
+@Repository
+public interface SharedAnalysisResultRepository extends JpaRepository<SharedAnalysisResult, Long> {
+	// 根据内容哈希查找共享结果
+	Optional<SharedAnalysisResult> findByContentHash(String contentHash);
+}
@@ -0,0 +1,16 @@
+package com.example.demo.repository;
+
+/**
+ * 计算历史摘要所需的列（回填尚未保存摘要的旧记录）
+ */
+public interface SummarySourceRow {
+	Long getId();
+
+	byte[] getResultCbor();
+
+	String getTopCauses();
+
+	String getTldr();
+
+	Long getSharedResultId();
+}
@@ -2,6 +2,9 @@ package com.example.demo.repository;
 
 import com.example.demo.model.UsageDaily;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
@@ -14,4 +17,9 @@ import java.util.Optional;
 public interface UsageDailyRepository extends JpaRepository<UsageDaily, Long> {
 	// 根据用户ID和日期查找使用记录
 	Optional<UsageDaily> findByUserIdAndDate(Long userId, LocalDate date);
+
+	/** 原子累加当天计数，返回更新行数（0 表示当天还没有记录） */
+	@Modifying
+	@Query("UPDATE UsageDaily u SET u.count = u.count + :delta WHERE u.userId = :userId AND u.date = :date")
+	int addToCount(@Param("userId") Long userId, @Param("date") LocalDate date, @Param("delta") int delta);
 }
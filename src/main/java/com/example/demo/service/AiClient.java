@@ -0,0 +1,132 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Cause;
+import com.example.demo.model.SuggestedFix;
+import com.example.demo.model.VerificationStep;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * AI 分析客户端：FakeAiClient（默认，本地规则）或 HttpAiClient（远程模型服务），
+ * 由 logsage.ai.provider 选择
+ */
+public interface AiClient {
+
+	/**
+	 * 分析日志并返回结构化结果
+	 *
+	 * @param profile   调用方已算好的匹配画像（按根因分类）
+	 * @param rootCause 调用方解析出的根因异常，没有异常时为 null
+	 */
+	AnalysisResult analyzeLog(String sanitizedLog, LogProfile profile, LogParser.ExceptionInfo rootCause,
+			String logType, boolean generateActionList, String depth, String tried);
+
+	/**
+	 * 流式分析：每生成一个部分立即回调 listener（在调用线程上），最后返回完整结果
+	 * <p>
+	 * 默认实现在完整结果返回后依次回调；能逐段产出结果的实现应覆盖此方法。
+	 */
+	default AnalysisResult analyzeLog(String sanitizedLog, LogProfile profile, LogParser.ExceptionInfo rootCause,
+			String logType, boolean generateActionList, String depth, String tried, Consumer<PartialResult> listener) {
+		AnalysisResult result = analyzeLog(sanitizedLog, profile, rootCause, logType, generateActionList, depth, tried);
+		PartialResult.emitAll(result.getTldr(), result.getTopCauses(), result.getVerificationSteps(),
+				result.getSuggestedFixes(), result.getNeedMoreInfo(), listener);
+		return result;
+	}
+
+	/**
+	 * 结果的一个部分：section 为 tldr / topCauses / verificationSteps / suggestedFixes / needMoreInfo
+	 */
+	record PartialResult(String section, Object value) {
+
+		public static final String TLDR = "tldr";
+		public static final String TOP_CAUSES = "topCauses";
+		public static final String VERIFICATION_STEPS = "verificationSteps";
+		public static final String SUGGESTED_FIXES = "suggestedFixes";
+		public static final String NEED_MORE_INFO = "needMoreInfo";
+
+		/**
+		 * 按固定顺序回调全部部分（跳过为 null 的部分）
+		 */
+		public static void emitAll(String tldr, List<Cause> topCauses, List<VerificationStep> verificationSteps,
+				List<SuggestedFix> suggestedFixes, String needMoreInfo, Consumer<PartialResult> listener) {
+			emit(listener, TLDR, tldr);
+			emit(listener, TOP_CAUSES, topCauses);
+			emit(listener, VERIFICATION_STEPS, verificationSteps);
+			emit(listener, SUGGESTED_FIXES, suggestedFixes);
+			emit(listener, NEED_MORE_INFO, needMoreInfo);
+		}
+
+		static void emit(Consumer<PartialResult> listener, String section, Object value) {
+			if (value != null) {
+				listener.accept(new PartialResult(section, value));
+			}
+		}
+	}
+
+	/**
+	 * 分析结果（各实现共用）
+	 */
+	class AnalysisResult {
+		private String tldr;
+		private List<Cause> topCauses;
+		private List<VerificationStep> verificationSteps;
+		private List<SuggestedFix> suggestedFixes;
+		private String needMoreInfo;
+
+		/** 预先编码好的 result_cbor（规则结果未经 tried 过滤时提供），为 null 时保存时再编码 */
+		@JsonIgnore
+		private byte[] encoded;
+
+		// Getter 和 Setter
+		public String getTldr() {
+			return tldr;
+		}
+
+		public void setTldr(String tldr) {
+			this.tldr = tldr;
+		}
+
+		public List<Cause> getTopCauses() {
+			return topCauses;
+		}
+
+		public void setTopCauses(List<Cause> topCauses) {
+			this.topCauses = topCauses;
+		}
+
+		public List<VerificationStep> getVerificationSteps() {
+			return verificationSteps;
+		}
+
+		public void setVerificationSteps(List<VerificationStep> verificationSteps) {
+			this.verificationSteps = verificationSteps;
+		}
+
+		public List<SuggestedFix> getSuggestedFixes() {
+			return suggestedFixes;
+		}
+
+		public void setSuggestedFixes(List<SuggestedFix> suggestedFixes) {
+			this.suggestedFixes = suggestedFixes;
+		}
+
+		public String getNeedMoreInfo() {
+			return needMoreInfo;
+		}
+
+		public void setNeedMoreInfo(String needMoreInfo) {
+			this.needMoreInfo = needMoreInfo;
+		}
+
+		public byte[] getEncoded() {
+			return encoded;
+		}
+
+		public void setEncoded(byte[] encoded) {
+			this.encoded = encoded;
+		}
+	}
+}
@@ -0,0 +1,181 @@
+package com.example.demo.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.util.function.Supplier;
+
+/**
+ * JDK Flight Recorder 事件：每个分析请求一个 {@link Request}，其中每个阶段一个 {@link Stage}
+ * <p>
+ * 录制时可以按单个慢请求查看各阶段耗时，并与同一时间段的 GC、锁竞争对照：
+ * {@code jcmd <pid> JFR.start name=logsage settings=default}，再用 JMC 或 {@code jfr print --events logsage.*} 查看。
+ * 不记录调用栈；未开启录制时 begin / commit 只是一次判断，当前请求也不写入线程变量。
+ * 阶段事件从当前线程的请求事件上取用户 ID；不在请求内（如批量分析的工作线程）时为 0。
+ * 数据库查询也记为阶段（stage 为 db，detail 为查询名），历史列表、报告详情等请求外的查询带上查询的用户 ID。
+ */
+public final class AnalysisEvents {
+
+	private static final ThreadLocal<Request> CURRENT = new ThreadLocal<>();
+
+	private AnalysisEvents() {
+	}
+
+	@Name("logsage.AnalysisRequest")
+	@Label("Log Analysis")
+	@Description("一次日志分析请求（文本框、流式或上传）")
+	@Category({ "LogSage", "Analysis" })
+	@StackTrace(false)
+	public static final class Request extends Event {
+		@Label("User Id")
+		long userId;
+
+		@Label("Source")
+		@Description("text（表单提交）/ stream（流式）/ upload（上传）")
+		String source;
+
+		@Label("Log Type")
+		String logType;
+
+		@Label("Log Size")
+		@Description("日志字符数（上传为全文长度）")
+		long logSize;
+
+		@Label("Category")
+		@Description("错误分类：NPE / BEAN / PORT / SQL / CONFIG")
+		String category;
+
+		@Label("Cache Outcome")
+		@Description("uncacheable / memory_hit / db_hit / miss / recheck_hit（合并前的二次确认查到了刚提交的结果）/ "
+				+ "coalesced（等到了并发的相同请求的结果）/ shared；在查询缓存之前失败时为空")
+		String cacheOutcome;
+
+		@Label("Succeeded")
+		boolean succeeded;
+
+		/** 开始时录制已开启（录制中途开启或关闭时以开始时为准） */
+		transient boolean started;
+	}
+
+	@Name("logsage.AnalysisStage")
+	@Label("Log Analysis Stage")
+	@Description("分析请求中的一个阶段（脱敏、哈希、缓存查询、额度、AI、保存）或一次数据库查询")
+	@Category({ "LogSage", "Analysis" })
+	@StackTrace(false)
+	public static final class Stage extends Event {
+		@Label("User Id")
+		long userId;
+
+		@Label("Stage")
+		String stage;
+
+		@Label("Detail")
+		@Description("阶段的补充信息，如命中的规则名、数据库查询名")
+		String detail;
+	}
+
+	/**
+	 * 开始一个请求事件，并作为当前线程的请求（直到 {@link #end}）
+	 */
+	static Request begin(Long userId, String source, String logType) {
+		Request event = new Request();
+		if (event.isEnabled()) {
+			event.userId = userId != null ? userId : 0;
+			event.source = source;
+			event.logType = logType;
+			event.started = true;
+			CURRENT.set(event);
+			event.begin();
+		}
+		return event;
+	}
+
+	/**
+	 * 结束并提交请求事件；开始时未开启录制则什么也不做
+	 */
+	static void end(Request event, boolean succeeded) {
+		if (!event.started) {
+			return;
+		}
+		CURRENT.remove();
+		event.end();
+		if (event.shouldCommit()) {
+			event.succeeded = succeeded;
+			event.commit();
+		}
+	}
+
+	/** 当前线程的请求事件（未录制或不在请求内时为 null） */
+	private static Request current() {
+		return CURRENT.get();
+	}
+
+	static void logSize(long chars) {
+		Request event = current();
+		if (event != null) {
+			event.logSize = chars;
+		}
+	}
+
+	static void category(String category) {
+		Request event = current();
+		if (event != null) {
+			event.category = category;
+		}
+	}
+
+	static void cacheOutcome(String outcome) {
+		Request event = current();
+		if (event != null) {
+			event.cacheOutcome = outcome;
+		}
+	}
+
+	/**
+	 * 开始一个阶段事件
+	 */
+	static Stage beginStage(String stage) {
+		Stage event = new Stage();
+		event.begin();
+		event.stage = stage;
+		return event;
+	}
+
+	/**
+	 * 结束并提交阶段事件
+	 *
+	 * @param detail 可为 null
+	 */
+	static void endStage(Stage event, String detail) {
+		endStage(event, null, detail);
+	}
+
+	/**
+	 * 执行一次数据库查询，并发出 stage 为 db 的阶段事件
+	 *
+	 * @param userId 查询的用户 ID，不在请求内时记在事件上
+	 * @param name   查询名（Repository.method），记为 detail
+	 */
+	static <T> T query(Long userId, String name, Supplier<T> query) {
+		Stage event = beginStage("db");
+		try {
+			return query.get();
+		} finally {
+			endStage(event, userId, name);
+		}
+	}
+
+	private static void endStage(Stage event, Long userId, String detail) {
+		event.end();
+		if (event.shouldCommit()) {
+			Request request = current();
+			event.userId = request != null ? request.userId : userId != null ? userId : 0;
+			event.detail = detail;
+			event.commit();
+		}
+	}
+}
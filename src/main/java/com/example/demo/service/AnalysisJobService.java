@@ -0,0 +1,188 @@
+package com.example.demo.service;
+
+import com.example.demo.model.AnalysisJob;
+import com.example.demo.model.AnalysisReport;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 异步分析任务：提交后立即返回任务 ID，由有界线程池执行 analyzeLog
+ * <p>
+ * 队列满或用户进行中的任务过多时直接拒绝（每用户名额原子地占用与释放）；结束的任务保留 retention-minutes 后清理。
+ * 取消只改变任务状态，不中断正在执行的线程（中断可能打断数据库 I/O），其结果会被丢弃。
+ */
+@Service
+public class AnalysisJobService {
+	@Autowired
+	private LogAnalysisService logAnalysisService;
+
+	@Autowired
+	private AnalysisMetrics analysisMetrics;
+
+	@Value("${logsage.jobs.workers:4}")
+	private int workers;
+
+	@Value("${logsage.jobs.queue-capacity:100}")
+	private int queueCapacity;
+
+	@Value("${logsage.jobs.max-per-user:5}")
+	private int maxPerUser;
+
+	@Value("${logsage.jobs.retention-minutes:30}")
+	private long retentionMinutes;
+
+	private final ConcurrentHashMap<String, AnalysisJob> jobs = new ConcurrentHashMap<>();
+
+	/** 每个用户未结束的任务数：提交时原子地占用，任务结束（成功、失败或取消）时释放 */
+	private final ConcurrentHashMap<Long, Integer> activeByUser = new ConcurrentHashMap<>();
+
+	private ThreadPoolExecutor executor;
+
+	@PostConstruct
+	void init() {
+		AtomicInteger threadNumber = new AtomicInteger();
+		executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(queueCapacity),
+				runnable -> {
+					Thread thread = new Thread(runnable, "analysis-job-" + threadNumber.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				},
+				new ThreadPoolExecutor.AbortPolicy());
+		executor.allowCoreThreadTimeOut(true);
+		analysisMetrics.gauge("logsage.jobs.queue.depth", "排队中的分析任务数", this, AnalysisJobService::getQueueDepth);
+		analysisMetrics.gauge("logsage.jobs.active", "正在执行的分析任务数", executor, ThreadPoolExecutor::getActiveCount);
+	}
+
+	@PreDestroy
+	void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * 提交分析任务
+	 *
+	 * @throws IllegalArgumentException 输入不合法
+	 * @throws JobRejectedException     队列已满或进行中的任务过多
+	 */
+	public AnalysisJob submit(Long userId, String rawLog, String logType, boolean sanitize,
+			boolean generateActionList, String depth, String tried) {
+		// 与同步接口一致的输入检查，尽早拒绝
+		if (rawLog == null || rawLog.isBlank() || logType == null) {
+			throw new IllegalArgumentException("rawLog 和 logType 不能为空");
+		}
+		if (rawLog.length() > LogAnalysisService.MAX_INPUT_CHARS) {
+			throw new IllegalArgumentException(LogAnalysisService.INPUT_TOO_LONG);
+		}
+		reserveSlot(userId);
+
+		AnalysisJob job = new AnalysisJob(UUID.randomUUID().toString(), userId);
+		jobs.put(job.getId(), job);
+		try {
+			executor.execute(() -> run(job, rawLog, logType, sanitize, generateActionList, depth, tried));
+		} catch (RejectedExecutionException e) {
+			jobs.remove(job.getId());
+			releaseSlot(userId);
+			throw new JobRejectedException("分析队列已满，请稍后重试");
+		}
+		return job;
+	}
+
+	/**
+	 * 占用一个进行中名额（检查与加一在同一次 compute 中完成，并发提交不会超过上限）
+	 */
+	private void reserveSlot(Long userId) {
+		activeByUser.compute(userId, (id, active) -> {
+			int count = active != null ? active : 0;
+			if (count >= maxPerUser) {
+				throw new JobRejectedException("进行中的分析任务过多（最多 " + maxPerUser + " 个）");
+			}
+			return count + 1;
+		});
+	}
+
+	/**
+	 * 释放名额；只在任务转入结束状态的那一次调用（AnalysisJob 的状态转换只会成功一次）
+	 */
+	private void releaseSlot(Long userId) {
+		activeByUser.computeIfPresent(userId, (id, active) -> active > 1 ? active - 1 : null);
+	}
+
+	private void run(AnalysisJob job, String rawLog, String logType, boolean sanitize,
+			boolean generateActionList, String depth, String tried) {
+		if (!job.markRunning()) {
+			// 排队期间已取消（取消时已释放名额）
+			return;
+		}
+		boolean finished;
+		try {
+			AnalysisReport report = logAnalysisService.analyzeLog(job.getUserId(), rawLog, logType, sanitize,
+					generateActionList, depth, tried);
+			finished = job.succeed(report);
+		} catch (RuntimeException e) {
+			finished = job.fail(e.getMessage());
+		}
+		// 执行中被取消时 succeed / fail 返回 false，名额已在取消时释放
+		if (finished) {
+			releaseSlot(job.getUserId());
+		}
+	}
+
+	/**
+	 * 查询任务（仅限本人）
+	 */
+	public Optional<AnalysisJob> find(String jobId, Long userId) {
+		AnalysisJob job = jobs.get(jobId);
+		if (job != null && job.getUserId().equals(userId)) {
+			return Optional.of(job);
+		}
+		return Optional.empty();
+	}
+
+	/**
+	 * 取消任务（仅限本人）；已结束的任务保持原状态
+	 */
+	public Optional<AnalysisJob> cancel(String jobId, Long userId) {
+		Optional<AnalysisJob> job = find(jobId, userId);
+		job.ifPresent(found -> {
+			if (found.cancel()) {
+				releaseSlot(userId);
+			}
+		});
+		return job;
+	}
+
+	/**
+	 * 清理已结束且超过保留时间的任务
+	 */
+	@Scheduled(fixedDelayString = "${logsage.jobs.sweep-interval-ms:60000}")
+	public void expireFinishedJobs() {
+		LocalDateTime cutoff = LocalDateTime.now().minusMinutes(retentionMinutes);
+		jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(cutoff));
+	}
+
+	/**
+	 * 排队中（尚未开始执行）的任务数
+	 */
+	public int getQueueDepth() {
+		return executor.getQueue().size();
+	}
+
+	public int getActiveCount() {
+		return executor.getActiveCount();
+	}
+}
@@ -0,0 +1,181 @@
+package com.example.demo.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 分析流水线的指标（Micrometer，经 /actuator/prometheus 导出）
+ * <p>
+ * 各阶段耗时：logsage.analysis.stage{stage=...}；缓存命中：logsage.analysis.cache{result=...}，
+ * 另有进程内缓存自身的命中/未命中/淘汰计数；额度拒绝、日志长度与结果大小分布、历史查询耗时。
+ * 计时器与分布都发布直方图桶，分位数在 Prometheus 端计算；单个慢请求的各阶段见 {@link AnalysisEvents}。
+ */
+@Component
+public class AnalysisMetrics {
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Autowired
+	private AnalysisResultCache analysisResultCache;
+
+	/**
+	 * /analyze 的各个阶段
+	 */
+	public enum Stage {
+		/** 脱敏 */
+		SANITIZE,
+		/** 指纹与缓存键 */
+		HASH,
+		/** 进程内缓存 + analysis_cache 查询 */
+		CACHE_LOOKUP,
+		/** 扣减每日额度 */
+		USAGE,
+		/** AI 调用 */
+		AI,
+		/** 保存分析记录与缓存 */
+		PERSIST;
+
+		final String tag = name().toLowerCase();
+	}
+
+	private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
+
+	private Counter memoryHits;
+	private Counter databaseHits;
+	private Counter cacheMisses;
+	private Counter quotaRejections;
+	private DistributionSummary logSize;
+	private DistributionSummary resultSize;
+	private Timer historyIndexQuery;
+	private Timer historyDatabaseQuery;
+
+	@PostConstruct
+	void init() {
+		for (Stage stage : Stage.values()) {
+			stageTimers.put(stage, Timer.builder("logsage.analysis.stage")
+					.description("分析流水线各阶段耗时")
+					.tag("stage", stage.tag)
+					.publishPercentileHistogram()
+					.register(meterRegistry));
+		}
+		memoryHits = cacheCounter("memory_hit");
+		databaseHits = cacheCounter("db_hit");
+		cacheMisses = cacheCounter("miss");
+		quotaRejections = Counter.builder("logsage.quota.rejected")
+				.description("因每日额度不足被拒绝的分析请求")
+				.register(meterRegistry);
+		logSize = DistributionSummary.builder("logsage.analysis.log.size")
+				.description("提交分析的日志长度")
+				.baseUnit("chars")
+				.publishPercentileHistogram()
+				.register(meterRegistry);
+		resultSize = DistributionSummary.builder("logsage.analysis.result.size")
+				.description("编码后的分析结果（result_cbor）大小")
+				.baseUnit("bytes")
+				.publishPercentileHistogram()
+				.register(meterRegistry);
+		historyIndexQuery = historyTimer("index");
+		historyDatabaseQuery = historyTimer("database");
+
+		// 进程内缓存（Caffeine）自身的统计
+		functionCounter("logsage.cache.results.hits", "进程内结果缓存命中次数", analysisResultCache,
+				cache -> cache.stats().hitCount());
+		functionCounter("logsage.cache.results.misses", "进程内结果缓存未命中次数", analysisResultCache,
+				cache -> cache.stats().missCount());
+		functionCounter("logsage.cache.results.evictions", "进程内结果缓存淘汰次数", analysisResultCache,
+				cache -> cache.stats().evictionCount());
+		gauge("logsage.cache.results.size", "进程内结果缓存条目数（估计值）", analysisResultCache,
+				AnalysisResultCache::estimatedSize);
+	}
+
+	private Counter cacheCounter(String result) {
+		return Counter.builder("logsage.analysis.cache")
+				.description("可缓存请求的缓存查询结果")
+				.tag("result", result)
+				.register(meterRegistry);
+	}
+
+	private Timer historyTimer(String source) {
+		return Timer.builder("logsage.history.query")
+				.description("历史列表查询耗时（index：倒排索引搜索，database：游标分页查询）")
+				.tag("source", source)
+				.publishPercentileHistogram()
+				.register(meterRegistry);
+	}
+
+	/**
+	 * 计时执行某个阶段，同时发出该阶段的飞行记录器事件（见 AnalysisEvents）
+	 */
+	public <T> T time(Stage stage, Supplier<T> work) {
+		AnalysisEvents.Stage event = AnalysisEvents.beginStage(stage.tag);
+		try {
+			return stageTimers.get(stage).record(work);
+		} finally {
+			AnalysisEvents.endStage(event, null);
+		}
+	}
+
+	/**
+	 * 缓存命中：memory 为进程内缓存命中，否则为 analysis_cache 命中
+	 */
+	public void cacheHit(boolean memory) {
+		(memory ? memoryHits : databaseHits).increment();
+	}
+
+	public void cacheMiss() {
+		cacheMisses.increment();
+	}
+
+	public void quotaRejected() {
+		quotaRejections.increment();
+	}
+
+	public void logSize(long chars) {
+		logSize.record(chars);
+	}
+
+	public void resultSize(int bytes) {
+		resultSize.record(bytes);
+	}
+
+	/**
+	 * 记录一次历史查询耗时
+	 *
+	 * @param index 是否走倒排索引
+	 */
+	public void historyQuery(boolean index, long nanos) {
+		(index ? historyIndexQuery : historyDatabaseQuery).record(nanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * 注册由对象自身累计的计数（如合并的重复请求数）
+	 */
+	public <T> void functionCounter(String name, String description, T obj, ToDoubleFunction<T> count) {
+		FunctionCounter.builder(name, obj, count)
+				.description(description)
+				.register(meterRegistry);
+	}
+
+	/**
+	 * 注册瞬时值（如任务队列长度）
+	 */
+	public <T> void gauge(String name, String description, T obj, ToDoubleFunction<T> value) {
+		Gauge.builder(name, obj, value)
+				.description(description)
+				.register(meterRegistry);
+	}
+}
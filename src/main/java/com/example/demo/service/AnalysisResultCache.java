@@ -0,0 +1,81 @@
+package com.example.demo.service;
+
+import com.example.demo.model.AnalysisReport;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+
+/**
+ * 进程内分析结果缓存：(userId, logHash) -> 可直接渲染的报告
+ * <p>
+ * 位于 AnalysisCacheRepository 之前，命中时不访问数据库、不解码结果。
+ * 基于 Caffeine（W-TinyLFU 淘汰，按访问频率保留热点），容量与 TTL 可配置，记录命中/未命中/淘汰统计。
+ */
+@Component
+public class AnalysisResultCache {
+
+	@Value("${logsage.cache.maximum-size:10000}")
+	private long maximumSize;
+
+	@Value("${logsage.cache.ttl-minutes:60}")
+	private long ttlMinutes;
+
+	private Cache<Key, AnalysisReport> cache;
+
+	record Key(Long userId, String logHash) {
+	}
+
+	@PostConstruct
+	void init() {
+		cache = Caffeine.newBuilder()
+				.maximumSize(maximumSize)
+				.expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+				.recordStats()
+				.build();
+	}
+
+	/**
+	 * 查询缓存，未命中返回 null
+	 */
+	public AnalysisReport get(Long userId, String logHash) {
+		return cache.getIfPresent(new Key(userId, logHash));
+	}
+
+	public void put(Long userId, String logHash, AnalysisReport report) {
+		cache.put(new Key(userId, logHash), report);
+	}
+
+	/**
+	 * 写穿：在当前事务提交后再放入缓存，避免缓存指向被回滚的记录
+	 */
+	public void putAfterCommit(Long userId, String logHash, AnalysisReport report) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			put(userId, logHash, report);
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				put(userId, logHash, report);
+			}
+		});
+	}
+
+	/**
+	 * 命中、未命中、淘汰等统计
+	 */
+	public CacheStats stats() {
+		return cache.stats();
+	}
+
+	public long estimatedSize() {
+		return cache.estimatedSize();
+	}
+}
@@ -0,0 +1,84 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Cause;
+import com.example.demo.model.SuggestedFix;
+import com.example.demo.model.VerificationStep;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 分析结果的存储编码：三个列表合并为一个 CBOR 值，写入 result_cbor 列
+ * <p>
+ * 读写器按类型预先构建、全局复用（线程安全），查看报告时只解码一次，直接得到类型化记录。
+ * 旧记录只有 top_causes 等 JSON 文本列，解码时回退到 JSON，字段名与记录组件一一对应。
+ */
+public class AnalysisResultCodec {
+
+	/**
+	 * 存储的结果（verificationSteps 未生成时为 null）
+	 */
+	public record Payload(List<Cause> topCauses, List<VerificationStep> verificationSteps,
+			List<SuggestedFix> suggestedFixes) {
+	}
+
+	private static final ObjectMapper CBOR = CBORMapper.builder()
+			.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+			.build();
+
+	private static final ObjectMapper JSON = new ObjectMapper()
+			.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+	private static final ObjectWriter PAYLOAD_WRITER = CBOR.writerFor(Payload.class);
+
+	private static final ObjectReader PAYLOAD_READER = CBOR.readerFor(Payload.class);
+
+	private static final ObjectReader LEGACY_CAUSES = JSON.readerForListOf(Cause.class);
+
+	private static final ObjectReader LEGACY_STEPS = JSON.readerForListOf(VerificationStep.class);
+
+	private static final ObjectReader LEGACY_FIXES = JSON.readerForListOf(SuggestedFix.class);
+
+	public byte[] encode(List<Cause> topCauses, List<VerificationStep> verificationSteps,
+			List<SuggestedFix> suggestedFixes) {
+		try {
+			return PAYLOAD_WRITER.writeValueAsBytes(new Payload(topCauses, verificationSteps, suggestedFixes));
+		} catch (IOException e) {
+			throw new RuntimeException("分析结果编码失败", e);
+		}
+	}
+
+	/**
+	 * 解码：有 CBOR 时只读 CBOR；否则逐列解析旧记录的 JSON（解析失败的列为 null）
+	 */
+	public Payload decode(byte[] resultCbor, String topCausesJson, String verificationStepsJson,
+			String suggestedFixesJson) {
+		if (resultCbor != null) {
+			try {
+				return PAYLOAD_READER.readValue(resultCbor);
+			} catch (IOException e) {
+				throw new RuntimeException("分析结果解码失败", e);
+			}
+		}
+		return new Payload(readLegacy(LEGACY_CAUSES, topCausesJson),
+				readLegacy(LEGACY_STEPS, verificationStepsJson),
+				readLegacy(LEGACY_FIXES, suggestedFixesJson));
+	}
+
+	private static <T> List<T> readLegacy(ObjectReader reader, String json) {
+		if (json == null) {
+			return null;
+		}
+		try {
+			return reader.readValue(json);
+		} catch (IOException e) {
+			// 与之前一致：忽略解析错误
+			return null;
+		}
+	}
+}
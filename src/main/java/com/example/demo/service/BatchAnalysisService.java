@@ -0,0 +1,358 @@
+package com.example.demo.service;
+
+import com.example.demo.model.AnalysisCache;
+import com.example.demo.model.AnalysisReport;
+import com.example.demo.model.LogAnalysis;
+import com.example.demo.repository.AnalysisCacheRepository;
+import com.example.demo.repository.LogAnalysisRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+/**
+ * 批量分析：一次请求提交多条日志（CI 流水线上报失败构建日志）
+ * <p>
+ * 1. 在有界线程池上并行脱敏、分类、计算缓存键；
+ * 2. 批量查询缓存，命中的直接返回已有报告；本批内相同内容只分析一次；
+ * 3. 需要分析的条数一次性扣减当日额度（不足时整批拒绝，不做部分分析）；
+ * 4. 并行调用 AI，最后在一个事务内批量写入 log_analysis 与 analysis_cache（JDBC batch）；
+ *    与并发的单条请求写入了相同缓存键时整批回滚，改为逐条写入，冲突的那条只保存记录、不写缓存。
+ * <p>
+ * 批量分析不参与共享模式，每条结果都保存在用户自己的记录上。
+ */
+@Service
+public class BatchAnalysisService {
+	@Autowired
+	private LogAnalysisService logAnalysisService;
+
+	@Autowired
+	private LogAnalysisRepository logAnalysisRepository;
+
+	@Autowired
+	private AnalysisCacheRepository analysisCacheRepository;
+
+	@Autowired
+	private AnalysisResultCache analysisResultCache;
+
+	@Autowired
+	private HistorySearchIndex historySearchIndex;
+
+	@Autowired
+	private DailyQuota dailyQuota;
+
+	@Autowired
+	private AiClient aiClient;
+
+	@Autowired
+	private AnalysisMetrics analysisMetrics;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Value("${logsage.batch.workers:4}")
+	private int workers;
+
+	@Value("${logsage.batch.max-items:100}")
+	private int maxItems;
+
+	private final LogParser logParser = new LogParser();
+
+	private ThreadPoolExecutor executor;
+
+	/**
+	 * 单条日志（字段含义与 POST /analyze 相同）
+	 */
+	public record Item(String rawLog, String logType, Boolean sanitize, Boolean generateActionList, String depth,
+			String tried) {
+	}
+
+	/**
+	 * 单条结果：status 为 OK 时有 report，为 ERROR 时有 error
+	 */
+	public record ItemResult(int index, String status, boolean cached, AnalysisReport report, String error) {
+	}
+
+	public record BatchResult(List<ItemResult> items, int analyzed, int cached, int failed) {
+	}
+
+	/** 脱敏、分类后的单条日志；error 不为 null 表示输入无效 */
+	private record Prepared(int index, String error, LogAnalysisService.LogInput input, LogProfile profile,
+			String logType, String optionsJson, String logHash, boolean generateActionList, String depth,
+			String tried) {
+	}
+
+	private record Analyzed(Prepared source, LogAnalysis analysis, AiClient.AnalysisResult aiResult) {
+	}
+
+	@PostConstruct
+	void init() {
+		AtomicInteger threadNumber = new AtomicInteger();
+		// 队列满时由提交线程自己执行，多个批次同时到达时自然限流
+		executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(maxItems),
+				runnable -> {
+					Thread thread = new Thread(runnable, "batch-analysis-" + threadNumber.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				},
+				new ThreadPoolExecutor.CallerRunsPolicy());
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	@PreDestroy
+	void shutdown() {
+		executor.shutdownNow();
+	}
+
+	public int getMaxItems() {
+		return maxItems;
+	}
+
+	/**
+	 * 分析一批日志，结果与输入顺序一致
+	 */
+	public BatchResult analyze(Long userId, List<Item> items) {
+		if (items.isEmpty()) {
+			throw new RuntimeException("至少需要一条日志");
+		}
+		if (items.size() > maxItems) {
+			throw new RuntimeException("单次最多提交 " + maxItems + " 条日志");
+		}
+
+		List<Prepared> prepared = parallel(items.size(), i -> prepare(i, items.get(i)));
+
+		Set<String> hashes = new HashSet<>();
+		for (Prepared item : prepared) {
+			if (item.error() == null && item.logHash() != null) {
+				hashes.add(item.logHash());
+			}
+		}
+		Map<String, AnalysisReport> cachedByHash = findCached(userId, hashes);
+
+		// 需要分析的日志按缓存键分组，本批内重复的内容只分析一次（不可缓存的各自一组）
+		Map<String, List<Prepared>> groups = new LinkedHashMap<>();
+		for (Prepared item : prepared) {
+			if (item.error() == null && !cachedByHash.containsKey(item.logHash())) {
+				String key = item.logHash() != null ? item.logHash() : "#" + item.index();
+				groups.computeIfAbsent(key, k -> new ArrayList<>()).add(item);
+			}
+		}
+
+		int needed = groups.size();
+		DailyQuota.Reservation reservation = needed > 0 ? dailyQuota.tryConsume(userId, needed) : null;
+		if (needed > 0 && reservation == null) {
+			throw new QuotaExceededException("今日剩余次数不足：本批需要分析 " + needed + " 条，剩余 "
+					+ dailyQuota.remaining(userId) + " 次");
+		}
+		Map<Integer, AnalysisReport> analyzedByIndex;
+		try {
+			List<Prepared> leaders = groups.values().stream().map(group -> group.get(0)).toList();
+			List<Analyzed> analyzed = parallel(leaders.size(), i -> analyzeOne(userId, leaders.get(i)));
+			analyzedByIndex = save(userId, analyzed);
+		} catch (RuntimeException e) {
+			// 额度是在事务之外扣减的，失败时手动退还
+			if (reservation != null) {
+				reservation.release();
+			}
+			throw e;
+		}
+
+		List<ItemResult> results = new ArrayList<>(prepared.size());
+		int cached = 0;
+		int failed = 0;
+		for (Prepared item : prepared) {
+			if (item.error() != null) {
+				results.add(new ItemResult(item.index(), "ERROR", false, null, item.error()));
+				failed++;
+				continue;
+			}
+			AnalysisReport report = cachedByHash.get(item.logHash());
+			if (report != null) {
+				results.add(new ItemResult(item.index(), "OK", true, report, null));
+				cached++;
+				continue;
+			}
+			String key = item.logHash() != null ? item.logHash() : "#" + item.index();
+			Prepared leader = groups.get(key).get(0);
+			results.add(new ItemResult(item.index(), "OK", leader != item, analyzedByIndex.get(leader.index()), null));
+		}
+		return new BatchResult(results, needed, cached, failed);
+	}
+
+	private Prepared prepare(int index, Item item) {
+		String rawLog = item != null ? item.rawLog() : null;
+		if (rawLog == null || rawLog.isBlank() || item.logType() == null) {
+			return invalid(index, "rawLog 和 logType 不能为空");
+		}
+		if (rawLog.length() > LogAnalysisService.MAX_INPUT_CHARS) {
+			return invalid(index, LogAnalysisService.INPUT_TOO_LONG);
+		}
+		boolean sanitize = item.sanitize() == null || item.sanitize();
+		boolean generateActionList = item.generateActionList() == null || item.generateActionList();
+		String depth = item.depth() != null ? item.depth() : "FAST";
+
+		String sanitizedLog = sanitize ? logAnalysisService.sanitizeLog(rawLog) : rawLog;
+		String optionsJson = logAnalysisService.buildOptionsJson(sanitize, generateActionList, depth);
+		String fingerprint = logAnalysisService.fingerprint(sanitizedLog);
+		// 只解析一次，画像与根因供缓存键、标题、分类、AI 分析共用
+		LogParser.ParsedLog parsed = logParser.parse(sanitizedLog);
+		LogProfile profile = logParser.classify(parsed, sanitizedLog);
+		String logHash = LogAnalysisService.isCacheable(item.tried())
+				? logAnalysisService.cacheKey(sanitizedLog, fingerprint, profile, item.logType(), optionsJson)
+				: null;
+		LogAnalysisService.LogInput input = new LogAnalysisService.LogInput(rawLog, sanitizedLog, fingerprint, parsed,
+				profile, null, null);
+		return new Prepared(index, null, input, profile, item.logType(), optionsJson, logHash, generateActionList,
+				depth, item.tried());
+	}
+
+	private static Prepared invalid(int index, String error) {
+		return new Prepared(index, error, null, null, null, null, null, false, null, null);
+	}
+
+	private Analyzed analyzeOne(Long userId, Prepared item) {
+		LogParser.ExceptionInfo rootCause = item.input().parsed().rootCause();
+		AiClient.AnalysisResult aiResult = analysisMetrics.time(AnalysisMetrics.Stage.AI,
+				() -> aiClient.analyzeLog(item.input().sanitizedLog(), item.profile(), rootCause, item.logType(),
+						item.generateActionList(), item.depth(), item.tried()));
+		LogAnalysis analysis = logAnalysisService.newAnalysis(userId, item.input(), item.profile(), rootCause,
+				item.logType(), item.optionsJson(), item.tried());
+		logAnalysisService.applyResult(analysis, aiResult);
+		return new Analyzed(item, analysis, aiResult);
+	}
+
+	/**
+	 * 先查进程内缓存，其余一次查询 analysis_cache 并批量读取对应记录
+	 */
+	private Map<String, AnalysisReport> findCached(Long userId, Collection<String> hashes) {
+		Map<String, AnalysisReport> found = new HashMap<>();
+		List<String> missing = new ArrayList<>();
+		for (String hash : hashes) {
+			AnalysisReport report = analysisResultCache.get(userId, hash);
+			if (report != null) {
+				found.put(hash, report);
+			} else {
+				missing.add(hash);
+			}
+		}
+		if (missing.isEmpty()) {
+			return found;
+		}
+		Map<Long, String> hashByAnalysisId = new HashMap<>();
+		for (AnalysisCache cache : analysisCacheRepository.findByUserIdAndLogHashIn(userId, missing)) {
+			hashByAnalysisId.put(cache.getAnalysisId(), cache.getLogHash());
+		}
+		for (LogAnalysis analysis : logAnalysisRepository.findAllById(hashByAnalysisId.keySet())) {
+			String hash = hashByAnalysisId.get(analysis.getId());
+			AnalysisReport report = logAnalysisService.toReport(analysis);
+			analysisResultCache.put(userId, hash, report);
+			found.put(hash, report);
+		}
+		return found;
+	}
+
+	/**
+	 * 一个事务内批量写入分析记录与缓存，提交后更新搜索索引与进程内缓存；
+	 * 缓存键与并发写入的记录冲突时整批回滚，改为逐条写入
+	 *
+	 * @return 组内第一条日志的序号 → 报告
+	 */
+	private Map<Integer, AnalysisReport> save(Long userId, List<Analyzed> analyzed) {
+		if (analyzed.isEmpty()) {
+			return new HashMap<>();
+		}
+		try {
+			return persist(userId, analyzed, true);
+		} catch (DataIntegrityViolationException e) {
+			Map<Integer, AnalysisReport> reports = new HashMap<>();
+			for (Analyzed item : analyzed) {
+				List<Analyzed> single = List.of(item);
+				try {
+					reports.putAll(persist(userId, single, true));
+				} catch (DataIntegrityViolationException duplicate) {
+					// 其他请求已为相同内容写入缓存：只保存本条记录
+					reports.putAll(persist(userId, single, false));
+				}
+			}
+			return reports;
+		}
+	}
+
+	private Map<Integer, AnalysisReport> persist(Long userId, List<Analyzed> analyzed, boolean writeCache) {
+		// 回滚后实体上留有已分配的 ID，重新写入前清除
+		for (Analyzed item : analyzed) {
+			item.analysis().setId(null);
+		}
+		Map<Integer, AnalysisReport> reports = new HashMap<>();
+		transactionTemplate.executeWithoutResult(status -> {
+			logAnalysisRepository.saveAll(analyzed.stream().map(Analyzed::analysis).toList());
+
+			// 分析期间单条请求可能已为相同内容写入了缓存，跳过这些键以免违反唯一约束
+			List<String> hashes = analyzed.stream()
+					.map(item -> item.source().logHash())
+					.filter(hash -> hash != null)
+					.toList();
+			Set<String> existing = new HashSet<>();
+			if (writeCache && !hashes.isEmpty()) {
+				for (AnalysisCache cache : analysisCacheRepository.findByUserIdAndLogHashIn(userId, hashes)) {
+					existing.add(cache.getLogHash());
+				}
+			}
+
+			List<AnalysisCache> cacheEntries = new ArrayList<>();
+			for (Analyzed item : analyzed) {
+				LogAnalysis saved = item.analysis();
+				AnalysisReport report = logAnalysisService.toReport(saved, item.aiResult());
+				reports.put(item.source().index(), report);
+				historySearchIndex.indexAfterCommit(saved);
+				String logHash = item.source().logHash();
+				if (writeCache && logHash != null && !existing.contains(logHash)) {
+					cacheEntries.add(new AnalysisCache(userId, logHash, saved.getId()));
+					analysisResultCache.putAfterCommit(userId, logHash, report);
+				}
+			}
+			// 在事务内刷新，检查之后才写入的冲突在这里抛出并回滚整个事务
+			analysisCacheRepository.saveAllAndFlush(cacheEntries);
+		});
+		return reports;
+	}
+
+	/**
+	 * 在线程池上并行执行 n 个任务，按序号返回结果
+	 */
+	private <T> List<T> parallel(int n, IntFunction<T> task) {
+		List<CompletableFuture<T>> futures = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			int index = i;
+			futures.add(CompletableFuture.supplyAsync(() -> task.apply(index), executor));
+		}
+		try {
+			return futures.stream().map(CompletableFuture::join).toList();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			}
+			throw e;
+		}
+	}
+}
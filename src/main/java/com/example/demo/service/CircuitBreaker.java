@@ -0,0 +1,76 @@
+package com.example.demo.service;
+
+import java.util.function.LongSupplier;
+
+/**
+ * 熔断器（线程安全）：连续失败达到阈值后打开，打开期间调用直接失败；
+ * 超过打开时长后半开，只放行一个试探调用，成功则关闭，失败则重新打开
+ */
+public final class CircuitBreaker {
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private final int failureThreshold;
+	private final long openNanos;
+	private final LongSupplier nanoClock;
+
+	private State state = State.CLOSED;
+	private int consecutiveFailures;
+	private long openedAt;
+	private boolean trialInFlight;
+
+	public CircuitBreaker(int failureThreshold, long openMillis) {
+		this(failureThreshold, openMillis, System::nanoTime);
+	}
+
+	CircuitBreaker(int failureThreshold, long openMillis, LongSupplier nanoClock) {
+		this.failureThreshold = Math.max(1, failureThreshold);
+		this.openNanos = openMillis * 1_000_000L;
+		this.nanoClock = nanoClock;
+	}
+
+	/**
+	 * 是否放行本次调用；放行后必须调用 {@link #onSuccess()} 或 {@link #onFailure()} 之一
+	 */
+	public synchronized boolean tryAcquire() {
+		switch (state) {
+			case CLOSED:
+				return true;
+			case OPEN:
+				if (nanoClock.getAsLong() - openedAt < openNanos) {
+					return false;
+				}
+				state = State.HALF_OPEN;
+				trialInFlight = true;
+				return true;
+			default:
+				// 半开：试探调用尚未结束时其余调用直接失败
+				if (trialInFlight) {
+					return false;
+				}
+				trialInFlight = true;
+				return true;
+		}
+	}
+
+	public synchronized void onSuccess() {
+		state = State.CLOSED;
+		consecutiveFailures = 0;
+		trialInFlight = false;
+	}
+
+	public synchronized void onFailure() {
+		trialInFlight = false;
+		consecutiveFailures++;
+		if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+			state = State.OPEN;
+			openedAt = nanoClock.getAsLong();
+		}
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+}
@@ -0,0 +1,271 @@
+package com.example.demo.service;
+
+import com.example.demo.model.UsageDaily;
+import com.example.demo.repository.UsageDailyRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 每日额度计数：内存中按 (userId, 日期) 原子地检查并扣减，后台定期把增量写回 usage_daily
+ * <p>
+ * 扣减是一次 CAS，不会超过上限，也不会丢失并发更新；读用量直接读内存。
+ * 写回时所有增量在一个事务内批量 UPDATE count = count + delta，当天第一次写回的记录批量插入；
+ * 唯一约束冲突时整批回滚，改为逐条写回。
+ * 计数以本进程为准（首次访问时从 usage_daily 读取当天已用次数）。
+ * 扣减返回 {@link Reservation}，退还时退回扣减时的那一天（跨过零点的退还不会变成第二天的额外次数）。
+ */
+@Component
+public class DailyQuota {
+	@Autowired
+	private UsageDailyRepository usageDailyRepository;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private AnalysisMetrics analysisMetrics;
+
+	@Value("${logsage.daily.limit:20}")
+	private int dailyLimit;
+
+	private static final String ADD_TO_COUNT_SQL =
+			"UPDATE usage_daily SET count = count + ? WHERE user_id = ? AND date = ?";
+
+	private final ConcurrentHashMap<Key, Counter> counters = new ConcurrentHashMap<>();
+
+	/** 当前日期（测试中可替换） */
+	private Supplier<LocalDate> today = LocalDate::now;
+
+	record Key(Long userId, LocalDate date) {
+	}
+
+	/**
+	 * used：当天已用次数；unflushed：尚未写回数据库的增量（退还时可以为负）
+	 */
+	static final class Counter {
+		final AtomicInteger used;
+		final AtomicInteger unflushed = new AtomicInteger();
+
+		Counter(int used) {
+			this.used = new AtomicInteger(used);
+		}
+	}
+
+	/**
+	 * 一次成功的扣减：记住扣减的是哪一天的哪个计数，退还时退回同一个计数；重复退还只生效一次
+	 */
+	public final class Reservation {
+		private final Key key;
+		private final Counter counter;
+		private final int n;
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		private Reservation(Key key, Counter counter, int n) {
+			this.key = key;
+			this.counter = counter;
+			this.n = n;
+		}
+
+		/**
+		 * 退还这次扣减的额度（如 AI 调用失败、复用了并发请求的结果）
+		 */
+		public void release() {
+			if (!released.compareAndSet(false, true)) {
+				return;
+			}
+			counter.used.addAndGet(-n);
+			counter.unflushed.addAndGet(-n);
+			// 往日计数写回后会被清理：放回去，让负增量在下次写回时落库
+			counters.putIfAbsent(key, counter);
+		}
+	}
+
+	/**
+	 * 尝试扣减一次额度；当前事务回滚时自动退还
+	 *
+	 * @return 超过上限时为 null
+	 */
+	public Reservation tryConsume(Long userId) {
+		return tryConsume(userId, 1);
+	}
+
+	/**
+	 * 一次扣减 n 次额度（要么全部扣减，要么都不扣）；当前事务回滚时自动退还
+	 *
+	 * @return 超过上限时为 null
+	 */
+	public Reservation tryConsume(Long userId, int n) {
+		Key key = new Key(userId, today.get());
+		Counter counter = counter(key);
+		int used;
+		do {
+			used = counter.used.get();
+			if (used + n > dailyLimit) {
+				analysisMetrics.quotaRejected();
+				return null;
+			}
+		} while (!counter.used.compareAndSet(used, used + n));
+		counter.unflushed.addAndGet(n);
+		Reservation reservation = new Reservation(key, counter, n);
+
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCompletion(int status) {
+					if (status != STATUS_COMMITTED) {
+						reservation.release();
+					}
+				}
+			});
+		}
+		return reservation;
+	}
+
+	/**
+	 * 当天已用次数（内存读取）
+	 */
+	public int used(Long userId) {
+		return counter(new Key(userId, today.get())).used.get();
+	}
+
+	public int remaining(Long userId) {
+		return Math.max(0, dailyLimit - used(userId));
+	}
+
+	public int getLimit() {
+		return dailyLimit;
+	}
+
+	private Counter counter(Key key) {
+		Counter counter = counters.get(key);
+		if (counter != null) {
+			return counter;
+		}
+		// 在 map 之外读库，避免阻塞同一分段上的其他用户
+		int persisted = usageDailyRepository.findByUserIdAndDate(key.userId(), key.date())
+				.map(UsageDaily::getCount)
+				.orElse(0);
+		Counter loaded = new Counter(persisted);
+		Counter existing = counters.putIfAbsent(key, loaded);
+		return existing != null ? existing : loaded;
+	}
+
+	/**
+	 * 把增量写回 usage_daily（一个事务内 JDBC 批量执行），并清理已写回的往日计数
+	 */
+	@Scheduled(fixedDelayString = "${logsage.quota.flush-interval-ms:5000}")
+	public void flush() {
+		List<Pending> pending = new ArrayList<>();
+		for (Map.Entry<Key, Counter> entry : counters.entrySet()) {
+			int delta = entry.getValue().unflushed.getAndSet(0);
+			if (delta != 0) {
+				pending.add(new Pending(entry.getKey(), entry.getValue(), delta));
+			}
+		}
+		if (!pending.isEmpty()) {
+			try {
+				writeBatch(pending);
+			} catch (RuntimeException e) {
+				// 整批已回滚（通常是其他实例刚插入了同一天的记录）：逐条重试，仍失败的下次再写
+				for (Pending item : pending) {
+					try {
+						write(item.key(), item.delta());
+					} catch (RuntimeException retryFailed) {
+						item.counter().unflushed.addAndGet(item.delta());
+					}
+				}
+			}
+		}
+
+		LocalDate date = today.get();
+		for (Map.Entry<Key, Counter> entry : counters.entrySet()) {
+			if (entry.getKey().date().isBefore(date) && entry.getValue().unflushed.get() == 0) {
+				counters.remove(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	private record Pending(Key key, Counter counter, int delta) {
+	}
+
+	/**
+	 * 批量 UPDATE count = count + delta；没有更新到行的（当天第一次写回）批量插入
+	 */
+	private void writeBatch(List<Pending> pending) {
+		transactionTemplate.executeWithoutResult(status -> {
+			int[] updated = jdbcTemplate.batchUpdate(ADD_TO_COUNT_SQL, new BatchPreparedStatementSetter() {
+				@Override
+				public void setValues(PreparedStatement ps, int i) throws SQLException {
+					Pending item = pending.get(i);
+					ps.setInt(1, item.delta());
+					ps.setLong(2, item.key().userId());
+					ps.setObject(3, item.key().date());
+				}
+
+				@Override
+				public int getBatchSize() {
+					return pending.size();
+				}
+			});
+			List<UsageDaily> inserts = new ArrayList<>();
+			for (int i = 0; i < updated.length; i++) {
+				Pending item = pending.get(i);
+				if (updated[i] == 0 && item.delta() > 0) {
+					UsageDaily usage = new UsageDaily(item.key().userId(), item.key().date());
+					usage.setCount(item.delta());
+					inserts.add(usage);
+				}
+			}
+			if (!inserts.isEmpty()) {
+				usageDailyRepository.saveAllAndFlush(inserts);
+			}
+		});
+	}
+
+	@PreDestroy
+	void flushOnShutdown() {
+		flush();
+	}
+
+	private void write(Key key, int delta) {
+		Integer updated = transactionTemplate.execute(status ->
+				usageDailyRepository.addToCount(key.userId(), key.date(), delta));
+		if (updated != null && updated > 0 || delta < 0) {
+			return;
+		}
+		try {
+			transactionTemplate.executeWithoutResult(status -> {
+				UsageDaily usage = new UsageDaily(key.userId(), key.date());
+				usage.setCount(delta);
+				usageDailyRepository.saveAndFlush(usage);
+			});
+		} catch (DataIntegrityViolationException e) {
+			// 其他实例先插入了当天的记录
+			transactionTemplate.execute(status ->
+					usageDailyRepository.addToCount(key.userId(), key.date(), delta));
+		}
+	}
+}
@@ -0,0 +1,380 @@
+package com.example.demo.service;
+
+import com.example.demo.model.LogAnalysis;
+import com.example.demo.repository.IndexSourceRow;
+import com.example.demo.repository.LogAnalysisRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 历史搜索的进程内倒排索引（标题 + 脱敏日志）
+ * <p>
+ * 每个用户一份 词 → 倒排表（按词排序，倒排表按记录 ID 升序，含词频）；全局词典上再建一层
+ * 三元组 → 词 的索引，用来找出包含查询片段的所有词。不足三个字符的片段在用户词表上按前缀做范围查找。
+ * 查询按分词后的每个片段分别合并倒排表，片段之间求交集，按词频（标题加权）排序，同分时新记录在前。
+ * 开销取决于命中数量，与用户历史总量无关。
+ * <p>
+ * 与 LIKE '%q%' 的差别：匹配以词为单位（字母、数字、下划线连续构成一个词），
+ * 多个片段要求同时出现但不要求相邻；不足三个字符的片段只匹配以它开头的词；
+ * 超过 {@link #MAX_TOKEN_LENGTH} 的词不建索引。全局词典最多 logsage.history.index.max-terms 个词，
+ * 超出后新词只能按完整的词查到。
+ * 每个用户的倒排表不设上限、常驻堆内存：每个（词, 记录）约 12 字节（扩容时最多翻倍），每个用户的每个不同的词
+ * 另有约 100 字节；例如 10 万条记录、每条约 200 个不同的词，约 2000 万项、250～500 MB，堆大小需按历史量预留。
+ * 启动时从数据库重建，重建完成前 {@link #isReady()} 为 false，调用方回退到数据库查询；
+ * 重建失败时记录日志并退避重试，从失败的批次继续。
+ */
+@Component
+public class HistorySearchIndex {
+	private static final Logger log = LoggerFactory.getLogger(HistorySearchIndex.class);
+
+	@Autowired
+	private LogAnalysisRepository logAnalysisRepository;
+
+	@Value("${logsage.history.index.max-terms:500000}")
+	private int maxTerms = 500_000;
+
+	/** 重建失败后的首次重试间隔，之后每次翻倍，最长 {@link #MAX_RETRY_DELAY_MS} */
+	private long retryDelayMs = 5_000;
+
+	private static final long MAX_RETRY_DELAY_MS = 300_000;
+
+	static final int MAX_TOKEN_LENGTH = 64;
+
+	/** 标题中出现的词权重更高 */
+	private static final int TITLE_WEIGHT = 5;
+
+	private static final int REBUILD_BATCH = 500;
+
+	private final ConcurrentHashMap<Long, UserIndex> users = new ConcurrentHashMap<>();
+
+	/** 全局词典的三元组索引：三元组 → 包含它的词 */
+	private final ConcurrentHashMap<String, Set<String>> trigrams = new ConcurrentHashMap<>();
+
+	private final Set<String> dictionary = ConcurrentHashMap.newKeySet();
+
+	private volatile boolean ready;
+
+	/** 重建已处理到的最大记录 ID，失败重试时从这里继续 */
+	private long rebuiltUpTo;
+
+	private volatile boolean dictionaryFull;
+
+	public boolean isReady() {
+		return ready;
+	}
+
+	/**
+	 * 启动后在后台线程中按 ID 分批重建索引
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void rebuildOnStartup() {
+		Thread thread = new Thread(this::rebuildWithRetry, "history-index-rebuild");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * 重建直到成功；失败时记录日志并退避重试，线程被中断时放弃（索引保持未就绪）
+	 */
+	void rebuildWithRetry() {
+		long delay = retryDelayMs;
+		while (true) {
+			try {
+				rebuild();
+				return;
+			} catch (RuntimeException e) {
+				log.warn("历史搜索索引重建失败，{} ms 后重试（期间历史搜索走数据库查询）", delay, e);
+			}
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			delay = Math.min(delay * 2, MAX_RETRY_DELAY_MS);
+		}
+	}
+
+	void rebuild() {
+		while (true) {
+			List<IndexSourceRow> batch = logAnalysisRepository.findIndexSource(rebuiltUpTo, Limit.of(REBUILD_BATCH));
+			for (IndexSourceRow row : batch) {
+				add(row.getId(), row.getUserId(), row.getTitle(), row.getSanitizedLog(), row.getCreatedAt(),
+						row.getErrorCategory());
+			}
+			if (!batch.isEmpty()) {
+				rebuiltUpTo = batch.get(batch.size() - 1).getId();
+			}
+			if (batch.size() < REBUILD_BATCH) {
+				break;
+			}
+		}
+		ready = true;
+	}
+
+	/**
+	 * 在当前事务提交后把记录加入索引（无事务时立即加入）
+	 */
+	public void indexAfterCommit(LogAnalysis analysis) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			index(analysis);
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				index(analysis);
+			}
+		});
+	}
+
+	public void index(LogAnalysis analysis) {
+		add(analysis.getId(), analysis.getUserId(), analysis.getTitle(), analysis.getSanitizedLog(),
+				analysis.getCreatedAt(), analysis.getErrorCategory());
+	}
+
+	private void add(Long id, Long userId, String title, String sanitizedLog, LocalDateTime createdAt,
+			String errorCategory) {
+		Map<String, Integer> termFrequencies = new HashMap<>();
+		for (String token : tokenize(title)) {
+			termFrequencies.merge(token, TITLE_WEIGHT, Integer::sum);
+		}
+		for (String token : tokenize(sanitizedLog)) {
+			termFrequencies.merge(token, 1, Integer::sum);
+		}
+		for (String token : termFrequencies.keySet()) {
+			if (dictionary.contains(token) || !hasDictionaryRoom()) {
+				continue;
+			}
+			if (dictionary.add(token)) {
+				for (String trigram : trigramsOf(token)) {
+					trigrams.computeIfAbsent(trigram, k -> ConcurrentHashMap.newKeySet()).add(token);
+				}
+			}
+		}
+		users.computeIfAbsent(userId, k -> new UserIndex())
+				.add(id, createdAt, errorCategory, termFrequencies);
+	}
+
+	/**
+	 * 词典已满时不再收新词（并发添加可能略微超出上限），只记录一次日志
+	 */
+	private boolean hasDictionaryRoom() {
+		if (dictionary.size() < maxTerms) {
+			return true;
+		}
+		if (!dictionaryFull) {
+			dictionaryFull = true;
+			log.warn("历史搜索词典已达上限（{} 个词），之后出现的新词只能按完整的词搜索", maxTerms);
+		}
+		return false;
+	}
+
+	/**
+	 * 搜索，返回按相关度排序的记录 ID
+	 *
+	 * @param category 为 null 时不按分类筛选
+	 */
+	public List<Long> search(Long userId, String query, String category) {
+		UserIndex index = users.get(userId);
+		List<String> fragments = tokenize(query);
+		if (index == null || fragments.isEmpty()) {
+			return List.of();
+		}
+		return index.search(fragments, category, this::tokensContaining);
+	}
+
+	/**
+	 * 全局词典中包含 fragment 的词；片段不足三个字符时返回 null，由调用方在用户词表中按前缀查找
+	 */
+	private Set<String> tokensContaining(String fragment) {
+		if (fragment.length() < 3) {
+			return null;
+		}
+		Set<String> smallest = null;
+		for (String trigram : trigramsOf(fragment)) {
+			Set<String> tokens = trigrams.get(trigram);
+			if (tokens == null) {
+				return Set.of();
+			}
+			if (smallest == null || tokens.size() < smallest.size()) {
+				smallest = tokens;
+			}
+		}
+		Set<String> matches = new HashSet<>();
+		for (String token : smallest) {
+			if (token.contains(fragment)) {
+				matches.add(token);
+			}
+		}
+		return matches;
+	}
+
+	/**
+	 * 分词：字母、数字、下划线的连续片段，统一小写，去重并保持出现顺序
+	 */
+	static List<String> tokenize(String text) {
+		if (text == null || text.isEmpty()) {
+			return List.of();
+		}
+		Set<String> tokens = new LinkedHashSet<>();
+		StringBuilder current = new StringBuilder();
+		for (int i = 0; i <= text.length(); i++) {
+			char c = i < text.length() ? text.charAt(i) : ' ';
+			if (c == '_' || Character.isLetterOrDigit(c)) {
+				current.append(Character.toLowerCase(c));
+				continue;
+			}
+			if (current.length() > 0 && current.length() <= MAX_TOKEN_LENGTH) {
+				tokens.add(current.toString());
+			}
+			current.setLength(0);
+		}
+		return new ArrayList<>(tokens);
+	}
+
+	private static Set<String> trigramsOf(String token) {
+		Set<String> result = new HashSet<>();
+		for (int i = 0; i + 3 <= token.length(); i++) {
+			result.add(token.substring(i, i + 3));
+		}
+		return result;
+	}
+
+	/**
+	 * 单个用户的索引
+	 */
+	private static final class UserIndex {
+		private final NavigableMap<String, Postings> postings = new TreeMap<>();
+		private final Map<Long, Doc> docs = new HashMap<>();
+
+		record Doc(LocalDateTime createdAt, String errorCategory) {
+		}
+
+		synchronized void add(Long id, LocalDateTime createdAt, String errorCategory,
+				Map<String, Integer> termFrequencies) {
+			// 重建与提交后的增量可能重复到达同一条记录
+			if (docs.putIfAbsent(id, new Doc(createdAt, errorCategory)) != null) {
+				return;
+			}
+			for (Map.Entry<String, Integer> entry : termFrequencies.entrySet()) {
+				postings.computeIfAbsent(entry.getKey(), k -> new Postings()).add(id, entry.getValue());
+			}
+		}
+
+		synchronized List<Long> search(List<String> fragments, String category,
+				Function<String, Set<String>> dictionaryLookup) {
+			// 每个片段：合并所有包含它的词的倒排表；片段之间求交集
+			Map<Long, Integer> scores = null;
+			for (String fragment : fragments) {
+				Set<String> tokens = dictionaryLookup.apply(fragment);
+				Map<Long, Integer> matched = new HashMap<>();
+				if (tokens == null) {
+					// 短片段：以它开头的词在有序词表中是连续的一段
+					for (Postings list : postings.subMap(fragment, fragment + Character.MAX_VALUE).values()) {
+						list.addTo(matched, scores);
+					}
+				} else {
+					for (String token : tokens) {
+						Postings list = postings.get(token);
+						if (list != null) {
+							list.addTo(matched, scores);
+						}
+					}
+					// 词典满后加入的词不在三元组索引中，仍可按完整的词命中
+					Postings exact = tokens.contains(fragment) ? null : postings.get(fragment);
+					if (exact != null) {
+						exact.addTo(matched, scores);
+					}
+				}
+				if (scores != null) {
+					for (Map.Entry<Long, Integer> entry : matched.entrySet()) {
+						entry.setValue(entry.getValue() + scores.get(entry.getKey()));
+					}
+				}
+				scores = matched;
+				if (scores.isEmpty()) {
+					return List.of();
+				}
+			}
+
+			List<Long> ids = new ArrayList<>(scores.size());
+			for (Long id : scores.keySet()) {
+				if (category == null || category.equals(docs.get(id).errorCategory())) {
+					ids.add(id);
+				}
+			}
+			Map<Long, Integer> finalScores = scores;
+			Comparator<Long> byScore = Comparator.comparing(finalScores::get);
+			Comparator<Long> byCreatedAt = Comparator.comparing(id -> docs.get(id).createdAt(),
+					Comparator.nullsFirst(Comparator.naturalOrder()));
+			ids.sort(byScore.thenComparing(byCreatedAt).thenComparing(Comparator.naturalOrder()).reversed());
+			return ids;
+		}
+	}
+
+	/**
+	 * 倒排表：记录 ID 升序 + 词频
+	 */
+	private static final class Postings {
+		private long[] ids = new long[4];
+		private int[] frequencies = new int[4];
+		private int size;
+
+		void add(long id, int frequency) {
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, size * 2);
+				frequencies = Arrays.copyOf(frequencies, size * 2);
+			}
+			// 通常按 ID 递增追加；重建期间新提交的记录可能先到，插入到正确位置
+			int pos = size;
+			if (size > 0 && ids[size - 1] > id) {
+				pos = Arrays.binarySearch(ids, 0, size, id);
+				if (pos >= 0) {
+					return;
+				}
+				pos = -pos - 1;
+				System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+				System.arraycopy(frequencies, pos, frequencies, pos + 1, size - pos);
+			}
+			ids[pos] = id;
+			frequencies[pos] = frequency;
+			size++;
+		}
+
+		/**
+		 * 把本倒排表累加进 target；filter 不为 null 时只保留 filter 中已有的记录（交集）
+		 */
+		void addTo(Map<Long, Integer> target, Map<Long, Integer> filter) {
+			for (int i = 0; i < size; i++) {
+				long id = ids[i];
+				if (filter == null || filter.containsKey(id)) {
+					target.merge(id, frequencies[i], Integer::sum);
+				}
+			}
+		}
+	}
+}
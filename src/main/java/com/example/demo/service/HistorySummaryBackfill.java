@@ -0,0 +1,63 @@
+package com.example.demo.service;
+
+import com.example.demo.repository.LogAnalysisRepository;
+import com.example.demo.repository.SummarySourceRow;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 回填 history_summary：启动后在后台按 ID 分批为旧记录计算并保存摘要
+ * 回填完成前，列表页对缺少摘要的行临时计算
+ */
+@Component
+public class HistorySummaryBackfill {
+	@Autowired
+	private LogAnalysisRepository logAnalysisRepository;
+
+	@Autowired
+	private LogAnalysisService logAnalysisService;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	private static final int BATCH_SIZE = 200;
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void backfillOnStartup() {
+		Thread thread = new Thread(this::backfill, "history-summary-backfill");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * 返回回填的记录数
+	 */
+	int backfill() {
+		int updated = 0;
+		long afterId = 0;
+		while (true) {
+			List<SummarySourceRow> batch = logAnalysisRepository.findSummarySourcesMissingSummary(afterId,
+					Limit.of(BATCH_SIZE));
+			if (batch.isEmpty()) {
+				return updated;
+			}
+			Map<Long, String> summaries = logAnalysisService.summarizeRows(batch);
+			Integer count = transactionTemplate.execute(status -> {
+				int n = 0;
+				for (Map.Entry<Long, String> entry : summaries.entrySet()) {
+					n += logAnalysisRepository.updateHistorySummary(entry.getKey(), entry.getValue());
+				}
+				return n;
+			});
+			updated += count != null ? count : 0;
+			afterId = batch.get(batch.size() - 1).getId();
+		}
+	}
+}
@@ -0,0 +1,228 @@
+package com.example.demo.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 远程模型服务客户端（logsage.ai.provider=http）：POST JSON 到 logsage.ai.http.url，响应体即 AnalysisResult 的 JSON
+ * <p>
+ * 连接由共享的 HttpClient 复用；每次分析有总时限（含重试），单次请求的超时为剩余时间；
+ * 并发调用数由信号量限制，等不到许可时直接失败而不是占住请求线程；
+ * 超时、IO 错误、429 与 5xx 在时限内按指数退避（带随机抖动）重试；
+ * 连续失败达到阈值后熔断，打开期间不再请求远程服务。
+ */
+@Service
+@ConditionalOnProperty(name = "logsage.ai.provider", havingValue = "http")
+public class HttpAiClient implements AiClient {
+
+	@Value("${logsage.ai.http.url}")
+	private String url;
+
+	@Value("${logsage.ai.http.api-key:}")
+	private String apiKey;
+
+	@Value("${logsage.ai.http.connect-timeout-ms:2000}")
+	private long connectTimeoutMs;
+
+	@Value("${logsage.ai.http.deadline-ms:15000}")
+	private long deadlineMs;
+
+	@Value("${logsage.ai.http.max-concurrent:8}")
+	private int maxConcurrent;
+
+	@Value("${logsage.ai.http.acquire-timeout-ms:200}")
+	private long acquireTimeoutMs;
+
+	@Value("${logsage.ai.http.max-retries:2}")
+	private int maxRetries;
+
+	@Value("${logsage.ai.http.retry-backoff-ms:200}")
+	private long retryBackoffMs;
+
+	@Value("${logsage.ai.http.breaker.failure-threshold:5}")
+	private int failureThreshold;
+
+	@Value("${logsage.ai.http.breaker.open-ms:30000}")
+	private long breakerOpenMs;
+
+	private static final ObjectMapper MAPPER = new ObjectMapper()
+			.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+	private static final ObjectWriter REQUEST_WRITER = MAPPER.writerFor(Request.class);
+
+	private static final ObjectReader RESULT_READER = MAPPER.readerFor(AnalysisResult.class);
+
+	private URI endpoint;
+
+	private HttpClient httpClient;
+
+	private Semaphore bulkhead;
+
+	private CircuitBreaker circuitBreaker;
+
+	/**
+	 * 请求体：脱敏后的日志、类型、根因命中的特征与分析选项
+	 */
+	record Request(String log, String logType, List<String> signals, boolean generateActionList, String depth,
+			String tried) {
+	}
+
+	/** 4xx（429 除外）：请求本身有问题，不重试，也不计入熔断 */
+	private static final class ClientError extends RuntimeException {
+		ClientError(String message) {
+			super(message);
+		}
+	}
+
+	@PostConstruct
+	void init() {
+		endpoint = URI.create(url);
+		httpClient = HttpClient.newBuilder()
+				.connectTimeout(Duration.ofMillis(connectTimeoutMs))
+				.build();
+		bulkhead = new Semaphore(maxConcurrent);
+		circuitBreaker = new CircuitBreaker(failureThreshold, breakerOpenMs);
+	}
+
+	/**
+	 * 远程服务自行解析日志，请求中只附带匹配画像（不发送 rootCause）
+	 */
+	@Override
+	public AnalysisResult analyzeLog(String sanitizedLog, LogProfile profile, LogParser.ExceptionInfo rootCause,
+			String logType, boolean generateActionList, String depth, String tried) {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMs);
+		byte[] body;
+		try {
+			body = REQUEST_WRITER.writeValueAsBytes(new Request(sanitizedLog, logType,
+					profile.signals().stream().map(Enum::name).toList(), generateActionList, depth, tried));
+		} catch (JsonProcessingException e) {
+			throw new RuntimeException("AI 请求编码失败", e);
+		}
+
+		acquirePermit();
+		try {
+			if (!circuitBreaker.tryAcquire()) {
+				throw new RuntimeException("AI 服务暂不可用，请稍后重试");
+			}
+			try {
+				AnalysisResult result = callWithRetry(body, deadline);
+				circuitBreaker.onSuccess();
+				return result;
+			} catch (ClientError e) {
+				// 远程服务能正常响应，不算故障
+				circuitBreaker.onSuccess();
+				throw e;
+			} catch (RuntimeException e) {
+				circuitBreaker.onFailure();
+				throw e;
+			}
+		} finally {
+			bulkhead.release();
+		}
+	}
+
+	private void acquirePermit() {
+		try {
+			if (!bulkhead.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+				throw new RuntimeException("AI 服务繁忙，请稍后重试");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("AI 调用被中断", e);
+		}
+	}
+
+	private AnalysisResult callWithRetry(byte[] body, long deadline) {
+		RuntimeException failure = null;
+		for (int attempt = 0; attempt <= maxRetries; attempt++) {
+			if (attempt > 0 && !backoff(attempt, deadline)) {
+				break;
+			}
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				break;
+			}
+			HttpRequest.Builder request = HttpRequest.newBuilder(endpoint)
+					.timeout(Duration.ofNanos(remaining))
+					.header("Content-Type", "application/json")
+					.header("Accept", "application/json")
+					.POST(HttpRequest.BodyPublishers.ofByteArray(body));
+			if (apiKey != null && !apiKey.isEmpty()) {
+				request.header("Authorization", "Bearer " + apiKey);
+			}
+			try {
+				HttpResponse<byte[]> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+				int status = response.statusCode();
+				if (status >= 200 && status < 300) {
+					return parseResult(response.body());
+				}
+				if (status != 429 && status < 500) {
+					throw new ClientError("AI 服务拒绝了请求（HTTP " + status + "）");
+				}
+				failure = new RuntimeException("AI 服务暂时不可用（HTTP " + status + "）");
+			} catch (HttpTimeoutException e) {
+				failure = new RuntimeException("AI 服务响应超时", e);
+			} catch (IOException e) {
+				failure = new RuntimeException("AI 服务调用失败：" + e.getMessage(), e);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("AI 调用被中断", e);
+			}
+		}
+		throw failure != null ? failure : new RuntimeException("AI 服务响应超时");
+	}
+
+	/**
+	 * 解析 2xx 响应体；无法解析时立即失败（服务已给出结果，重试只会得到同样的响应）
+	 */
+	private static AnalysisResult parseResult(byte[] body) {
+		try {
+			return RESULT_READER.readValue(body);
+		} catch (IOException e) {
+			throw new RuntimeException("AI 服务返回的结果无法解析", e);
+		}
+	}
+
+	/**
+	 * 第 attempt 次重试前等待 base * 2^(attempt-1) 的一半到全部（随机抖动，避免重试同时到达）；
+	 * 等待后已超出时限则不再重试
+	 */
+	private boolean backoff(int attempt, long deadline) {
+		long ceiling = retryBackoffMs << Math.min(attempt - 1, 16);
+		long sleepMs = ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+		long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+		if (sleepMs >= remainingMs) {
+			return false;
+		}
+		try {
+			Thread.sleep(sleepMs);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("AI 调用被中断", e);
+		}
+		return true;
+	}
+
+	CircuitBreaker.State getCircuitState() {
+		return circuitBreaker.getState();
+	}
+}
@@ -0,0 +1,10 @@
+package com.example.demo.service;
+
+/**
+ * 异步任务暂时无法接收（队列已满或用户进行中的任务过多，接口返回 429；输入不合法按 400 处理）
+ */
+public class JobRejectedException extends RuntimeException {
+	public JobRejectedException(String message) {
+		super(message);
+	}
+}
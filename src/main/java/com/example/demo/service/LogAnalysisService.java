@@ -1,30 +1,50 @@
 package com.example.demo.service;
 
 import com.example.demo.model.AnalysisCache;
+import com.example.demo.model.AnalysisReport;
+import com.example.demo.model.Cause;
+import com.example.demo.model.HistoryPage;
 import com.example.demo.model.LogAnalysis;
-import com.example.demo.model.UsageDaily;
+import com.example.demo.model.SharedAnalysisResult;
 import com.example.demo.repository.AnalysisCacheRepository;
+import com.example.demo.repository.HistoryRow;
 import com.example.demo.repository.LogAnalysisRepository;
-import com.example.demo.repository.UsageDailyRepository;
+import com.example.demo.repository.SummarySourceRow;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.hibernate.engine.jdbc.proxy.BlobProxy;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
-import java.time.LocalDate;
+import java.sql.Blob;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * 日志分析服务类
  */
 @Service
 public class LogAnalysisService {
+
+	/** 文本输入（分析页文本框、批量与异步任务接口）的长度上限；上传文件不受此限制 */
+	public static final int MAX_INPUT_CHARS = 8000;
+
+	public static final String INPUT_TOO_LONG = "日志长度超过 " + MAX_INPUT_CHARS + " 字符限制";
+
 	@Autowired
 	private LogAnalysisRepository logAnalysisRepository;
 
@@ -32,63 +52,103 @@ public class LogAnalysisService {
 	private AnalysisCacheRepository analysisCacheRepository;
 
 	@Autowired
-	private UsageDailyRepository usageDailyRepository;
+	private DailyQuota dailyQuota;
+
+	@Autowired
+	private HistorySearchIndex historySearchIndex;
+
+	@Autowired
+	private AiClient aiClient;
+
+	@Autowired
+	private AnalysisResultCache analysisResultCache;
+
+	@Autowired
+	private SharedAnalysisStore sharedAnalysisStore;
 
 	@Autowired
-	private FakeAiClient fakeAiClient;
+	private TransactionTemplate transactionTemplate;
 
-	@Value("${logsage.daily.limit:20}")
-	private int dailyLimit;
+	@Autowired
+	private AnalysisMetrics analysisMetrics;
+
+	/** 共享模式：相同脱敏日志 + 选项跨用户复用同一份分析输出 */
+	@Value("${logsage.cache.shared:false}")
+	private boolean sharedMode;
+
+	/** 缓存键：fingerprint（归一化指纹，近似相同的日志命中同一缓存）或 content（脱敏后全文） */
+	@Value("${logsage.cache.key:fingerprint}")
+	private String cacheKeyMode = "fingerprint";
 
 	private final ObjectMapper objectMapper = new ObjectMapper();
 
+	private final LogRedactor logRedactor = new LogRedactor();
+
+	private final LogParser logParser = new LogParser();
+
+	private final LogStreamProcessor logStreamProcessor = new LogStreamProcessor();
+
+	private final AnalysisResultCodec analysisResultCodec = new AnalysisResultCodec();
+
+	private final LogFingerprinter logFingerprinter = new LogFingerprinter();
+
+	/** 进行中的分析：(userId, logHash) -> 第一个请求的结果（同一用户的重复请求得到同一份记录） */
+	private final SingleFlight<AnalysisResultCache.Key, AnalysisReport> inFlightAnalyses = new SingleFlight<>();
+
+	/** 进行中的 AI 调用：logHash -> AI 结果（不同用户的相同内容只调用一次，各自保存记录） */
+	private final SingleFlight<String, AiClient.AnalysisResult> inFlightResults = new SingleFlight<>();
+
+	@PostConstruct
+	void init() {
+		checkCacheKeyMode();
+		analysisMetrics.functionCounter("logsage.analysis.coalesced", "合并到进行中分析的重复请求数", this,
+				LogAnalysisService::getCoalescedRequestCount);
+	}
+
 	/**
 	 * 检查用户今日是否还有额度
 	 */
 	public boolean checkDailyLimit(Long userId) {
-		LocalDate today = LocalDate.now();
-		Optional<UsageDaily> usage = usageDailyRepository.findByUserIdAndDate(userId, today);
-		int usedCount = usage.map(UsageDaily::getCount).orElse(0);
-		return usedCount < dailyLimit;
+		return dailyQuota.remaining(userId) > 0;
 	}
 
 	/**
-	 * 获取用户今日使用情况
+	 * 获取用户今日使用情况（内存计数，不访问数据库）
 	 */
 	public Map<String, Object> getDailyUsage(Long userId) {
-		LocalDate today = LocalDate.now();
-		Optional<UsageDaily> usage = usageDailyRepository.findByUserIdAndDate(userId, today);
-		int usedCount = usage.map(UsageDaily::getCount).orElse(0);
-		int remaining = Math.max(0, dailyLimit - usedCount);
+		int usedCount = dailyQuota.used(userId);
+		int limit = dailyQuota.getLimit();
 
 		Map<String, Object> result = new HashMap<>();
 		result.put("used", usedCount);
-		result.put("limit", dailyLimit);
-		result.put("remaining", remaining);
+		result.put("limit", limit);
+		result.put("remaining", Math.max(0, limit - usedCount));
 		return result;
 	}
 
 	/**
-	 * 脱敏日志（简单实现：移除可能的敏感信息）
+	 * 累计被合并到进行中分析的重复请求数
+	 */
+	public long getCoalescedRequestCount() {
+		return inFlightAnalyses.coalescedCount() + inFlightResults.coalescedCount();
+	}
+
+	/**
+	 * 脱敏日志：移除可能的 IP、邮箱、密码等（单次扫描，见 LogRedactor）
 	 */
 	public String sanitizeLog(String rawLog) {
 		if (rawLog == null) {
 			return "";
 		}
-		// 简单脱敏：移除可能的 IP、邮箱、密码等
-		return rawLog
-				.replaceAll("\\b\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}\\b", "[IP]")
-				.replaceAll("\\b[A-Za-z0-9._%+-]+@[A-Za-z0-9.-]+\\.[A-Z|a-z]{2,}\\b", "[EMAIL]")
-				.replaceAll("password\\s*=\\s*[^\\s]+", "password=[HIDDEN]")
-				.replaceAll("pwd\\s*=\\s*[^\\s]+", "pwd=[HIDDEN]");
+		return logRedactor.redact(rawLog);
 	}
 
 	/**
 	 * 计算日志哈希（用于缓存去重）
 	 */
-	private String calculateLogHash(String sanitizedLog, String logType, String options) {
+	String calculateLogHash(String sanitizedLog, String logType, String options) {
 		try {
-			String input = sanitizedLog + "|" + logType + "|" + options;
+			String input = sanitizedLog + hashSuffix(logType, options);
 			MessageDigest digest = MessageDigest.getInstance("SHA-256");
 			byte[] hash = digest.digest(input.getBytes(StandardCharsets.UTF_8));
 			StringBuilder hexString = new StringBuilder();
@@ -106,111 +166,529 @@ public class LogAnalysisService {
 	}
 
 	/**
-	 * 分析日志
+	 * 日志指纹（保存在记录上；fingerprint 模式下也用作缓存键）
+	 */
+	String fingerprint(String sanitizedLog) {
+		return logFingerprinter.fingerprint(sanitizedLog);
+	}
+
+	/**
+	 * 缓存键：fingerprint 模式为 SHA-256(指纹 + 画像 + 类型 + 选项)，content 模式为 SHA-256(脱敏后全文 + 类型 + 选项)
+	 */
+	String cacheKey(String sanitizedLog, String fingerprint, LogProfile profile, String logType, String options) {
+		return isFingerprintKey()
+				? fingerprintKey(fingerprint, profile, logType, options)
+				: calculateLogHash(sanitizedLog, logType, options);
+	}
+
+	/**
+	 * fingerprint 模式的缓存键
+	 * <p>
+	 * 指纹去掉了数字与异常块以外的行，而分类与标题按画像（根因或全文扫描）判断，
+	 * 画像不同的日志（如 Port 8080 与 Port 9090）指纹可能相同，因此画像也参与哈希
+	 */
+	String fingerprintKey(String fingerprint, LogProfile profile, String logType, String options) {
+		return calculateLogHash(fingerprint + "\n#profile=" + profile.mask(), logType, options);
+	}
+
+	/**
+	 * 缓存键模式只能是 fingerprint 或 content，拼错时启动失败而不是悄悄按全文缓存
 	 */
-	@Transactional
-	public LogAnalysis analyzeLog(Long userId, String rawLog, String logType, boolean sanitize,
+	void checkCacheKeyMode() {
+		if (!"fingerprint".equalsIgnoreCase(cacheKeyMode) && !"content".equalsIgnoreCase(cacheKeyMode)) {
+			throw new RuntimeException("logsage.cache.key 只能是 fingerprint 或 content，当前为：" + cacheKeyMode);
+		}
+	}
+
+	boolean isFingerprintKey() {
+		return "fingerprint".equalsIgnoreCase(cacheKeyMode);
+	}
+
+	/** 参与哈希的日志之后的部分；上传路径逐块计算时追加同样的后缀 */
+	private static String hashSuffix(String logType, String options) {
+		return "|" + logType + "|" + options;
+	}
+
+	/**
+	 * 分析日志，返回可直接渲染的报告
+	 * 缓存命中（进程内缓存或 analysis_cache）时直接返回已有报告，不扣当日次数；
+	 * 同一用户同时提交的相同日志只分析一次，其余请求等待并得到同一份已提交的报告；
+	 * 不同用户同时提交的相同内容只调用一次 AI，等待方各自保存自己的记录、不扣次数
+	 */
+	public AnalysisReport analyzeLog(Long userId, String rawLog, String logType, boolean sanitize,
 			boolean generateActionList, String depth, String tried) {
-		// 检查输入长度
-		if (rawLog != null && rawLog.length() > 8000) {
-			throw new RuntimeException("日志长度超过 8000 字符限制");
+		return analyzeText(userId, "text", rawLog, logType, sanitize, generateActionList, depth, tried, NO_LISTENER);
+	}
+
+	/**
+	 * 分析日志，AI 每生成一个部分就回调 listener，分析记录在全部生成后保存；
+	 * 命中缓存、引用共享输出或等待并发的相同请求时，在得到报告后一次回调全部部分
+	 *
+	 * @param listener 为 null 时不回调
+	 */
+	public AnalysisReport analyzeLog(Long userId, String rawLog, String logType, boolean sanitize,
+			boolean generateActionList, String depth, String tried, Consumer<AiClient.PartialResult> listener) {
+		if (listener == null) {
+			return analyzeText(userId, "stream", rawLog, logType, sanitize, generateActionList, depth, tried,
+					NO_LISTENER);
+		}
+		boolean[] streamed = new boolean[1];
+		Consumer<AiClient.PartialResult> tracking = section -> {
+			streamed[0] = true;
+			listener.accept(section);
+		};
+		AnalysisReport report = analyzeText(userId, "stream", rawLog, logType, sanitize, generateActionList, depth,
+				tried, tracking);
+		if (!streamed[0]) {
+			AiClient.PartialResult.emitAll(report.getTldr(), report.getTopCauses(), report.getVerificationSteps(),
+					report.getSuggestedFixes(), report.getNeedMoreInfo(), listener);
 		}
+		return report;
+	}
+
+	private static final Consumer<AiClient.PartialResult> NO_LISTENER = section -> {
+	};
 
-		// 检查每日额度
-		if (!checkDailyLimit(userId)) {
-			throw new RuntimeException("今日分析次数已达上限（" + dailyLimit + " 次）");
+	/**
+	 * @param source 请求来源（text / stream），记录在飞行记录器事件中
+	 */
+	private AnalysisReport analyzeText(Long userId, String source, String rawLog, String logType, boolean sanitize,
+			boolean generateActionList, String depth, String tried, Consumer<AiClient.PartialResult> listener) {
+		// 飞行记录器事件：整个请求一个事件，各阶段的事件由 AnalysisMetrics.time 发出
+		AnalysisEvents.Request event = AnalysisEvents.begin(userId, source, logType);
+		boolean succeeded = false;
+		try {
+			// 检查输入长度
+			if (rawLog != null && rawLog.length() > MAX_INPUT_CHARS) {
+				throw new RuntimeException(INPUT_TOO_LONG);
+			}
+
+			// 脱敏
+			String sanitizedLog = sanitize
+					? analysisMetrics.time(AnalysisMetrics.Stage.SANITIZE, () -> sanitizeLog(rawLog))
+					: rawLog;
+
+			String optionsJson = buildOptionsJson(sanitize, generateActionList, depth);
+			// 如果有 tried 字段，不使用缓存（因为不同的 tried 应该产生不同的结果）
+			String fingerprint = analysisMetrics.time(AnalysisMetrics.Stage.HASH, () -> fingerprint(sanitizedLog));
+			// 只解析一次：画像参与缓存键，根因与画像再由标题、分类、AI 分析共用
+			LogParser.ParsedLog parsed = logParser.parse(sanitizedLog);
+			LogProfile profile = logParser.classify(parsed, sanitizedLog);
+			String logHash = isCacheable(tried)
+					? analysisMetrics.time(AnalysisMetrics.Stage.HASH,
+							() -> cacheKey(sanitizedLog, fingerprint, profile, logType, optionsJson))
+					: null;
+			LogInput input = new LogInput(rawLog, sanitizedLog, fingerprint, parsed, profile, null, null);
+			AnalysisReport report = analyze(userId, input, logType, sanitize, optionsJson, logHash, generateActionList,
+					depth, tried, listener);
+			succeeded = true;
+			return report;
+		} finally {
+			AnalysisEvents.end(event, succeeded);
 		}
+	}
 
-		// 脱敏
-		String sanitizedLog = sanitize ? sanitizeLog(rawLog) : rawLog;
+	/**
+	 * 分析上传的大日志（不受 {@link #MAX_INPUT_CHARS} 限制）
+	 * 流式逐块脱敏、分类并计算缓存键，只保存异常块摘录与压缩后的正文，不保存原始日志
+	 */
+	public AnalysisReport analyzeUpload(Long userId, InputStream in, String logType, boolean sanitize,
+			boolean generateActionList, String depth, String tried) throws IOException {
+		AnalysisEvents.Request event = AnalysisEvents.begin(userId, "upload", logType);
+		boolean succeeded = false;
+		try {
+			String optionsJson = buildOptionsJson(sanitize, generateActionList, depth);
+			// 压缩正文在临时文件中，保存记录时以流写入 BLOB；返回时事务已结束，临时文件随之删除
+			try (LogStreamProcessor.Result upload = logStreamProcessor.process(in, sanitize,
+					hashSuffix(logType, optionsJson));
+					InputStream body = upload.openCompressedBody()) {
+				// 摘录保留了全部异常块，指纹按摘录计算
+				String fingerprint = fingerprint(upload.excerpt());
+				// 根因取自摘录中的异常块；摘录中没有可识别的根因时用全文扫描的画像
+				LogParser.ParsedLog parsed = logParser.parse(upload.excerpt());
+				LogProfile rootCause = logParser.rootCauseProfile(parsed);
+				LogProfile profile = rootCause.isEmpty() ? upload.profile() : rootCause;
+				String logHash = null;
+				if (isCacheable(tried)) {
+					logHash = isFingerprintKey()
+							? fingerprintKey(fingerprint, profile, logType, optionsJson)
+							: upload.contentHash();
+				}
+				LogInput input = new LogInput(null, upload.excerpt(), fingerprint, parsed, profile,
+						BlobProxy.generateProxy(body, upload.compressedSize()), upload.totalChars());
+				AnalysisReport report = analyze(userId, input, logType, sanitize, optionsJson, logHash,
+						generateActionList, depth, tried, NO_LISTENER);
+				succeeded = true;
+				return report;
+			}
+		} finally {
+			AnalysisEvents.end(event, succeeded);
+		}
+	}
 
-		// 构建选项 JSON
+	/**
+	 * 待分析的日志：文本框提交时有原文；上传时只有摘录、全文画像与压缩正文
+	 * <p>
+	 * parsed、profile 为 null 时由 analyzeAndSave 从 sanitizedLog 解析一次得到。
+	 */
+	record LogInput(String rawLog, String sanitizedLog, String fingerprint, LogParser.ParsedLog parsed,
+			LogProfile profile, Blob compressedLog, Long logSize) {
+	}
+
+	String buildOptionsJson(boolean sanitize, boolean generateActionList, String depth) {
 		Map<String, Object> optionsMap = new HashMap<>();
 		optionsMap.put("sanitize", sanitize);
 		optionsMap.put("generateActionList", generateActionList);
 		optionsMap.put("depth", depth);
-		String optionsJson;
 		try {
-			optionsJson = objectMapper.writeValueAsString(optionsMap);
+			return objectMapper.writeValueAsString(optionsMap);
 		} catch (Exception e) {
-			optionsJson = "{}";
-		}
-
-		// 如果有 tried 字段，不使用缓存（因为不同的 tried 应该产生不同的结果）
-		// 检查缓存（仅当没有 tried 时）
-		Optional<AnalysisCache> cache = Optional.empty();
-		if (tried == null || tried.trim().isEmpty()) {
-			String logHash = calculateLogHash(sanitizedLog, logType, optionsJson);
-			cache = analysisCacheRepository.findByUserIdAndLogHash(userId, logHash);
-			if (cache.isPresent()) {
-				// 返回缓存的分析结果
-				Long cachedAnalysisId = cache.get().getAnalysisId();
-				return logAnalysisRepository.findById(cachedAnalysisId)
-						.orElseThrow(() -> new RuntimeException("缓存的分析结果不存在"));
+			return "{}";
+		}
+	}
+
+	static boolean isCacheable(String tried) {
+		return tried == null || tried.trim().isEmpty();
+	}
+
+	/**
+	 * 缓存查询 + 进行中合并 + 事务内分析
+	 *
+	 * @param logHash 为 null 表示不可缓存（填写了 tried）
+	 */
+	private AnalysisReport analyze(Long userId, LogInput input, String logType, boolean sanitize,
+			String optionsJson, String logHash, boolean generateActionList, String depth, String tried,
+			Consumer<AiClient.PartialResult> listener) {
+		long logSize = input.logSize() != null ? input.logSize()
+				: input.rawLog() != null ? input.rawLog().length() : 0;
+		analysisMetrics.logSize(logSize);
+		AnalysisEvents.logSize(logSize);
+		if (logHash == null) {
+			AnalysisEvents.cacheOutcome("uncacheable");
+			return analyzeAndSave(userId, input, logType, sanitize, optionsJson, null, generateActionList, depth,
+					tried, listener);
+		}
+
+		AnalysisReport cached = analysisMetrics.time(AnalysisMetrics.Stage.CACHE_LOOKUP,
+				() -> findCachedReport(userId, logHash, true));
+		if (cached != null) {
+			return cached;
+		}
+
+		// 第一个请求完成分析并提交，并发的重复请求等待同一结果
+		boolean[] led = new boolean[1];
+		try {
+			return inFlightAnalyses.execute(new AnalysisResultCache.Key(userId, logHash), () -> {
+				led[0] = true;
+				// 本线程是第一个请求；上一轮同 key 的请求可能刚刚提交
+				AnalysisReport committed = findCachedReport(userId, logHash, false);
+				if (committed != null) {
+					AnalysisEvents.cacheOutcome("recheck_hit");
+					AnalysisEvents.category(committed.getErrorCategory());
+					return committed;
+				}
+				// 确实需要由它完成分析
+				AnalysisEvents.cacheOutcome("miss");
+				return analyzeAndSave(userId, input, logType, sanitize, optionsJson, logHash, generateActionList,
+						depth, tried, listener);
+			});
+		} finally {
+			if (!led[0]) {
+				// 等待了并发的相同请求（成功或失败都与它一致）
+				AnalysisEvents.cacheOutcome("coalesced");
 			}
 		}
+	}
 
-		// 调用 AI 分析
-		FakeAiClient.AnalysisResult aiResult = fakeAiClient.analyzeLog(sanitizedLog, logType, generateActionList,
-				depth, tried);
+	/**
+	 * 先查进程内缓存（不访问数据库、不解码结果），再查 analysis_cache 并回填进程内缓存；未命中返回 null
+	 *
+	 * @param count 是否计入缓存命中指标（事务内的二次确认不计入）
+	 */
+	private AnalysisReport findCachedReport(Long userId, String logHash, boolean count) {
+		AnalysisReport cached = analysisResultCache.get(userId, logHash);
+		if (cached != null) {
+			if (count) {
+				analysisMetrics.cacheHit(true);
+				AnalysisEvents.cacheOutcome("memory_hit");
+				AnalysisEvents.category(cached.getErrorCategory());
+			}
+			return cached;
+		}
+		Optional<AnalysisCache> cache = AnalysisEvents.query(userId, "AnalysisCacheRepository.findByUserIdAndLogHash",
+				() -> analysisCacheRepository.findByUserIdAndLogHash(userId, logHash));
+		if (cache.isEmpty()) {
+			if (count) {
+				analysisMetrics.cacheMiss();
+			}
+			return null;
+		}
+		Long analysisId = cache.get().getAnalysisId();
+		LogAnalysis cachedAnalysis = AnalysisEvents.query(userId, "LogAnalysisRepository.findById",
+				() -> logAnalysisRepository.findById(analysisId))
+				.orElseThrow(() -> new RuntimeException("缓存的分析结果不存在"));
+		AnalysisReport report = toReport(cachedAnalysis);
+		analysisResultCache.put(userId, logHash, report);
+		if (count) {
+			analysisMetrics.cacheHit(false);
+			AnalysisEvents.cacheOutcome("db_hit");
+			AnalysisEvents.category(report.getErrorCategory());
+		}
+		return report;
+	}
+
+	/**
+	 * 调用 AI（或引用共享输出）并保存分析记录、缓存与用量
+	 * <p>
+	 * 不在事务中调用：额度在事务之外扣减，AI 调用期间不占用数据库连接与事务，
+	 * 只有最后的写入在一个短事务中完成（与批量分析相同）；AI 调用或写入失败时退还额度。
+	 *
+	 * @param logHash 为 null 表示不可缓存（填写了 tried）
+	 */
+	private AnalysisReport analyzeAndSave(Long userId, LogInput input, String logType, boolean sanitize,
+			String optionsJson, String logHash, boolean generateActionList, String depth, String tried,
+			Consumer<AiClient.PartialResult> listener) {
+		boolean cacheable = logHash != null;
+		String sanitizedLog = input.sanitizedLog();
 
-		// 生成标题
-		String title = generateTitle(rawLog, logType);
+		// 只解析一次：根因与匹配画像由标题、分类、AI 分析共用（调用方计算缓存键时已得到）
+		LogParser.ParsedLog parsed = input.parsed() != null ? input.parsed() : logParser.parse(sanitizedLog);
+		LogProfile profile = input.profile() != null ? input.profile() : logParser.classify(parsed, sanitizedLog);
+		LogParser.ExceptionInfo rootCause = parsed.rootCause();
 
-		// 保存分析结果
+		// 保存分析结果（归属与历史始终是每个用户自己的记录）
+		LogAnalysis analysis = newAnalysis(userId, input, profile, rootCause, logType, optionsJson, tried);
+		AnalysisEvents.category(analysis.getErrorCategory());
+
+		// 共享模式仅用于开启脱敏的日志：共享键只由脱敏后的内容计算
+		boolean shared = sharedMode && sanitize && cacheable;
+		Optional<SharedAnalysisResult> sharedResult = shared ? sharedAnalysisStore.find(logHash) : Optional.empty();
+
+		if (sharedResult.isPresent()) {
+			// 其他用户已分析过相同内容：直接引用共享输出，不调用 AI，不扣当日次数
+			SharedAnalysisResult existing = sharedResult.get();
+			AnalysisEvents.cacheOutcome("shared");
+			analysis.setSharedResultId(existing.getId());
+			analysis.setHistorySummary(summarize(decode(existing).topCauses(), existing.getTldr()));
+			return save(userId, analysis, logHash, saved -> toReport(saved, existing));
+		}
+
+		// 原子地检查并扣减每日额度（不在事务中，失败时手动退还）
+		DailyQuota.Reservation reservation = analysisMetrics.time(AnalysisMetrics.Stage.USAGE,
+				() -> dailyQuota.tryConsume(userId));
+		if (reservation == null) {
+			throw new QuotaExceededException("今日分析次数已达上限（" + dailyQuota.getLimit() + " 次）");
+		}
+		try {
+			// 调用 AI 分析；其他用户正在分析相同内容时等待其结果，不重复调用
+			boolean[] calledAi = new boolean[1];
+			Supplier<AiClient.AnalysisResult> callAi = () -> {
+				calledAi[0] = true;
+				return analysisMetrics.time(AnalysisMetrics.Stage.AI,
+						() -> aiClient.analyzeLog(sanitizedLog, profile, rootCause, logType, generateActionList, depth,
+								tried, listener));
+			};
+			AiClient.AnalysisResult aiResult = cacheable
+					? inFlightResults.execute(contentKey(userId, logHash, sanitize), callAi)
+					: callAi.get();
+			if (!calledAi[0]) {
+				// 复用了并发请求的 AI 结果：与引用共享输出一样不扣次数
+				reservation.release();
+				AnalysisEvents.cacheOutcome("coalesced");
+			}
+
+			if (shared) {
+				SharedAnalysisResult result = new SharedAnalysisResult();
+				result.setContentHash(logHash);
+				result.setTldr(aiResult.getTldr());
+				result.setResultCbor(encodeResult(aiResult));
+				result.setNeedMoreInfo(aiResult.getNeedMoreInfo());
+				analysis.setSharedResultId(sharedAnalysisStore.saveIfAbsent(result).getId());
+				analysis.setHistorySummary(summarize(aiResult.getTopCauses(), aiResult.getTldr()));
+			} else {
+				applyResult(analysis, aiResult);
+			}
+			return save(userId, analysis, logHash, saved -> toReport(saved, aiResult));
+		} catch (RuntimeException | Error e) {
+			// 已退还过（复用了并发请求的结果）时不会重复退还
+			reservation.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * AI 调用的合并键：缓存键本身；未开启脱敏时加上用户 ID，未脱敏日志的分析结果不给其他用户
+	 * （与共享模式只共享脱敏日志的规则相同）
+	 */
+	private static String contentKey(Long userId, String logHash, boolean sanitize) {
+		return sanitize ? logHash : userId + "|" + logHash;
+	}
+
+	/**
+	 * 在一个短事务中保存分析记录与缓存项（仅当没有 tried 时），提交后更新搜索索引与进程内缓存
+	 */
+	private AnalysisReport save(Long userId, LogAnalysis analysis, String logHash,
+			Function<LogAnalysis, AnalysisReport> toReport) {
+		return transactionTemplate.execute(status -> {
+			LogAnalysis saved = analysisMetrics.time(AnalysisMetrics.Stage.PERSIST,
+					() -> logAnalysisRepository.save(analysis));
+			AnalysisReport report = toReport.apply(saved);
+			historySearchIndex.indexAfterCommit(saved);
+			if (logHash != null) {
+				AnalysisCache cacheEntry = new AnalysisCache(userId, logHash, report.getId());
+				analysisMetrics.time(AnalysisMetrics.Stage.PERSIST, () -> analysisCacheRepository.save(cacheEntry));
+				analysisResultCache.putAfterCommit(userId, logHash, report);
+			}
+			return report;
+		});
+	}
+
+	/**
+	 * 新建分析记录（尚无输出）：归属、日志、标题、选项与错误分类
+	 *
+	 * @param rootCause 由脱敏后日志解析出的根因，没有异常时为 null
+	 */
+	LogAnalysis newAnalysis(Long userId, LogInput input, LogProfile profile, LogParser.ExceptionInfo rootCause,
+			String logType, String optionsJson, String tried) {
+		String rawLog = input.rawLog();
 		LogAnalysis analysis = new LogAnalysis();
 		analysis.setUserId(userId);
 		analysis.setLogType(logType);
 		analysis.setRawLog(rawLog);
-		analysis.setSanitizedLog(sanitizedLog);
-		analysis.setTitle(title);
-		analysis.setTldr(aiResult.getTldr());
-		try {
-			analysis.setTopCauses(objectMapper.writeValueAsString(aiResult.getTopCauses()));
-			analysis.setVerificationSteps(objectMapper.writeValueAsString(aiResult.getVerificationSteps()));
-			analysis.setSuggestedFixes(objectMapper.writeValueAsString(aiResult.getSuggestedFixes()));
-		} catch (Exception e) {
-			// 忽略 JSON 序列化错误
-		}
-		analysis.setNeedMoreInfo(aiResult.getNeedMoreInfo());
+		analysis.setSanitizedLog(input.sanitizedLog());
+		analysis.setFingerprint(input.fingerprint());
+		analysis.setLogBodyGz(input.compressedLog());
+		analysis.setLogSize(input.logSize());
+		analysis.setTitle(generateTitle(rawLog != null ? rawLog : input.sanitizedLog(), profile, rootCause, logType));
 		analysis.setOptions(optionsJson);
 		analysis.setTried(tried != null ? tried.trim() : null);
-		analysis.setErrorCategory(deriveErrorCategory(sanitizedLog));
+		analysis.setErrorCategory(deriveErrorCategory(profile));
+		return analysis;
+	}
+
+	/**
+	 * 把 AI 输出写到分析记录上（非共享模式），同时计算历史摘要
+	 */
+	void applyResult(LogAnalysis analysis, AiClient.AnalysisResult aiResult) {
+		analysis.setTldr(aiResult.getTldr());
+		analysis.setResultCbor(encodeResult(aiResult));
+		analysis.setNeedMoreInfo(aiResult.getNeedMoreInfo());
+		analysis.setHistorySummary(summarize(aiResult.getTopCauses(), aiResult.getTldr()));
+	}
 
-		LogAnalysis saved = logAnalysisRepository.save(analysis);
+	private byte[] encodeResult(AiClient.AnalysisResult aiResult) {
+		// 规则结果带有预编码的 CBOR，直接复用
+		byte[] encoded = aiResult.getEncoded() != null
+				? aiResult.getEncoded()
+				: analysisResultCodec.encode(aiResult.getTopCauses(), aiResult.getVerificationSteps(),
+						aiResult.getSuggestedFixes());
+		analysisMetrics.resultSize(encoded.length);
+		return encoded;
+	}
+
+	/** 刚生成的结果直接组装报告，不再解码 */
+	AnalysisReport toReport(LogAnalysis saved, AiClient.AnalysisResult aiResult) {
+		return new AnalysisReport(saved, aiResult.getTldr(), aiResult.getTopCauses(),
+				aiResult.getVerificationSteps(), aiResult.getSuggestedFixes(), aiResult.getNeedMoreInfo());
+	}
 
-		// 保存缓存（仅当没有 tried 时）
-		if (tried == null || tried.trim().isEmpty()) {
-			String logHash = calculateLogHash(sanitizedLog, logType, optionsJson);
-			AnalysisCache cacheEntry = new AnalysisCache(userId, logHash, saved.getId());
-			analysisCacheRepository.save(cacheEntry);
+	/**
+	 * 将分析记录转换为可渲染的报告（解码一次结果；共享模式的记录从共享输出读取）
+	 */
+	public AnalysisReport toReport(LogAnalysis analysis) {
+		if (analysis.getSharedResultId() != null) {
+			Optional<SharedAnalysisResult> shared = sharedAnalysisStore.findById(analysis.getSharedResultId());
+			if (shared.isPresent()) {
+				return toReport(analysis, shared.get());
+			}
 		}
+		AnalysisResultCodec.Payload result = analysisResultCodec.decode(analysis.getResultCbor(),
+				analysis.getTopCauses(), analysis.getVerificationSteps(), analysis.getSuggestedFixes());
+		return new AnalysisReport(analysis, analysis.getTldr(), result.topCauses(), result.verificationSteps(),
+				result.suggestedFixes(), analysis.getNeedMoreInfo());
+	}
+
+	private AnalysisReport toReport(LogAnalysis analysis, SharedAnalysisResult shared) {
+		AnalysisResultCodec.Payload result = decode(shared);
+		return new AnalysisReport(analysis, shared.getTldr(), result.topCauses(), result.verificationSteps(),
+				result.suggestedFixes(), shared.getNeedMoreInfo());
+	}
 
-		// 更新每日使用计数
-		LocalDate today = LocalDate.now();
-		UsageDaily usage = usageDailyRepository.findByUserIdAndDate(userId, today)
-				.orElse(new UsageDaily(userId, today));
-		usage.increment();
-		usageDailyRepository.save(usage);
+	private AnalysisResultCodec.Payload decode(SharedAnalysisResult shared) {
+		return analysisResultCodec.decode(shared.getResultCbor(), shared.getTopCauses(),
+				shared.getVerificationSteps(), shared.getSuggestedFixes());
+	}
 
-		return saved;
+	/**
+	 * 计算历史摘要（回填旧记录、以及列表中尚未回填的行）
+	 * 共享模式的记录一次性批量读取共享输出
+	 */
+	public Map<Long, String> summarizeRows(List<SummarySourceRow> rows) {
+		List<Long> sharedIds = rows.stream()
+				.map(SummarySourceRow::getSharedResultId)
+				.filter(Objects::nonNull)
+				.distinct()
+				.toList();
+		Map<Long, SharedAnalysisResult> sharedById = new HashMap<>();
+		if (!sharedIds.isEmpty()) {
+			for (SharedAnalysisResult shared : sharedAnalysisStore.findAllById(sharedIds)) {
+				sharedById.put(shared.getId(), shared);
+			}
+		}
+		Map<Long, String> summaries = new HashMap<>();
+		for (SummarySourceRow row : rows) {
+			SharedAnalysisResult shared = row.getSharedResultId() != null ? sharedById.get(row.getSharedResultId()) : null;
+			summaries.put(row.getId(), shared != null
+					? summarize(decode(shared).topCauses(), shared.getTldr())
+					: summarize(analysisResultCodec.decode(row.getResultCbor(), row.getTopCauses(), null, null)
+							.topCauses(), row.getTldr()));
+		}
+		return summaries;
 	}
 
 	/**
-	 * 生成分析报告标题
+	 * 历史列表摘要：取第一条 topCause 的 cause，否则 tldr，否则 "No summary"
 	 */
-	private String generateTitle(String rawLog, String logType) {
+	static String summarize(List<Cause> causes, String tldr) {
+		String summary;
+		if (causes != null && !causes.isEmpty() && causes.get(0).cause() != null) {
+			summary = causes.get(0).cause();
+		} else if (tldr != null && !tldr.isEmpty()) {
+			summary = tldr.length() > 120 ? tldr.substring(0, 120) + "…" : tldr;
+		} else {
+			summary = "No summary";
+		}
+		// 与 history_summary 列长度一致
+		return summary.length() > 500 ? summary.substring(0, 499) + "…" : summary;
+	}
+
+	/**
+	 * 生成分析报告标题（按原文的画像判断）
+	 */
+	String generateTitle(String rawLog, String logType) {
+		LogParser.ParsedLog parsed = logParser.parse(rawLog);
+		return generateTitle(rawLog, logParser.classify(parsed, rawLog), parsed.rootCause(), logType);
+	}
+
+	/**
+	 * 生成分析报告标题：文本取自原文，根因与关键词判断用分析时解析出的结果（开启脱敏时由脱敏后的日志得到）。
+	 * 脱敏只替换 IP、邮箱与密码值，不改变异常类名，与按原文判断的结果相同（见 LogClassifierTests）
+	 */
+	String generateTitle(String rawLog, LogProfile profile, LogParser.ExceptionInfo rootCause, String logType) {
 		if (rawLog == null || rawLog.trim().isEmpty()) {
 			return logType + " 日志分析";
 		}
-		String lowerLog = rawLog.toLowerCase();
-		if (lowerLog.contains("nullpointerexception")) {
+		// 有异常时以根因（最后一个 Caused by）命名
+		if (rootCause != null) {
+			return rootCause.simpleName() + " 分析";
+		}
+		if (profile.has(LogSignal.NULL_POINTER)) {
 			return "NullPointerException 分析";
-		} else if (lowerLog.contains("beancreationexception")) {
+		} else if (profile.has(LogSignal.BEAN_CREATION)) {
 			return "Spring BeanCreationException 分析";
-		} else if (lowerLog.contains("sqlexception")) {
+		} else if (profile.has(LogSignal.SQL_EXCEPTION)) {
 			return "SQLException 分析";
-		} else if (lowerLog.contains("outofmemoryerror")) {
+		} else if (profile.has(LogSignal.OUT_OF_MEMORY)) {
 			return "OutOfMemoryError 分析";
 		}
 		// 取前 50 个字符作为标题
@@ -222,57 +700,140 @@ public class LogAnalysisService {
 	 * 根据日志内容推导错误分类（用于历史筛选）
 	 */
 	public String deriveErrorCategory(String sanitizedLog) {
-		if (sanitizedLog == null) {
-			return "CONFIG";
-		}
-		String lower = sanitizedLog.toLowerCase();
-		if (lower.contains("nullpointerexception")) {
+		return deriveErrorCategory(logParser.classify(sanitizedLog));
+	}
+
+	public String deriveErrorCategory(LogProfile profile) {
+		if (profile.has(LogSignal.NULL_POINTER)) {
 			return "NPE";
 		}
-		if (lower.contains("nosuchbeandefinitionexception") || lower.contains("required a bean") || lower.contains("beancreationexception")) {
+		if (profile.hasAny(LogSignal.NO_SUCH_BEAN, LogSignal.REQUIRED_A_BEAN, LogSignal.BEAN_CREATION)) {
 			return "BEAN";
 		}
-		if (lower.contains("bindexception") || lower.contains("address already in use") || lower.contains("port 8080")) {
+		if (profile.hasAny(LogSignal.BIND_EXCEPTION, LogSignal.ADDRESS_IN_USE, LogSignal.PORT_8080)) {
 			return "PORT";
 		}
-		if (lower.contains("sqlexception") || lower.contains("sqlsyntaxerrorexception") || lower.contains("jdbc")) {
+		if (profile.hasAny(LogSignal.SQL_EXCEPTION, LogSignal.SQL_SYNTAX, LogSignal.JDBC)) {
 			return "SQL";
 		}
-		if (lower.contains("application.properties") || lower.contains("failed to bind properties") || lower.contains("could not resolve placeholder")) {
-			return "CONFIG";
-		}
+		// application.properties / failed to bind properties / could not resolve placeholder 以及其它情况
 		return "CONFIG";
 	}
 
 	/**
-	 * 获取用户分析历史（支持搜索 q 和分类筛选 cat）
+	 * 获取用户分析历史的一页（支持搜索 q 和分类筛选 cat），按 (createdAt, id) 倒序游标分页；
+	 * 有搜索词且索引已就绪时按相关度排序
+	 * <p>
+	 * 翻页沿用第一页的来源（游标带来源前缀）：索引在翻页途中就绪时继续走数据库；
+	 * 索引游标到达时索引未就绪（如重启后重建中）则拒绝，不会悄悄回到第一页。
+	 * 搜索词中没有字母、数字时（只有标点）不筛选。
+	 *
+	 * @param cursor 上一页返回的 nextCursor，第一页传 null
 	 */
-	public List<LogAnalysis> getHistory(Long userId, String q, String cat) {
-		boolean hasQ = q != null && !q.trim().isEmpty();
+	public HistoryPage getHistory(Long userId, String q, String cat, String cursor, int size) {
+		long start = System.nanoTime();
+		boolean hasQ = q != null && !HistorySearchIndex.tokenize(q).isEmpty();
 		boolean hasCat = cat != null && !"ALL".equalsIgnoreCase(cat.trim());
+		boolean firstPage = cursor == null || cursor.isBlank();
+		boolean useIndex = hasQ && (firstPage ? historySearchIndex.isReady() : HistoryPage.isIndexCursor(cursor));
+		if (useIndex && !historySearchIndex.isReady()) {
+			throw new RuntimeException("搜索索引正在重建，请从第一页重新搜索");
+		}
+		List<HistoryRow> rows;
+		String nextCursor = null;
+		if (useIndex) {
+			// 搜索走进程内倒排索引，按相关度排序；游标为结果中的偏移量
+			List<Long> ranked = historySearchIndex.search(userId, q.trim(), hasCat ? cat.trim() : null);
+			int offset = Math.min(HistoryPage.parseOffset(cursor), ranked.size());
+			int end = Math.min(offset + size, ranked.size());
+			rows = findRowsInOrder(userId, ranked.subList(offset, end));
+			if (end < ranked.size()) {
+				nextCursor = HistoryPage.encodeOffset(end);
+			}
+		} else {
+			HistoryPage.Cursor after = HistoryPage.Cursor.parse(cursor);
+			// 多取一条用于判断是否还有下一页
+			Limit limit = Limit.of(size + 1);
+			if (!hasQ && !hasCat) {
+				rows = AnalysisEvents.query(userId, "LogAnalysisRepository.findHistoryPage",
+						() -> logAnalysisRepository.findHistoryPage(userId, after.createdAt(), after.id(), limit));
+			} else if (!hasQ) {
+				rows = AnalysisEvents.query(userId, "LogAnalysisRepository.findHistoryPageByCategory",
+						() -> logAnalysisRepository.findHistoryPageByCategory(userId, cat.trim(), after.createdAt(),
+								after.id(), limit));
+			} else if (!hasCat) {
+				rows = AnalysisEvents.query(userId, "LogAnalysisRepository.searchHistoryPage",
+						() -> logAnalysisRepository.searchHistoryPage(userId, q.trim(), after.createdAt(), after.id(),
+								limit));
+			} else {
+				rows = AnalysisEvents.query(userId, "LogAnalysisRepository.searchHistoryPageByCategory",
+						() -> logAnalysisRepository.searchHistoryPageByCategory(userId, cat.trim(), q.trim(),
+								after.createdAt(), after.id(), limit));
+			}
+			if (rows.size() > size) {
+				rows = rows.subList(0, size);
+				HistoryRow last = rows.get(size - 1);
+				nextCursor = new HistoryPage.Cursor(last.getCreatedAt(), last.getId()).encode();
+			}
+		}
 
-		if (!hasQ && !hasCat) {
-			return logAnalysisRepository.findByUserIdOrderByCreatedAtDesc(userId);
+		// 构建紧凑列表项：createdAt、title、errorCategory、summary（尚未回填摘要的行单独计算）
+		List<Long> missing = rows.stream()
+				.filter(row -> row.getHistorySummary() == null)
+				.map(HistoryRow::getId)
+				.toList();
+		Map<Long, String> summaries = missing.isEmpty()
+				? Map.of()
+				: summarizeRows(AnalysisEvents.query(userId, "LogAnalysisRepository.findSummarySources",
+						() -> logAnalysisRepository.findSummarySources(missing)));
+		List<Map<String, Object>> items = new ArrayList<>(rows.size());
+		for (HistoryRow row : rows) {
+			Map<String, Object> item = new HashMap<>();
+			item.put("id", row.getId());
+			item.put("title", row.getTitle());
+			item.put("createdAt", row.getCreatedAt());
+			String ec = row.getErrorCategory();
+			item.put("errorCategory", ec != null ? ec : "CONFIG");
+			item.put("summary", row.getHistorySummary() != null ? row.getHistorySummary() : summaries.get(row.getId()));
+			items.add(item);
 		}
-		if (!hasQ && hasCat) {
-			return logAnalysisRepository.findByUserIdAndErrorCategoryOrderByCreatedAtDesc(userId, cat.trim());
+		analysisMetrics.historyQuery(useIndex, System.nanoTime() - start);
+		return new HistoryPage(items, nextCursor);
+	}
+
+	/** 按给定 ID 顺序取列表列 */
+	private List<HistoryRow> findRowsInOrder(Long userId, List<Long> ids) {
+		if (ids.isEmpty()) {
+			return List.of();
 		}
-		if (hasQ && !hasCat) {
-			return logAnalysisRepository.searchByUserIdAndQueryOrderByCreatedAtDesc(userId, q.trim());
+		Map<Long, HistoryRow> byId = new HashMap<>();
+		List<HistoryRow> rows = AnalysisEvents.query(userId, "LogAnalysisRepository.findHistoryRowsByIds",
+				() -> logAnalysisRepository.findHistoryRowsByIds(userId, ids));
+		for (HistoryRow row : rows) {
+			byId.put(row.getId(), row);
 		}
-		return logAnalysisRepository.searchByUserIdAndCategoryAndQueryOrderByCreatedAtDesc(userId, cat.trim(), q.trim());
+		return ids.stream().map(byId::get).filter(Objects::nonNull).toList();
 	}
 
-	/** @deprecated 使用 getHistory(userId, q, cat) */
+	/** @deprecated 使用 getHistory(userId, q, cat, cursor, size) */
 	public List<LogAnalysis> getUserHistory(Long userId) {
-		return logAnalysisRepository.findByUserIdOrderByCreatedAtDesc(userId);
+		return AnalysisEvents.query(userId, "LogAnalysisRepository.findByUserIdOrderByCreatedAtDesc",
+				() -> logAnalysisRepository.findByUserIdOrderByCreatedAtDesc(userId));
+	}
+
+	/**
+	 * 根据 ID 获取可渲染的分析报告（仅限本人）
+	 */
+	public Optional<AnalysisReport> getReport(Long id, Long userId) {
+		return getAnalysisById(id, userId).map(this::toReport);
 	}
 
 	/**
 	 * 根据 ID 获取分析报告
 	 */
 	public Optional<LogAnalysis> getAnalysisById(Long id, Long userId) {
-		Optional<LogAnalysis> analysis = logAnalysisRepository.findById(id);
+		Optional<LogAnalysis> analysis = AnalysisEvents.query(userId, "LogAnalysisRepository.findById",
+				() -> logAnalysisRepository.findById(id));
 		if (analysis.isPresent() && analysis.get().getUserId().equals(userId)) {
 			return analysis;
 		}
@@ -0,0 +1,142 @@
+package com.example.demo.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * 多模式单次扫描分类器
+ * <p>
+ * 所有 LogSignal 关键词构建成一个 Aho-Corasick 自动机（展开为 ASCII 跳转表），
+ * 对日志只扫描一次，逐字符忽略大小写，不生成小写副本。
+ * 自动机在类加载时构建一次，实例无状态、线程安全；增量输入用 {@link #newScanner()}。
+ */
+public final class LogClassifier {
+
+	private static final int ALPHABET = 128;
+
+	/** transitions[state * ALPHABET + c] -> 下一状态 */
+	private static final int[] TRANSITIONS;
+
+	/** 每个状态（含失败链）命中的 LogSignal 位掩码 */
+	private static final int[] OUTPUTS;
+
+	static {
+		List<int[]> gotoTable = new ArrayList<>();
+		List<Integer> outputs = new ArrayList<>();
+		gotoTable.add(newRow());
+		outputs.add(0);
+		for (LogSignal signal : LogSignal.values()) {
+			int state = 0;
+			for (char c : signal.getKeyword().toCharArray()) {
+				int next = gotoTable.get(state)[c];
+				if (next < 0) {
+					next = gotoTable.size();
+					gotoTable.add(newRow());
+					outputs.add(0);
+					gotoTable.get(state)[c] = next;
+				}
+				state = next;
+			}
+			outputs.set(state, outputs.get(state) | (1 << signal.ordinal()));
+		}
+
+		int states = gotoTable.size();
+		int[] transitions = new int[states * ALPHABET];
+		int[] out = new int[states];
+		int[] fail = new int[states];
+		for (int s = 0; s < states; s++) {
+			out[s] = outputs.get(s);
+		}
+		// 广度优先补全跳转表：缺失的边沿失败链走，输出沿失败链合并
+		Queue<Integer> queue = new ArrayDeque<>();
+		for (int c = 0; c < ALPHABET; c++) {
+			int next = gotoTable.get(0)[c];
+			if (next > 0) {
+				fail[next] = 0;
+				transitions[c] = next;
+				queue.add(next);
+			} else {
+				transitions[c] = 0;
+			}
+		}
+		while (!queue.isEmpty()) {
+			int s = queue.poll();
+			out[s] |= out[fail[s]];
+			for (int c = 0; c < ALPHABET; c++) {
+				int next = gotoTable.get(s)[c];
+				if (next > 0) {
+					fail[next] = transitions[fail[s] * ALPHABET + c];
+					transitions[s * ALPHABET + c] = next;
+					queue.add(next);
+				} else {
+					transitions[s * ALPHABET + c] = transitions[fail[s] * ALPHABET + c];
+				}
+			}
+		}
+		TRANSITIONS = transitions;
+		OUTPUTS = out;
+	}
+
+	private static int[] newRow() {
+		int[] row = new int[ALPHABET];
+		Arrays.fill(row, -1);
+		return row;
+	}
+
+	/**
+	 * 扫描整段日志，返回匹配画像
+	 */
+	public LogProfile classify(CharSequence log) {
+		if (log == null || log.length() == 0) {
+			return LogProfile.EMPTY;
+		}
+		Scanner scanner = newScanner();
+		scanner.feed(log, 0, log.length());
+		return scanner.profile();
+	}
+
+	/**
+	 * 增量扫描器：可分块喂入，跨块的关键词同样能命中（非线程安全）
+	 */
+	public Scanner newScanner() {
+		return new Scanner();
+	}
+
+	public static final class Scanner {
+		private int state;
+		private int mask;
+
+		private Scanner() {
+		}
+
+		public void feed(CharSequence text, int from, int to) {
+			int[] transitions = TRANSITIONS;
+			int[] outputs = OUTPUTS;
+			int s = state;
+			int m = mask;
+			for (int i = from; i < to; i++) {
+				char c = text.charAt(i);
+				if (c >= ALPHABET) {
+					c = Character.toLowerCase(c);
+					if (c >= ALPHABET) {
+						s = 0;
+						continue;
+					}
+				} else if (c >= 'A' && c <= 'Z') {
+					c = (char) (c + ('a' - 'A'));
+				}
+				s = transitions[s * ALPHABET + c];
+				m |= outputs[s];
+			}
+			state = s;
+			mask = m;
+		}
+
+		public LogProfile profile() {
+			return mask == 0 ? LogProfile.EMPTY : new LogProfile(mask);
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package com.example.demo.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 日志指纹（预编译、可复用、线程安全）：先归一化再哈希，
+ * 只差时间戳、线程名、请求 ID、对象哈希码、行号的同一故障得到相同的指纹
+ * <p>
+ * 日志中有异常堆栈时，只保留异常类链（含 Caused by）、每个异常的消息和前 N 个栈帧，
+ * 消息去掉与无堆栈时相同的易变片段，栈帧去掉文件行号、模块前缀与合成类编号（Lambda、动态代理、CGLIB、反射访问器）；
+ * 没有堆栈时，对整段日志去掉时间、方括号内容（线程名等）、UUID、十六进制与数字后哈希。
+ */
+public final class LogFingerprinter {
+
+	/** 每个异常默认保留的栈帧数 */
+	public static final int DEFAULT_FRAMES = 8;
+
+	/** 行内第一个全限定的异常类名 */
+	private static final Pattern EXCEPTION_CLASS = Pattern.compile(
+			"\\b((?:[a-zA-Z_$][\\w$]*\\.)+[A-Z][\\w$]*(?:Exception|Error|Throwable))\\b");
+
+	/** 异常类名之后的消息：": 消息" */
+	private static final Pattern MESSAGE = Pattern.compile("^:\\s*(.*)$");
+
+	/** 栈帧：at [模块/]类.方法(文件:行) */
+	private static final Pattern FRAME = Pattern.compile("^\\s*at\\s+([^\\s(]+)\\(");
+
+	private static final Pattern MODULE_PREFIX = Pattern.compile("^(?:[\\w.\\-]+(?:@[\\w.\\-]+)?/+)+");
+
+	private static final Pattern[] SYNTHETIC = {
+			Pattern.compile("\\$\\$Lambda[\\w$/.]*?(?=\\.[\\w$<>]+$)"),
+			Pattern.compile("\\$Proxy\\d+"),
+			Pattern.compile("\\$\\$(\\w*CGLIB\\w*)\\$\\$[0-9a-f]+"),
+			Pattern.compile("GeneratedMethodAccessor\\d+"),
+	};
+
+	private static final String[] SYNTHETIC_REPLACEMENTS = { "\\$\\$Lambda", "\\$Proxy", "\\$\\$$1", "GeneratedMethodAccessor" };
+
+	/** 没有堆栈时去掉的易变片段（按顺序替换） */
+	private static final Pattern[] VOLATILE = {
+			Pattern.compile("\\d{4}-\\d{2}-\\d{2}[T ]\\d{2}:\\d{2}:\\d{2}(?:[.,]\\d+)?(?:Z|[+-]\\d{2}:?\\d{2})?"),
+			Pattern.compile("\\b\\d{2}:\\d{2}:\\d{2}(?:[.,]\\d+)?\\b"),
+			Pattern.compile("\\b[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}\\b"),
+			Pattern.compile("\\[[^\\]\\n]*\\]"),
+			Pattern.compile("0x[0-9a-fA-F]+|@[0-9a-fA-F]{4,}\\b"),
+			Pattern.compile("\\d+"),
+			Pattern.compile("[ \\t]+"),
+	};
+
+	private static final String[] VOLATILE_REPLACEMENTS = { "<ts>", "<time>", "<uuid>", "[]", "<hex>", "#", " " };
+
+	private final int maxFrames;
+
+	public LogFingerprinter() {
+		this(DEFAULT_FRAMES);
+	}
+
+	public LogFingerprinter(int maxFrames) {
+		this.maxFrames = maxFrames;
+	}
+
+	/**
+	 * 指纹：归一化文本的 SHA-256（十六进制）
+	 */
+	public String fingerprint(String log) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return HexFormat.of().formatHex(digest.digest(normalize(log).getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("计算指纹失败", e);
+		}
+	}
+
+	/**
+	 * 归一化：有堆栈时为 "异常类: 消息 + 栈帧" 的逐行列表，否则为去掉易变片段后的全文
+	 */
+	String normalize(String log) {
+		if (log == null || log.isEmpty()) {
+			return "";
+		}
+		StringBuilder out = new StringBuilder();
+		boolean hasException = false;
+		int frames = 0;
+		for (String line : log.split("\\R")) {
+			Matcher frame = FRAME.matcher(line);
+			if (frame.find()) {
+				if (hasException && frames < maxFrames) {
+					out.append("  at ").append(normalizeFrame(frame.group(1))).append('\n');
+					frames++;
+				}
+				continue;
+			}
+			Matcher exception = EXCEPTION_CLASS.matcher(line);
+			if (exception.find()) {
+				out.append(exception.group(1));
+				Matcher message = MESSAGE.matcher(line.substring(exception.end()));
+				if (message.find() && !message.group(1).isBlank()) {
+					// 同类型异常的不同消息（不同的列、表、配置项）是不同的故障
+					out.append(": ").append(stripVolatile(message.group(1)));
+				}
+				out.append('\n');
+				hasException = true;
+				frames = 0;
+			}
+		}
+		return hasException ? out.toString() : stripVolatile(log);
+	}
+
+	private static String normalizeFrame(String method) {
+		String result = MODULE_PREFIX.matcher(method).replaceFirst("");
+		for (int i = 0; i < SYNTHETIC.length; i++) {
+			result = SYNTHETIC[i].matcher(result).replaceAll(SYNTHETIC_REPLACEMENTS[i]);
+		}
+		return result;
+	}
+
+	private static String stripVolatile(String log) {
+		String result = log;
+		for (int i = 0; i < VOLATILE.length; i++) {
+			result = VOLATILE[i].matcher(result).replaceAll(VOLATILE_REPLACEMENTS[i]);
+		}
+		return result.strip();
+	}
+}
@@ -0,0 +1,415 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Java/Spring 日志解析器（无状态、线程安全）：按行把日志切成事件，
+ * 每个事件有时间戳、级别、logger、消息、异常链（含 Caused by / Suppressed）与栈帧
+ * <p>
+ * 解析结果中的文本都是原文上的 {@link TextSlice} 视图，不调用 substring；
+ * 以时间戳开头的行开始新事件，Spring Boot（"级别 pid --- [线程] logger : 消息"）与
+ * Logback（"[线程] 级别 logger - 消息"）默认格式都能识别，没有时间戳的堆栈归入一个隐式事件。
+ */
+public final class LogParser {
+
+	private static final String[] LEVELS = { "TRACE", "DEBUG", "INFO", "WARN", "WARNING", "ERROR", "FATAL", "SEVERE" };
+
+	private static final String[] EXCEPTION_SUFFIXES = { "Exception", "Error", "Throwable" };
+
+	private static final String CAUSED_BY = "Caused by: ";
+
+	private static final String SUPPRESSED = "Suppressed: ";
+
+	private final LogClassifier logClassifier = new LogClassifier();
+
+	/**
+	 * 异常链中的一个异常
+	 *
+	 * @param className 全限定类名
+	 * @param message   冒号后的消息，没有时为空视图
+	 * @param frames    栈帧的 "类.方法"（不含文件与行号）
+	 * @param nested    是否为缩进的 Suppressed 块（不属于主异常链）
+	 */
+	public record ExceptionInfo(TextSlice className, TextSlice message, List<TextSlice> frames, boolean nested) {
+
+		public TextSlice simpleName() {
+			return className.subSequence(className.lastIndexOf('.') + 1, className.length());
+		}
+	}
+
+	/**
+	 * 一条日志事件；没有时间戳的堆栈其 timestamp/level/logger 为 null
+	 */
+	public record LogEvent(TextSlice timestamp, TextSlice level, TextSlice logger, TextSlice message,
+			List<ExceptionInfo> exceptions) {
+
+		public boolean hasException() {
+			return !exceptions.isEmpty();
+		}
+
+		public boolean isError() {
+			return level != null
+					&& (level.contentEquals("ERROR") || level.contentEquals("FATAL") || level.contentEquals("SEVERE"));
+		}
+	}
+
+	public record ParsedLog(List<LogEvent> events) {
+
+		static final ParsedLog EMPTY = new ParsedLog(List.of());
+
+		/**
+		 * 根因：第一个带异常的 ERROR 事件（没有则第一个带异常的事件）中主异常链的最后一个，
+		 * 即最后一个 Caused by；没有异常时为 null
+		 */
+		public ExceptionInfo rootCause() {
+			LogEvent source = null;
+			for (LogEvent event : events) {
+				if (event.hasException()) {
+					if (event.isError()) {
+						source = event;
+						break;
+					}
+					if (source == null) {
+						source = event;
+					}
+				}
+			}
+			if (source == null) {
+				return null;
+			}
+			ExceptionInfo root = null;
+			for (ExceptionInfo exception : source.exceptions()) {
+				if (!exception.nested()) {
+					root = exception;
+				}
+			}
+			return root != null ? root : source.exceptions().get(source.exceptions().size() - 1);
+		}
+	}
+
+	/** 解析过程中尚未结束的事件 */
+	private static final class PendingEvent {
+		private final CharSequence log;
+		private final TextSlice timestamp;
+		private final TextSlice level;
+		private final TextSlice logger;
+		private int messageStart;
+		private int messageEnd;
+		private final List<ExceptionInfo> exceptions = new ArrayList<>();
+
+		PendingEvent(CharSequence log, TextSlice timestamp, TextSlice level, TextSlice logger, int messageStart,
+				int messageEnd) {
+			this.log = log;
+			this.timestamp = timestamp;
+			this.level = level;
+			this.logger = logger;
+			this.messageStart = messageStart;
+			this.messageEnd = messageEnd;
+		}
+
+		/** 多行消息：把消息视图延伸到续行末尾（首行消息为空时从续行开始） */
+		void extendMessage(int lineStart, int lineEnd) {
+			if (messageStart == messageEnd) {
+				messageStart = lineStart;
+			}
+			messageEnd = lineEnd;
+		}
+
+		LogEvent finish() {
+			return new LogEvent(timestamp, level, logger, new TextSlice(log, messageStart, messageEnd),
+					exceptions.isEmpty() ? List.of() : Collections.unmodifiableList(exceptions));
+		}
+	}
+
+	/**
+	 * 解析整段日志
+	 */
+	public ParsedLog parse(CharSequence log) {
+		if (log == null || log.length() == 0) {
+			return ParsedLog.EMPTY;
+		}
+		List<LogEvent> events = new ArrayList<>();
+		PendingEvent event = null;
+		List<TextSlice> frames = null; // 当前异常的栈帧，遇到异常之前为 null
+		int length = log.length();
+		int lineStart = 0;
+		while (lineStart < length) {
+			int lineEnd = lineStart;
+			while (lineEnd < length && log.charAt(lineEnd) != '\n') {
+				lineEnd++;
+			}
+			int next = lineEnd + 1;
+			if (lineEnd > lineStart && log.charAt(lineEnd - 1) == '\r') {
+				lineEnd--;
+			}
+
+			int timestampEnd = timestampEnd(log, lineStart, lineEnd);
+			if (timestampEnd > 0) {
+				if (event != null) {
+					events.add(event.finish());
+				}
+				event = header(log, lineStart, timestampEnd, lineEnd);
+				frames = null;
+				lineStart = next;
+				continue;
+			}
+
+			int indent = skipSpaces(log, lineStart, lineEnd);
+			if (indent == lineEnd) {
+				// 空行
+			} else if (startsWith(log, indent, lineEnd, "at ")) {
+				if (frames != null) {
+					int from = skipSpaces(log, indent + 3, lineEnd);
+					int to = from;
+					while (to < lineEnd && log.charAt(to) != '(') {
+						to++;
+					}
+					frames.add(new TextSlice(log, from, to));
+				}
+			} else {
+				ExceptionInfo exception = exception(log, indent, lineEnd, indent > lineStart);
+				if (exception != null) {
+					if (event == null) {
+						event = new PendingEvent(log, null, null, null, lineStart, lineStart);
+					}
+					frames = new ArrayList<>();
+					event.exceptions.add(new ExceptionInfo(exception.className(), exception.message(),
+							Collections.unmodifiableList(frames), exception.nested()));
+				} else if (frames == null) {
+					// 消息续行（异常之后的 "... 21 more" 等忽略）
+					if (event == null) {
+						event = new PendingEvent(log, null, null, null, indent, lineEnd);
+					} else {
+						event.extendMessage(indent, lineEnd);
+					}
+				}
+			}
+			lineStart = next;
+		}
+		if (event != null) {
+			events.add(event.finish());
+		}
+		return new ParsedLog(Collections.unmodifiableList(events));
+	}
+
+	/**
+	 * 根因的匹配画像（只扫描根因的类名与消息）；没有异常时为空画像
+	 */
+	public LogProfile rootCauseProfile(ParsedLog parsed) {
+		ExceptionInfo root = parsed.rootCause();
+		if (root == null) {
+			return LogProfile.EMPTY;
+		}
+		LogClassifier.Scanner scanner = logClassifier.newScanner();
+		TextSlice className = root.className();
+		TextSlice message = root.message();
+		scanner.feed(className.source(), className.start(), className.end());
+		scanner.feed(": ", 0, 2);
+		scanner.feed(message.source(), message.start(), message.end());
+		return scanner.profile();
+	}
+
+	/**
+	 * 匹配画像：优先取根因，根因未命中任何特征（或没有异常）时退回扫描全文
+	 */
+	public LogProfile classify(CharSequence log) {
+		return classify(parse(log), log);
+	}
+
+	/**
+	 * 同上，复用已解析的结果（parsed 须由 log 解析得到）
+	 */
+	public LogProfile classify(ParsedLog parsed, CharSequence log) {
+		LogProfile rootCause = rootCauseProfile(parsed);
+		return rootCause.isEmpty() ? logClassifier.classify(log) : rootCause;
+	}
+
+	/**
+	 * 行首时间戳的结束位置："yyyy-MM-dd[T ]HH:mm:ss" 或 "HH:mm:ss"，可带毫秒与时区；不是时间戳返回 -1
+	 */
+	private static int timestampEnd(CharSequence log, int from, int to) {
+		int pos = from;
+		if (digits(log, pos, 4, to) && at(log, pos + 4, to, '-') && digits(log, pos + 5, 2, to)
+				&& at(log, pos + 7, to, '-') && digits(log, pos + 8, 2, to)
+				&& (at(log, pos + 10, to, ' ') || at(log, pos + 10, to, 'T'))) {
+			pos += 11;
+		}
+		if (!(digits(log, pos, 2, to) && at(log, pos + 2, to, ':') && digits(log, pos + 3, 2, to)
+				&& at(log, pos + 5, to, ':') && digits(log, pos + 6, 2, to))) {
+			return -1;
+		}
+		pos += 8;
+		if ((at(log, pos, to, '.') || at(log, pos, to, ',')) && digits(log, pos + 1, 1, to)) {
+			pos++;
+			while (pos < to && isDigit(log.charAt(pos))) {
+				pos++;
+			}
+		}
+		if (at(log, pos, to, 'Z')) {
+			pos++;
+		} else if ((at(log, pos, to, '+') || at(log, pos, to, '-')) && digits(log, pos + 1, 2, to)) {
+			pos += 3;
+			if (at(log, pos, to, ':')) {
+				pos++;
+			}
+			if (digits(log, pos, 2, to)) {
+				pos += 2;
+			}
+		}
+		return pos;
+	}
+
+	/**
+	 * 时间戳之后的部分：找到级别，级别之后 ":" 或 "-" 分隔符前的最后一个词为 logger，之后为消息
+	 */
+	private static PendingEvent header(CharSequence log, int lineStart, int timestampEnd, int lineEnd) {
+		TextSlice timestamp = new TextSlice(log, lineStart, timestampEnd);
+		TextSlice level = null;
+		TextSlice logger = null;
+		int messageStart = -1;
+		int pos = timestampEnd;
+		while (true) {
+			pos = skipSpaces(log, pos, lineEnd);
+			if (pos == lineEnd) {
+				break;
+			}
+			int tokenEnd;
+			if (log.charAt(pos) == '[') {
+				// 方括号内可能有空格（右对齐的线程名）
+				tokenEnd = pos + 1;
+				while (tokenEnd < lineEnd && log.charAt(tokenEnd) != ']') {
+					tokenEnd++;
+				}
+				pos = Math.min(tokenEnd + 1, lineEnd);
+				continue;
+			}
+			tokenEnd = pos;
+			while (tokenEnd < lineEnd && log.charAt(tokenEnd) != ' ' && log.charAt(tokenEnd) != '\t') {
+				tokenEnd++;
+			}
+			if (level == null) {
+				if (isLevel(log, pos, tokenEnd)) {
+					level = new TextSlice(log, pos, tokenEnd);
+				}
+			} else if (tokenEnd - pos == 1 && (log.charAt(pos) == ':' || log.charAt(pos) == '-')) {
+				messageStart = tokenEnd;
+				break;
+			} else if (!isDigits(log, pos, tokenEnd) && !(tokenEnd - pos == 3 && startsWith(log, pos, tokenEnd, "---"))) {
+				logger = new TextSlice(log, pos, tokenEnd);
+			}
+			pos = tokenEnd;
+		}
+		if (messageStart < 0) {
+			// 没有分隔符：级别之后（没有级别时时间戳之后）都是消息
+			logger = null;
+			messageStart = level != null ? level.end() : timestampEnd;
+		}
+		messageStart = skipSpaces(log, messageStart, lineEnd);
+		return new PendingEvent(log, timestamp, level, logger, messageStart, lineEnd);
+	}
+
+	/**
+	 * 异常行："[Caused by: |Suppressed: ]全限定类名[: 消息]"，类名以 Exception/Error/Throwable 结尾
+	 * （Caused by 之后不限后缀）
+	 */
+	private static ExceptionInfo exception(CharSequence log, int from, int to, boolean indented) {
+		int pos = from;
+		boolean causedBy = startsWith(log, pos, to, CAUSED_BY);
+		boolean suppressed = !causedBy && startsWith(log, pos, to, SUPPRESSED);
+		if (causedBy) {
+			pos += CAUSED_BY.length();
+		} else if (suppressed) {
+			pos += SUPPRESSED.length();
+		}
+		if (pos >= to || !Character.isJavaIdentifierStart(log.charAt(pos))) {
+			return null;
+		}
+		int classEnd = pos;
+		boolean qualified = false;
+		while (classEnd < to) {
+			char c = log.charAt(classEnd);
+			if (c == '.') {
+				qualified = true;
+			} else if (!Character.isJavaIdentifierPart(c)) {
+				break;
+			}
+			classEnd++;
+		}
+		if (!qualified || log.charAt(classEnd - 1) == '.') {
+			return null;
+		}
+		if (classEnd < to && log.charAt(classEnd) != ':') {
+			return null;
+		}
+		if (!causedBy && !endsWithAny(log, pos, classEnd)) {
+			return null;
+		}
+		int messageStart = classEnd < to ? skipSpaces(log, classEnd + 1, to) : to;
+		return new ExceptionInfo(new TextSlice(log, pos, classEnd), new TextSlice(log, messageStart, to), List.of(),
+				indented);
+	}
+
+	private static boolean endsWithAny(CharSequence log, int from, int to) {
+		for (String suffix : EXCEPTION_SUFFIXES) {
+			if (to - from >= suffix.length() && startsWith(log, to - suffix.length(), to, suffix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isLevel(CharSequence log, int from, int to) {
+		for (String level : LEVELS) {
+			if (to - from == level.length() && startsWith(log, from, to, level)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean startsWith(CharSequence log, int from, int to, String prefix) {
+		if (to - from < prefix.length()) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length(); i++) {
+			if (log.charAt(from + i) != prefix.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int skipSpaces(CharSequence log, int from, int to) {
+		int pos = from;
+		while (pos < to && (log.charAt(pos) == ' ' || log.charAt(pos) == '\t')) {
+			pos++;
+		}
+		return pos;
+	}
+
+	private static boolean at(CharSequence log, int pos, int to, char c) {
+		return pos < to && log.charAt(pos) == c;
+	}
+
+	private static boolean digits(CharSequence log, int pos, int count, int to) {
+		if (pos + count > to) {
+			return false;
+		}
+		for (int i = pos; i < pos + count; i++) {
+			if (!isDigit(log.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isDigits(CharSequence log, int from, int to) {
+		return to > from && digits(log, from, to - from, to);
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+}
@@ -0,0 +1,65 @@
+package com.example.demo.service;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * 日志匹配画像：一次扫描命中的 LogSignal 集合（不可变）
+ */
+public final class LogProfile {
+
+	public static final LogProfile EMPTY = new LogProfile(0);
+
+	private final int mask;
+
+	LogProfile(int mask) {
+		this.mask = mask;
+	}
+
+	/** 命中特征的位掩码（第 n 位对应 ordinal 为 n 的 LogSignal） */
+	int mask() {
+		return mask;
+	}
+
+	public boolean has(LogSignal signal) {
+		return (mask & (1 << signal.ordinal())) != 0;
+	}
+
+	public boolean hasAny(LogSignal... signals) {
+		for (LogSignal signal : signals) {
+			if (has(signal)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public boolean isEmpty() {
+		return mask == 0;
+	}
+
+	public Set<LogSignal> signals() {
+		Set<LogSignal> set = EnumSet.noneOf(LogSignal.class);
+		for (LogSignal signal : LogSignal.values()) {
+			if (has(signal)) {
+				set.add(signal);
+			}
+		}
+		return set;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof LogProfile other && other.mask == mask;
+	}
+
+	@Override
+	public int hashCode() {
+		return mask;
+	}
+
+	@Override
+	public String toString() {
+		return "LogProfile" + signals();
+	}
+}
@@ -0,0 +1,326 @@
+package com.example.demo.service;
+
+/**
+ * 日志脱敏引擎（预编译、可复用、线程安全）
+ * <p>
+ * 一次从左到右扫描同时识别 IP、邮箱、password=、pwd=，只写一个输出缓冲区。
+ * 输出与原先依次执行的四个 replaceAll 逐字符一致：
+ * <pre>
+ *   \b\d{1,3}\.\d{1,3}\.\d{1,3}\.\d{1,3}\b                 -> [IP]
+ *   \b[A-Za-z0-9._%+-]+@[A-Za-z0-9.-]+\.[A-Z|a-z]{2,}\b    -> [EMAIL]
+ *   password\s*=\s*[^\s]+                                   -> password=[HIDDEN]
+ *   pwd\s*=\s*[^\s]+                                        -> pwd=[HIDDEN]
+ * </pre>
+ * 链式替换中后一步作用在前一步的结果上，这里按同样的语义处理：
+ * 邮箱不能跨越已替换的 IP（"[IP]" 两侧的 \b 按替换后的字符判断），
+ * pwd 的取值会越过已替换为 "password=[HIDDEN]" 的片段（该替换会吞掉其中的空白）。
+ * 单词边界按 Java 17 的 \b 定义（'_' 或 Character.isLetterOrDigit，含非间距组合符规则）。
+ */
+public final class LogRedactor {
+
+	private static final String IP = "[IP]";
+	private static final String EMAIL = "[EMAIL]";
+	private static final String PASSWORD = "password";
+	private static final String PASSWORD_HIDDEN = "password=[HIDDEN]";
+	private static final String PWD = "pwd";
+	private static final String PWD_HIDDEN = "pwd=[HIDDEN]";
+
+	/**
+	 * 脱敏；没有命中任何规则时直接返回原字符串
+	 */
+	public String redact(String text) {
+		int len = text.length();
+		StringBuilder out = null;
+		int copied = 0;
+		// 链式语义下，邮箱看到的是 IP 已被替换后的文本：紧跟在 [IP] 之后的位置左侧是 ']'
+		boolean afterIp = false;
+		// 邮箱本地部分的游程失败后，游程内的其它起点必然同样失败
+		int noEmailBefore = 0;
+		int i = 0;
+		while (i < len) {
+			char c = text.charAt(i);
+			int end = -1;
+			String replacement = null;
+			boolean ip = false;
+			if (isDigit(c) && (end = matchIp(text, i)) > 0) {
+				replacement = IP;
+				ip = true;
+			} else if (i >= noEmailBefore && isLocalChar(c)) {
+				int m = matchEmail(text, i, afterIp);
+				if (m > 0) {
+					end = m;
+					replacement = EMAIL;
+				} else {
+					noEmailBefore = -m;
+				}
+			}
+			if (replacement == null && c == 'p') {
+				if ((end = matchPassword(text, i)) > 0) {
+					replacement = PASSWORD_HIDDEN;
+				} else if ((end = matchPwd(text, i)) > 0) {
+					replacement = PWD_HIDDEN;
+				}
+			}
+			if (replacement == null) {
+				afterIp = false;
+				i++;
+				continue;
+			}
+			if (out == null) {
+				out = new StringBuilder(len + 16);
+			}
+			out.append(text, copied, i).append(replacement);
+			copied = i = end;
+			afterIp = ip;
+		}
+		if (out == null) {
+			return text;
+		}
+		return out.append(text, copied, len).toString();
+	}
+
+	// ---------------------------------------------------------------- IP
+
+	/**
+	 * \b\d{1,3}(\.\d{1,3}){3}\b，返回结束位置，不匹配返回 -1
+	 */
+	private static int matchIp(String text, int start) {
+		// 右侧是数字（单词字符），因此左侧必须不是单词字符
+		if (isWordBefore(text, start)) {
+			return -1;
+		}
+		int len = text.length();
+		int p = start;
+		for (int octet = 0; octet < 3; octet++) {
+			int n = digitRun(text, p);
+			if (n == 0 || n > 3) {
+				return -1;
+			}
+			p += n;
+			if (p >= len || text.charAt(p) != '.') {
+				return -1;
+			}
+			p++;
+		}
+		int n = digitRun(text, p);
+		if (n == 0 || n > 3) {
+			return -1;
+		}
+		p += n;
+		return isWordAt(text, p) ? -1 : p;
+	}
+
+	private static int digitRun(String text, int from) {
+		int p = from;
+		int len = text.length();
+		while (p < len && p - from < 4 && isDigit(text.charAt(p))) {
+			p++;
+		}
+		return p - from;
+	}
+
+	// ---------------------------------------------------------------- 邮箱
+
+	/**
+	 * \b[A-Za-z0-9._%+-]+@[A-Za-z0-9.-]+\.[A-Z|a-z]{2,}\b，在 IP 已替换的文本语义上匹配。
+	 * 成功返回结束位置；失败返回 -r，r 之前的位置都不可能再作为邮箱起点。
+	 */
+	private static int matchEmail(String text, int start, boolean afterIp) {
+		boolean left = !afterIp && isWordBefore(text, start);
+		if (left == isWordAt(text, start)) {
+			return -(start + 1);
+		}
+		int len = text.length();
+		int at = start;
+		while (at < len && isLocalChar(text.charAt(at)) && !isIpStart(text, at, start)) {
+			at++;
+		}
+		if (at >= len || text.charAt(at) != '@') {
+			return -at;
+		}
+		int domainEnd = at + 1;
+		while (domainEnd < len && isDomainChar(text.charAt(domainEnd)) && !isIpStart(text, domainEnd, at)) {
+			domainEnd++;
+		}
+		// 域名部分贪婪匹配后回溯：从最右的 '.' 开始尝试顶级域
+		for (int dot = domainEnd - 1; dot >= at + 2; dot--) {
+			if (text.charAt(dot) != '.') {
+				continue;
+			}
+			int tldEnd = dot + 1;
+			while (tldEnd < len && isTldChar(text.charAt(tldEnd))) {
+				tldEnd++;
+			}
+			for (int end = tldEnd; end >= dot + 3; end--) {
+				if (isWordChar(text.charAt(end - 1)) != isWordAfterInRedacted(text, end)) {
+					return end;
+				}
+			}
+		}
+		return -at;
+	}
+
+	/**
+	 * 游程扫描中遇到的 IP 起点：链式替换后该处是 '['，邮箱字符集无法跨越
+	 */
+	private static boolean isIpStart(String text, int p, int runStart) {
+		return p > runStart && isDigit(text.charAt(p)) && !isWordChar(text.charAt(p - 1)) && matchIp(text, p) > 0;
+	}
+
+	/**
+	 * IP 已替换为 "[IP]" 的文本中，位置 p 处是否为单词字符
+	 */
+	private static boolean isWordAfterInRedacted(String text, int p) {
+		if (p < text.length() && isDigit(text.charAt(p)) && matchIp(text, p) > 0) {
+			return false;
+		}
+		return isWordAt(text, p);
+	}
+
+	private static boolean isLocalChar(char c) {
+		return isAsciiAlnum(c) || c == '.' || c == '_' || c == '%' || c == '+' || c == '-';
+	}
+
+	private static boolean isDomainChar(char c) {
+		return isAsciiAlnum(c) || c == '.' || c == '-';
+	}
+
+	private static boolean isTldChar(char c) {
+		return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || c == '|';
+	}
+
+	// ---------------------------------------------------------------- password= / pwd=
+
+	/**
+	 * password\s*=\s*[^\s]+；IP、邮箱替换都不含空白，取值在原文上的范围与链式结果一致
+	 */
+	private static int matchPassword(String text, int start) {
+		int value = matchAssignment(text, start, PASSWORD);
+		return value < 0 ? -1 : skipNonSpace(text, value);
+	}
+
+	/**
+	 * pwd\s*=\s*[^\s]+；链式语义下取值作用在 password 已替换的文本上，
+	 * 取值中出现的 password=... 片段整体计入（替换结果不含空白），其余按非空白游程
+	 */
+	private static int matchPwd(String text, int start) {
+		int value = matchAssignment(text, start, PWD);
+		if (value < 0) {
+			return -1;
+		}
+		int len = text.length();
+		boolean afterIp = false;
+		int noEmailBefore = 0;
+		int p = value;
+		while (p < len) {
+			char c = text.charAt(p);
+			if (isSpace(c)) {
+				break;
+			}
+			int end;
+			if (isDigit(c) && (end = matchIp(text, p)) > 0) {
+				p = end;
+				afterIp = true;
+				continue;
+			}
+			if (p >= noEmailBefore && isLocalChar(c)) {
+				int m = matchEmail(text, p, afterIp);
+				if (m > 0) {
+					p = m;
+					afterIp = false;
+					continue;
+				}
+				noEmailBefore = -m;
+			}
+			afterIp = false;
+			if (c == 'p' && (end = matchPassword(text, p)) > 0) {
+				p = end;
+			} else {
+				p++;
+			}
+		}
+		return p;
+	}
+
+	/**
+	 * 匹配 keyword\s*=\s* 且其后至少一个非空白字符，返回取值起点，不匹配返回 -1
+	 */
+	private static int matchAssignment(String text, int start, String keyword) {
+		if (!text.startsWith(keyword, start)) {
+			return -1;
+		}
+		int len = text.length();
+		int p = skipSpace(text, start + keyword.length());
+		if (p >= len || text.charAt(p) != '=') {
+			return -1;
+		}
+		p = skipSpace(text, p + 1);
+		return p < len ? p : -1;
+	}
+
+	private static int skipSpace(String text, int p) {
+		int len = text.length();
+		while (p < len && isSpace(text.charAt(p))) {
+			p++;
+		}
+		return p;
+	}
+
+	private static int skipNonSpace(String text, int p) {
+		int len = text.length();
+		while (p < len && !isSpace(text.charAt(p))) {
+			p++;
+		}
+		return p;
+	}
+
+	// ---------------------------------------------------------------- 字符类
+
+	/** 与正则 \s 一致：[ \t\n\x0B\f\r] */
+	private static boolean isSpace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static boolean isAsciiAlnum(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || isDigit(c);
+	}
+
+	private static boolean isWordChar(int ch) {
+		return ch == '_' || Character.isLetterOrDigit(ch);
+	}
+
+	/** \b 右侧判定：位置 p 的字符是否算单词字符 */
+	private static boolean isWordAt(String text, int p) {
+		if (p >= text.length()) {
+			return false;
+		}
+		int ch = text.codePointAt(p);
+		return isWordChar(ch) || (Character.getType(ch) == Character.NON_SPACING_MARK && hasBaseCharacter(text, p));
+	}
+
+	/** \b 左侧判定：位置 p 之前的字符是否算单词字符 */
+	private static boolean isWordBefore(String text, int p) {
+		if (p <= 0) {
+			return false;
+		}
+		int ch = text.codePointBefore(p);
+		return isWordChar(ch) || (Character.getType(ch) == Character.NON_SPACING_MARK && hasBaseCharacter(text, p - 1));
+	}
+
+	private static boolean hasBaseCharacter(String text, int p) {
+		for (int x = p; x >= 0; x--) {
+			int ch = text.codePointAt(x);
+			if (Character.isLetterOrDigit(ch)) {
+				return true;
+			}
+			if (Character.getType(ch) != Character.NON_SPACING_MARK) {
+				return false;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,32 @@
+package com.example.demo.service;
+
+/**
+ * 日志特征关键词（全部小写 ASCII，匹配时忽略大小写）
+ * 标题、错误分类、FakeAiClient 都基于同一次扫描得到的 LogProfile 判断
+ */
+public enum LogSignal {
+	NULL_POINTER("nullpointerexception"),
+	BEAN_CREATION("beancreationexception"),
+	NO_SUCH_BEAN("nosuchbeandefinitionexception"),
+	REQUIRED_A_BEAN("required a bean"),
+	SQL_EXCEPTION("sqlexception"),
+	SQL_SYNTAX("sqlsyntaxerrorexception"),
+	JDBC("jdbc"),
+	OUT_OF_MEMORY("outofmemoryerror"),
+	BIND_EXCEPTION("bindexception"),
+	ADDRESS_IN_USE("address already in use"),
+	PORT_8080("port 8080"),
+	APPLICATION_PROPERTIES("application.properties"),
+	BIND_PROPERTIES_FAILED("failed to bind properties"),
+	UNRESOLVED_PLACEHOLDER("could not resolve placeholder");
+
+	private final String keyword;
+
+	LogSignal(String keyword) {
+		this.keyword = keyword;
+	}
+
+	public String getKeyword() {
+		return keyword;
+	}
+}
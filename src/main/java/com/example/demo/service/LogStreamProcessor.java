@@ -0,0 +1,311 @@
+package com.example.demo.service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 大日志流式处理：按块读取 → 脱敏 → 分类 / SHA-256 / 异常块摘录 / GZIP 压缩
+ * <p>
+ * 只在换行处切块，且切点前一行（去掉尾部空白）不能以 password、pwd 或 '=' 结尾
+ * （password\s*=\s* 可以跨行），因此逐块脱敏与整段脱敏结果一致；
+ * 单行超过 {@link #MAX_PENDING} 字符时在块尾强制切分。
+ * 内存占用与文件大小无关：压缩后的正文写入临时文件，保存时以流的方式写入 BLOB。
+ */
+public final class LogStreamProcessor {
+
+	/** 保存的异常块摘录上限 */
+	public static final int EXCERPT_LIMIT = 8000;
+
+	static final int READ_BUFFER = 64 * 1024;
+
+	static final int MAX_PENDING = 1024 * 1024;
+
+	/** 摘录中单行最多保留的字符数 */
+	private static final int MAX_LINE = 500;
+
+	/** 每个异常块最多保留的堆栈行数 */
+	private static final int MAX_FRAMES = 20;
+
+	/** 用于去重的异常首行最多记录条数 */
+	private static final int MAX_SEEN_HEADERS = 256;
+
+	private final LogRedactor logRedactor = new LogRedactor();
+
+	private final LogClassifier logClassifier = new LogClassifier();
+
+	/**
+	 * 处理结果
+	 *
+	 * @param excerpt        异常块摘录（没有异常块时为开头部分），不超过 {@link #EXCERPT_LIMIT}
+	 * @param profile        全文的匹配画像
+	 * @param contentHash    SHA-256(全文 + hashSuffix)，与 calculateLogHash 对同样内容的结果一致
+	 * @param compressedBody 全文 GZIP（UTF-8）所在的临时文件，{@link #close()} 时删除
+	 * @param compressedSize 压缩后的字节数
+	 * @param totalChars     全文字符数
+	 */
+	public record Result(String excerpt, LogProfile profile, String contentHash, Path compressedBody,
+			long compressedSize, long totalChars) implements AutoCloseable {
+
+		public InputStream openCompressedBody() throws IOException {
+			return Files.newInputStream(compressedBody);
+		}
+
+		@Override
+		public void close() {
+			try {
+				Files.deleteIfExists(compressedBody);
+			} catch (IOException e) {
+				throw new UncheckedIOException("删除临时文件失败：" + compressedBody, e);
+			}
+		}
+	}
+
+	/**
+	 * @param sanitize   是否脱敏；为 false 时内容原样处理
+	 * @param hashSuffix 追加在全文之后参与哈希的部分（"|类型|选项"）
+	 */
+	public Result process(InputStream in, boolean sanitize, String hashSuffix) throws IOException {
+		Path body = Files.createTempFile("logsage-upload-", ".gz");
+		try {
+			Sink sink = new Sink(sanitize, body);
+			try {
+				Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+				char[] buffer = new char[READ_BUFFER];
+				StringBuilder pending = new StringBuilder();
+				int n;
+				while ((n = reader.read(buffer)) != -1) {
+					pending.append(buffer, 0, n);
+					int cut = safeCut(pending);
+					if (cut < 0 && pending.length() >= MAX_PENDING) {
+						cut = forcedCut(pending);
+					}
+					if (cut > 0) {
+						sink.accept(pending.substring(0, cut));
+						pending.delete(0, cut);
+					}
+				}
+				if (pending.length() > 0) {
+					sink.accept(pending.toString());
+				}
+			} catch (IOException | RuntimeException e) {
+				sink.abort();
+				throw e;
+			}
+			return sink.finish(hashSuffix);
+		} catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(body);
+			throw e;
+		}
+	}
+
+	/**
+	 * 最后一个安全切点（某个 '\n' 之后的位置），没有返回 -1
+	 */
+	static int safeCut(CharSequence text) {
+		for (int nl = lastIndexOf(text, '\n', text.length() - 1); nl >= 0; nl = lastIndexOf(text, '\n', nl - 1)) {
+			int end = nl;
+			while (end > 0 && isSpace(text.charAt(end - 1))) {
+				end--;
+			}
+			if (!endsWith(text, end, "password") && !endsWith(text, end, "pwd") && !endsWith(text, end, "=")) {
+				return nl + 1;
+			}
+			// 跳过这段空白，继续向前找
+			nl = end;
+		}
+		return -1;
+	}
+
+	private static int forcedCut(CharSequence text) {
+		int cut = text.length();
+		// 不拆开代理对
+		return Character.isHighSurrogate(text.charAt(cut - 1)) ? cut - 1 : cut;
+	}
+
+	private static int lastIndexOf(CharSequence text, char c, int from) {
+		for (int i = from; i >= 0; i--) {
+			if (text.charAt(i) == c) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean endsWith(CharSequence text, int end, String suffix) {
+		int start = end - suffix.length();
+		if (start < 0) {
+			return false;
+		}
+		for (int i = 0; i < suffix.length(); i++) {
+			if (text.charAt(start + i) != suffix.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** 与 LogRedactor 一致的 \s */
+	private static boolean isSpace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+	}
+
+	/**
+	 * 已切好的块依次进入：脱敏后同时喂给分类器、摘要、压缩流（写入临时文件）和摘录
+	 */
+	private final class Sink {
+		private final boolean sanitize;
+		private final LogClassifier.Scanner scanner = logClassifier.newScanner();
+		private final MessageDigest digest;
+		private final Path body;
+		private final Writer gzip;
+		private final ExceptionBlocks blocks = new ExceptionBlocks();
+		private final StringBuilder head = new StringBuilder();
+		private long totalChars;
+
+		Sink(boolean sanitize, Path body) throws IOException {
+			this.sanitize = sanitize;
+			this.body = body;
+			try {
+				this.digest = MessageDigest.getInstance("SHA-256");
+			} catch (NoSuchAlgorithmException e) {
+				throw new RuntimeException("计算哈希失败", e);
+			}
+			this.gzip = new OutputStreamWriter(
+					new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(body), 8192), 8192),
+					StandardCharsets.UTF_8);
+		}
+
+		void accept(String chunk) throws IOException {
+			String text = sanitize ? logRedactor.redact(chunk) : chunk;
+			scanner.feed(text, 0, text.length());
+			digest.update(text.getBytes(StandardCharsets.UTF_8));
+			gzip.write(text);
+			blocks.accept(text);
+			if (head.length() < EXCERPT_LIMIT) {
+				head.append(text, 0, Math.min(text.length(), EXCERPT_LIMIT - head.length()));
+			}
+			totalChars += text.length();
+		}
+
+		Result finish(String hashSuffix) throws IOException {
+			gzip.close();
+			blocks.finish();
+			digest.update(hashSuffix.getBytes(StandardCharsets.UTF_8));
+			String excerpt = blocks.isEmpty() ? head.toString() : blocks.toString();
+			return new Result(excerpt, scanner.profile(), HexFormat.of().formatHex(digest.digest()), body,
+					Files.size(body), totalChars);
+		}
+
+		/** 读取失败时关闭压缩流（临时文件由调用方删除） */
+		void abort() {
+			try {
+				gzip.close();
+			} catch (IOException ignored) {
+				// 已经在处理更早的异常
+			}
+		}
+	}
+
+	/**
+	 * 逐行提取异常块（异常首行 + Caused by / 堆栈行），相同首行的块只保留一次
+	 */
+	private static final class ExceptionBlocks {
+		private final StringBuilder excerpt = new StringBuilder();
+		private final StringBuilder line = new StringBuilder();
+		private final Set<String> seenHeaders = new HashSet<>();
+		private boolean inBlock;
+		private boolean skipBlock;
+		private int frames;
+
+		void accept(CharSequence text) {
+			for (int i = 0; i < text.length(); i++) {
+				char c = text.charAt(i);
+				if (c == '\n') {
+					endLine();
+				} else if (line.length() < MAX_LINE) {
+					line.append(c);
+				}
+			}
+		}
+
+		void finish() {
+			if (line.length() > 0) {
+				endLine();
+			}
+		}
+
+		boolean isEmpty() {
+			return excerpt.length() == 0;
+		}
+
+		private void endLine() {
+			String current = stripCarriageReturn(line);
+			line.setLength(0);
+			if (excerpt.length() >= EXCERPT_LIMIT) {
+				return;
+			}
+			if (inBlock && isContinuation(current)) {
+				if (!skipBlock && frames++ < MAX_FRAMES) {
+					append(current);
+				}
+				return;
+			}
+			inBlock = isHeader(current);
+			if (inBlock) {
+				frames = 0;
+				String key = current.trim();
+				skipBlock = seenHeaders.contains(key);
+				if (!skipBlock) {
+					if (seenHeaders.size() < MAX_SEEN_HEADERS) {
+						seenHeaders.add(key);
+					}
+					append(current);
+				}
+			}
+		}
+
+		private void append(String text) {
+			int room = EXCERPT_LIMIT - excerpt.length();
+			if (room <= 0) {
+				return;
+			}
+			excerpt.append(text, 0, Math.min(text.length(), room - 1)).append('\n');
+		}
+
+		private static boolean isHeader(String line) {
+			return line.contains("Exception") || line.contains("Error") || line.contains("ERROR")
+					|| line.contains("APPLICATION FAILED TO START");
+		}
+
+		private static boolean isContinuation(String line) {
+			String t = line.trim();
+			return t.startsWith("at ") || t.startsWith("... ") || t.startsWith("Caused by:")
+					|| t.startsWith("Suppressed:");
+		}
+
+		private static String stripCarriageReturn(StringBuilder line) {
+			int len = line.length();
+			return len > 0 && line.charAt(len - 1) == '\r' ? line.substring(0, len - 1) : line.toString();
+		}
+
+		@Override
+		public String toString() {
+			return excerpt.toString();
+		}
+	}
+}
@@ -0,0 +1,10 @@
+package com.example.demo.service;
+
+/**
+ * 当日分析额度不足（接口返回 429，其他失败按服务端错误处理）
+ */
+public class QuotaExceededException extends RuntimeException {
+	public QuotaExceededException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,132 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Cause;
+import com.example.demo.model.SuggestedFix;
+import com.example.demo.model.VerificationStep;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * FakeAiClient 的规则知识库：从 JSON 规则文件编译出 {@link RuleSet}，通过原子替换快照热加载
+ * <p>
+ * 默认使用内置的 classpath:rules/fake-ai-rules.json；{@link #watch(Path)} 之后改用外部文件，
+ * {@link #reloadIfChanged()} 发现修改时间变化就重新编译，编译失败时保留旧快照。
+ * 正在处理的请求继续使用它开始时取到的快照。
+ */
+public final class RuleKnowledgeBase {
+
+	private static final Logger log = LoggerFactory.getLogger(RuleKnowledgeBase.class);
+
+	static final String BUILTIN_RULES = "rules/fake-ai-rules.json";
+
+	private static final ObjectReader RULE_FILE_READER = new ObjectMapper()
+			.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+			.readerFor(RuleFile.class);
+
+	private final AnalysisResultCodec codec = new AnalysisResultCodec();
+
+	private final AtomicReference<RuleSet> snapshot = new AtomicReference<>();
+
+	private volatile Path watched;
+
+	private volatile FileTime lastModified;
+
+	/**
+	 * 规则文件：按顺序匹配 rules，都不命中时用 fallback
+	 */
+	public record RuleFile(List<RuleSpec> rules, RuleSpec fallback, Defaults defaults) {
+	}
+
+	/**
+	 * 所有规则共用：未写 steps 的规则使用默认步骤，各深度的附加修复追加在规则自己的修复之后
+	 */
+	public record Defaults(List<VerificationStep> steps, Map<String, List<SuggestedFix>> depthFixes) {
+	}
+
+	/**
+	 * 一条规则：signals 为 LogSignal 名称（任一命中即匹配）；tldr 中可用 {logType}，
+	 * rootCauseTldr 在解析出根因时使用，可用 {rootCause}
+	 */
+	public record RuleSpec(String name, List<String> signals, String tldr, String rootCauseTldr, List<Cause> causes,
+			List<VerificationStep> steps, List<SuggestedFix> fixes, Map<String, List<SuggestedFix>> depthFixes) {
+	}
+
+	public RuleKnowledgeBase() {
+		try (InputStream in = RuleKnowledgeBase.class.getClassLoader().getResourceAsStream(BUILTIN_RULES)) {
+			if (in == null) {
+				throw new RuntimeException("内置规则文件不存在：" + BUILTIN_RULES);
+			}
+			snapshot.set(compile(in));
+		} catch (IOException e) {
+			throw new RuntimeException("读取内置规则文件失败", e);
+		}
+	}
+
+	/**
+	 * 当前快照
+	 */
+	public RuleSet current() {
+		return snapshot.get();
+	}
+
+	/**
+	 * 改用外部规则文件：立即加载（失败时抛出异常，启动失败），之后由 reloadIfChanged 检查修改
+	 */
+	public void watch(Path path) {
+		try {
+			FileTime modified = Files.getLastModifiedTime(path);
+			snapshot.set(load(path));
+			lastModified = modified;
+			watched = path;
+		} catch (IOException e) {
+			throw new RuntimeException("读取规则文件失败：" + path, e);
+		}
+	}
+
+	/**
+	 * 外部规则文件的修改时间变化时重新编译并替换快照；编译失败时保留旧快照
+	 *
+	 * @return 是否替换了快照
+	 */
+	public boolean reloadIfChanged() {
+		Path path = watched;
+		if (path == null) {
+			return false;
+		}
+		try {
+			FileTime modified = Files.getLastModifiedTime(path);
+			if (modified.equals(lastModified)) {
+				return false;
+			}
+			lastModified = modified;
+			snapshot.set(load(path));
+			log.info("规则文件已重新加载：{}（{} 条规则）", path, snapshot.get().getRules().size());
+			return true;
+		} catch (IOException | RuntimeException e) {
+			log.warn("规则文件重新加载失败，继续使用旧规则：{}", path, e);
+			return false;
+		}
+	}
+
+	private RuleSet load(Path path) throws IOException {
+		try (InputStream in = Files.newInputStream(path)) {
+			return compile(in);
+		}
+	}
+
+	private RuleSet compile(InputStream in) throws IOException {
+		return RuleSet.compile(RULE_FILE_READER.readValue(in), codec);
+	}
+}
@@ -0,0 +1,226 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Cause;
+import com.example.demo.model.SuggestedFix;
+import com.example.demo.model.VerificationStep;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 编译后的规则快照（不可变、线程安全）
+ * <p>
+ * 每条规则的特征集合编译成位掩码，再展开为“匹配画像掩码 → 第一条命中的规则”的查找表，匹配只需一次数组访问；
+ * 规则的原因、步骤、修复都是不可变列表，按输出深度合并好附加修复，
+ * 并按（深度 × 是否生成行动清单）预先编码好 result_cbor，未填写 tried 的请求直接复用，不再分配；
+ * 步骤与修复同时建好 {@link TriedIndex}，过滤 tried 时不再逐条比较文本。
+ */
+public final class RuleSet {
+
+	private static final int SIGNALS = LogSignal.values().length;
+
+	private final List<Rule> rules;
+
+	/** 画像掩码 → 规则 */
+	private final Rule[] byMask;
+
+	private RuleSet(List<Rule> rules, Rule fallback) {
+		this.rules = List.copyOf(rules);
+		this.byMask = new Rule[1 << SIGNALS];
+		for (int mask = 0; mask < byMask.length; mask++) {
+			Rule matched = fallback;
+			for (Rule rule : rules) {
+				if ((rule.mask & mask) != 0) {
+					matched = rule;
+					break;
+				}
+			}
+			byMask[mask] = matched;
+		}
+	}
+
+	/**
+	 * 第一条特征与画像有交集的规则；都不命中时为兜底规则
+	 */
+	public Rule match(LogProfile profile) {
+		return byMask[profile.mask()];
+	}
+
+	public List<Rule> getRules() {
+		return rules;
+	}
+
+	/**
+	 * 编译规则文件：校验特征名、合并默认步骤与各深度的附加修复、预编码结果
+	 */
+	static RuleSet compile(RuleKnowledgeBase.RuleFile file, AnalysisResultCodec codec) {
+		if (file == null || file.fallback() == null) {
+			throw new RuntimeException("规则文件缺少 fallback 规则");
+		}
+		RuleKnowledgeBase.Defaults defaults = file.defaults() != null
+				? file.defaults()
+				: new RuleKnowledgeBase.Defaults(null, null);
+		List<Rule> rules = new ArrayList<>();
+		Set<String> names = new HashSet<>();
+		if (file.rules() != null) {
+			for (RuleKnowledgeBase.RuleSpec spec : file.rules()) {
+				Rule rule = new Rule(spec, defaults, false, codec);
+				if (!names.add(rule.name)) {
+					throw new RuntimeException("规则名称重复：" + rule.name);
+				}
+				rules.add(rule);
+			}
+		}
+		return new RuleSet(rules, new Rule(file.fallback(), defaults, true, codec));
+	}
+
+	/**
+	 * 一条编译后的规则
+	 */
+	public static final class Rule {
+		private final String name;
+		private final int mask;
+		private final String tldr;
+		private final String rootCauseTldr;
+		private final List<Cause> causes;
+		private final List<VerificationStep> steps;
+		private final List<SuggestedFix> fixes;
+		private final Map<String, List<SuggestedFix>> fixesByDepth;
+		private final TriedIndex triedIndex;
+
+		/** 深度 → [不生成行动清单, 生成行动清单] 的 result_cbor；未知深度用 baseEncoded */
+		private final Map<String, byte[][]> encodedByDepth;
+		private final byte[][] baseEncoded;
+
+		private Rule(RuleKnowledgeBase.RuleSpec spec, RuleKnowledgeBase.Defaults defaults, boolean fallback,
+				AnalysisResultCodec codec) {
+			if (spec.name() == null || spec.name().isBlank()) {
+				throw new RuntimeException("规则缺少 name");
+			}
+			this.name = spec.name();
+			if (spec.tldr() == null) {
+				throw new RuntimeException("规则 " + name + " 缺少 tldr");
+			}
+			int m = 0;
+			if (spec.signals() != null) {
+				for (String signal : spec.signals()) {
+					try {
+						m |= 1 << LogSignal.valueOf(signal).ordinal();
+					} catch (IllegalArgumentException e) {
+						throw new RuntimeException("规则 " + name + " 中的特征不存在：" + signal);
+					}
+				}
+			}
+			if (m == 0 && !fallback) {
+				throw new RuntimeException("规则 " + name + " 至少需要一个特征");
+			}
+			this.mask = m;
+			this.tldr = spec.tldr();
+			this.rootCauseTldr = spec.rootCauseTldr();
+			this.causes = copy(spec.causes());
+			this.steps = copy(spec.steps() != null ? spec.steps() : defaults.steps());
+			this.fixes = copy(spec.fixes());
+
+			Map<String, List<SuggestedFix>> byDepth = new HashMap<>();
+			Set<String> depths = new HashSet<>();
+			if (spec.depthFixes() != null) {
+				depths.addAll(spec.depthFixes().keySet());
+			}
+			if (defaults.depthFixes() != null) {
+				depths.addAll(defaults.depthFixes().keySet());
+			}
+			for (String depth : depths) {
+				List<SuggestedFix> merged = new ArrayList<>(fixes);
+				if (spec.depthFixes() != null && spec.depthFixes().get(depth) != null) {
+					merged.addAll(spec.depthFixes().get(depth));
+				}
+				if (defaults.depthFixes() != null && defaults.depthFixes().get(depth) != null) {
+					merged.addAll(defaults.depthFixes().get(depth));
+				}
+				byDepth.put(depth, List.copyOf(merged));
+			}
+			this.fixesByDepth = Map.copyOf(byDepth);
+
+			List<List<SuggestedFix>> fixLists = new ArrayList<>(fixesByDepth.values());
+			fixLists.add(fixes);
+			try {
+				this.triedIndex = new TriedIndex(steps, fixLists);
+			} catch (RuntimeException e) {
+				throw new RuntimeException("规则 " + name + "：" + e.getMessage(), e);
+			}
+
+			this.baseEncoded = encode(codec, fixes);
+			Map<String, byte[][]> encoded = new HashMap<>();
+			fixesByDepth.forEach((depth, depthFixes) -> encoded.put(depth, encode(codec, depthFixes)));
+			this.encodedByDepth = Map.copyOf(encoded);
+		}
+
+		private byte[][] encode(AnalysisResultCodec codec, List<SuggestedFix> depthFixes) {
+			return new byte[][] {
+					codec.encode(causes, null, depthFixes),
+					codec.encode(causes, steps, depthFixes) };
+		}
+
+		private static <T> List<T> copy(List<T> items) {
+			return items != null ? List.copyOf(items) : List.of();
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * TL;DR：有根因且规则提供了 rootCauseTldr 时用根因模板；模板中的 {logType}、{rootCause} 在此替换
+		 *
+		 * @param rootCause 根因的简单类名，可为 null
+		 */
+		public String tldr(String logType, CharSequence rootCause) {
+			String template = rootCause != null && rootCauseTldr != null ? rootCauseTldr : tldr;
+			if (template.indexOf('{') < 0) {
+				return template;
+			}
+			return template.replace("{logType}", String.valueOf(logType))
+					.replace("{rootCause}", rootCause != null ? rootCause : "");
+		}
+
+		/** TL;DR 是否可能用到根因（需要解析日志） */
+		public boolean usesRootCause() {
+			return rootCauseTldr != null;
+		}
+
+		public List<Cause> getCauses() {
+			return causes;
+		}
+
+		public List<VerificationStep> getSteps() {
+			return steps;
+		}
+
+		/**
+		 * 该深度下的修复建议（基础修复 + 规则与默认的附加修复）
+		 */
+		public List<SuggestedFix> fixes(String depth) {
+			List<SuggestedFix> depthFixes = depth != null ? fixesByDepth.get(depth) : null;
+			return depthFixes != null ? depthFixes : fixes;
+		}
+
+		/**
+		 * 步骤与各深度修复的 tried 过滤索引
+		 */
+		TriedIndex getTriedIndex() {
+			return triedIndex;
+		}
+
+		/**
+		 * 未经 tried 过滤时的 result_cbor（与 AnalysisResultCodec.encode 的结果相同），调用方不得修改
+		 */
+		public byte[] encoded(String depth, boolean generateActionList) {
+			byte[][] variants = depth != null ? encodedByDepth.get(depth) : null;
+			return (variants != null ? variants : baseEncoded)[generateActionList ? 1 : 0];
+		}
+	}
+}
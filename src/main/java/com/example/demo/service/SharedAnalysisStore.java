@@ -0,0 +1,53 @@
+package com.example.demo.service;
+
+import com.example.demo.model.SharedAnalysisResult;
+import com.example.demo.repository.SharedAnalysisResultRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 共享分析输出的存取（共享模式）
+ */
+@Service
+public class SharedAnalysisStore {
+	@Autowired
+	private SharedAnalysisResultRepository sharedAnalysisResultRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	public Optional<SharedAnalysisResult> find(String contentHash) {
+		return sharedAnalysisResultRepository.findByContentHash(contentHash);
+	}
+
+	public Optional<SharedAnalysisResult> findById(Long id) {
+		return sharedAnalysisResultRepository.findById(id);
+	}
+
+	public List<SharedAnalysisResult> findAllById(Collection<Long> ids) {
+		return sharedAnalysisResultRepository.findAllById(ids);
+	}
+
+	/**
+	 * 保存共享结果；其他用户并发写入了同一哈希时返回已存在的那条
+	 * 插入放在独立事务中，唯一约束冲突只回滚这一次插入，不影响调用方事务
+	 */
+	public SharedAnalysisResult saveIfAbsent(SharedAnalysisResult result) {
+		TransactionTemplate requiresNew = new TransactionTemplate(transactionManager);
+		requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		try {
+			return requiresNew.execute(status -> sharedAnalysisResultRepository.saveAndFlush(result));
+		} catch (DataIntegrityViolationException e) {
+			return find(result.getContentHash())
+					.orElseThrow(() -> e);
+		}
+	}
+}
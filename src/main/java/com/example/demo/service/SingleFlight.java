@@ -0,0 +1,68 @@
+package com.example.demo.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 进行中请求合并（single-flight）：同一 key 同一时刻只执行一次，
+ * 并发到达的重复调用等待第一个调用的结果（或异常），不再重复执行。
+ * <p>
+ * 只合并“正在执行”的调用，执行结束后 key 即移除，结果不做缓存。
+ */
+public final class SingleFlight<K, V> {
+
+	private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+	private final AtomicLong coalesced = new AtomicLong();
+
+	public V execute(K key, Supplier<V> work) {
+		CompletableFuture<V> mine = new CompletableFuture<>();
+		CompletableFuture<V> existing = inFlight.putIfAbsent(key, mine);
+		if (existing != null) {
+			coalesced.incrementAndGet();
+			return await(existing);
+		}
+		try {
+			V value = work.get();
+			mine.complete(value);
+			return value;
+		} catch (RuntimeException | Error e) {
+			mine.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(key, mine);
+		}
+	}
+
+	private V await(CompletableFuture<V> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			// 等待方收到与执行方相同的异常
+			if (e.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			}
+			if (e.getCause() instanceof Error cause) {
+				throw cause;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * 累计被合并（未实际执行、直接复用结果）的调用次数
+	 */
+	public long coalescedCount() {
+		return coalesced.get();
+	}
+
+	/**
+	 * 当前正在执行的 key 数
+	 */
+	public int inFlightCount() {
+		return inFlight.size();
+	}
+}
@@ -0,0 +1,81 @@
+package com.example.demo.service;
+
+import java.util.Objects;
+
+/**
+ * 输入文本上的只读视图（起止偏移），不复制字符；调用 toString() 时才生成字符串
+ */
+public final class TextSlice implements CharSequence {
+
+	private final CharSequence source;
+	private final int start;
+	private final int end;
+
+	TextSlice(CharSequence source, int start, int end) {
+		Objects.checkFromToIndex(start, end, source.length());
+		this.source = source;
+		this.start = start;
+		this.end = end;
+	}
+
+	/** 视图所在的原文 */
+	CharSequence source() {
+		return source;
+	}
+
+	/** 在原文中的起始偏移（含） */
+	public int start() {
+		return start;
+	}
+
+	/** 在原文中的结束偏移（不含） */
+	public int end() {
+		return end;
+	}
+
+	@Override
+	public int length() {
+		return end - start;
+	}
+
+	@Override
+	public char charAt(int index) {
+		Objects.checkIndex(index, length());
+		return source.charAt(start + index);
+	}
+
+	@Override
+	public TextSlice subSequence(int from, int to) {
+		Objects.checkFromToIndex(from, to, length());
+		return new TextSlice(source, start + from, start + to);
+	}
+
+	public int lastIndexOf(char c) {
+		for (int i = end - 1; i >= start; i--) {
+			if (source.charAt(i) == c) {
+				return i - start;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * 逐字符比较，不生成字符串
+	 */
+	public boolean contentEquals(CharSequence other) {
+		if (other == null || other.length() != length()) {
+			return false;
+		}
+		for (int i = 0; i < other.length(); i++) {
+			if (source.charAt(start + i) != other.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return source.subSequence(start, end).toString();
+	}
+}
@@ -0,0 +1,150 @@
+package com.example.demo.service;
+
+import com.example.demo.model.SuggestedFix;
+import com.example.demo.model.VerificationStep;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一条规则的“已尝试”过滤索引（不可变、线程安全）
+ * <p>
+ * 编译规则时把每个候选（步骤的描述与命令、修复）转成小写，记下它包含哪些关键词，
+ * 并把它所有长度为 5 的片段放进“片段 → 候选位图”的表；
+ * 每个请求只对 tried 切分一次，逐个片段查表，代价只与 tried 的长度有关。
+ * 判定与 {@link #similar(String, String)} 逐条比较的结果相同：有共同关键词，或有长度 ≥ 5 的公共子串。
+ */
+final class TriedIndex {
+
+	/** 常见的关键词（检查、重启、配置、日志等） */
+	static final String[] KEYWORDS = { "检查", "重启", "配置", "日志", "断点", "变量", "异常", "堆栈",
+			"check", "restart", "config", "log", "breakpoint", "variable", "exception", "stack",
+			"空值", "null", "依赖", "dependency", "bean", "扫描", "scan" };
+
+	static final int SHINGLE = 5;
+
+	/** 候选 → 位（步骤与修复各自按值相等去重） */
+	private final Map<Object, Long> bits = new HashMap<>();
+
+	/** 至少被一个候选包含的关键词，及包含它的候选位图 */
+	private final String[] keywords;
+	private final long[] keywordBits;
+
+	/** 片段 → 包含该片段的候选位图 */
+	private final Map<String, Long> shingles = new HashMap<>();
+
+	private final long all;
+
+	TriedIndex(List<VerificationStep> steps, Collection<List<SuggestedFix>> fixLists) {
+		Map<String, Long> byKeyword = new HashMap<>();
+		for (VerificationStep step : steps) {
+			add(step, byKeyword, step.step(), step.command());
+		}
+		for (List<SuggestedFix> fixes : fixLists) {
+			for (SuggestedFix fix : fixes) {
+				add(fix, byKeyword, fix.fix());
+			}
+		}
+		List<String> present = new ArrayList<>();
+		for (String keyword : KEYWORDS) {
+			if (byKeyword.containsKey(keyword)) {
+				present.add(keyword);
+			}
+		}
+		this.keywords = present.toArray(new String[0]);
+		this.keywordBits = new long[keywords.length];
+		for (int i = 0; i < keywords.length; i++) {
+			keywordBits[i] = byKeyword.get(keywords[i]);
+		}
+		long union = 0;
+		for (long bit : bits.values()) {
+			union |= bit;
+		}
+		this.all = union;
+	}
+
+	private void add(Object candidate, Map<String, Long> byKeyword, String... texts) {
+		if (bits.containsKey(candidate)) {
+			return;
+		}
+		if (bits.size() == Long.SIZE) {
+			throw new RuntimeException("一条规则的步骤与修复不能超过 " + Long.SIZE + " 条");
+		}
+		long bit = 1L << bits.size();
+		bits.put(candidate, bit);
+		for (String text : texts) {
+			if (text == null) {
+				continue;
+			}
+			String lower = text.toLowerCase();
+			for (String keyword : KEYWORDS) {
+				if (lower.contains(keyword)) {
+					byKeyword.merge(keyword, bit, (a, b) -> a | b);
+				}
+			}
+			for (int i = 0; i <= lower.length() - SHINGLE; i++) {
+				shingles.merge(lower.substring(i, i + SHINGLE), bit, (a, b) -> a | b);
+			}
+		}
+	}
+
+	/**
+	 * 与 tried 相似（视为已尝试）的候选位图；tried 为空时为 0
+	 */
+	long match(String tried) {
+		if (tried == null || tried.trim().isEmpty()) {
+			return 0;
+		}
+		String triedLower = tried.toLowerCase();
+		long matched = 0;
+		for (int i = 0; i < keywords.length; i++) {
+			if ((matched & keywordBits[i]) != keywordBits[i] && triedLower.contains(keywords[i])) {
+				matched |= keywordBits[i];
+			}
+		}
+		for (int i = 0; i <= triedLower.length() - SHINGLE && matched != all; i++) {
+			Long bit = shingles.get(triedLower.substring(i, i + SHINGLE));
+			if (bit != null) {
+				matched |= bit;
+			}
+		}
+		return matched;
+	}
+
+	/**
+	 * 去掉已尝试的候选；全部被过滤掉时返回原始列表
+	 */
+	<T> List<T> filter(List<T> items, long tried) {
+		if (tried == 0) {
+			return items;
+		}
+		List<T> filtered = new ArrayList<>(items.size());
+		for (T item : items) {
+			Long bit = bits.get(item);
+			if (bit == null || (bit & tried) == 0) {
+				filtered.add(item);
+			}
+		}
+		return filtered.isEmpty() ? items : filtered;
+	}
+
+	/**
+	 * 逐条比较的定义（均为小写文本）：有共同关键词，或 text1 中某个长度为 5 的片段出现在 text2 中
+	 */
+	static boolean similar(String text1, String text2) {
+		for (String keyword : KEYWORDS) {
+			if (text1.contains(keyword) && text2.contains(keyword)) {
+				return true;
+			}
+		}
+		for (int i = 0; i <= text1.length() - SHINGLE; i++) {
+			if (text2.contains(text1.substring(i, i + SHINGLE))) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,36 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * log_analysis / analysis_cache / usage_daily 的 ID 改由序列生成（步长与实体的 allocationSize 一致），
+ * IDENTITY 需要逐条插入后取回 ID，序列可以预先分配一段，Hibernate 才能批量插入。
+ * 序列起点取决于已有数据，所以用 Java 迁移。
+ */
+public class V2__IdSequences extends BaseJavaMigration {
+
+	private static final int ALLOCATION_SIZE = 50;
+
+	private static final String[] TABLES = { "log_analysis", "analysis_cache", "usage_daily" };
+
+	@Override
+	public void migrate(Context context) throws Exception {
+		try (Statement statement = context.getConnection().createStatement()) {
+			for (String table : TABLES) {
+				long maxId;
+				try (ResultSet rs = statement.executeQuery("SELECT COALESCE(MAX(id), 0) FROM " + table)) {
+					rs.next();
+					maxId = rs.getLong(1);
+				}
+				// pooled 优化器把取到的序列值当作本段的上界，起点留出一整段，分配的 ID 从 maxId + 1 开始
+				statement.execute("CREATE SEQUENCE " + table + "_seq START WITH " + (maxId + ALLOCATION_SIZE)
+						+ " INCREMENT BY " + ALLOCATION_SIZE);
+				statement.execute("ALTER TABLE " + table + " ALTER COLUMN id DROP IDENTITY");
+			}
+		}
+	}
+}
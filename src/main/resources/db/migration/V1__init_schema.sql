@@ -0,0 +1,71 @@
+-- 初始表结构（与实体映射一致，启动时由 ddl-auto=validate 校验）
+-- 实体上 columnDefinition = "TEXT" 的列在这里使用 CHARACTER VARYING：H2 把 TEXT 建成 CLOB，
+-- 既无法通过类型校验，读取时也要多一次 LOB 访问；这些列的内容都远小于上限
+
+CREATE TABLE users (
+	id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+	email CHARACTER VARYING(255) NOT NULL,
+	password CHARACTER VARYING(255) NOT NULL,
+	created_at TIMESTAMP(6),
+	default_type CHARACTER VARYING(20),
+	default_sanitize BOOLEAN,
+	default_depth CHARACTER VARYING(255),
+	CONSTRAINT uk_users_email UNIQUE (email)
+);
+
+CREATE TABLE log_analysis (
+	id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+	user_id BIGINT NOT NULL,
+	log_type CHARACTER VARYING(255) NOT NULL,
+	raw_log CHARACTER VARYING(1000000),
+	sanitized_log CHARACTER VARYING(1000000),
+	log_body_gz BINARY LARGE OBJECT,
+	log_size BIGINT,
+	title CHARACTER VARYING(255),
+	tldr CHARACTER VARYING(1000000),
+	result_cbor BINARY VARYING(65535),
+	top_causes CHARACTER VARYING(1000000),
+	verification_steps CHARACTER VARYING(1000000),
+	suggested_fixes CHARACTER VARYING(1000000),
+	need_more_info CHARACTER VARYING(1000000),
+	options CHARACTER VARYING(1000000),
+	tried CHARACTER VARYING(1000000),
+	error_category CHARACTER VARYING(20),
+	shared_result_id BIGINT,
+	history_summary CHARACTER VARYING(500),
+	created_at TIMESTAMP(6)
+);
+
+-- 历史列表：WHERE user_id = ? [AND error_category = ?] 按 (created_at, id) 倒序游标分页，索引顺序即返回顺序
+CREATE INDEX idx_log_analysis_user_created ON log_analysis (user_id, created_at, id);
+CREATE INDEX idx_log_analysis_user_category_created ON log_analysis (user_id, error_category, created_at, id);
+
+CREATE TABLE analysis_cache (
+	id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+	user_id BIGINT NOT NULL,
+	log_hash CHARACTER VARYING(64) NOT NULL,
+	analysis_id BIGINT NOT NULL,
+	created_at TIMESTAMP(6),
+	CONSTRAINT uk_analysis_cache_user_hash UNIQUE (user_id, log_hash)
+);
+
+CREATE TABLE shared_analysis_result (
+	id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+	content_hash CHARACTER VARYING(64) NOT NULL,
+	tldr CHARACTER VARYING(1000000),
+	result_cbor BINARY VARYING(65535),
+	top_causes CHARACTER VARYING(1000000),
+	verification_steps CHARACTER VARYING(1000000),
+	suggested_fixes CHARACTER VARYING(1000000),
+	need_more_info CHARACTER VARYING(1000000),
+	created_at TIMESTAMP(6),
+	CONSTRAINT uk_shared_analysis_result_hash UNIQUE (content_hash)
+);
+
+CREATE TABLE usage_daily (
+	id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+	user_id BIGINT NOT NULL,
+	date DATE NOT NULL,
+	count INTEGER NOT NULL,
+	CONSTRAINT uk_usage_daily_user_date UNIQUE (user_id, date)
+);
@@ -0,0 +1,2 @@
+-- 日志指纹：异常类链 + 前几个栈帧归一化后的 SHA-256（见 LogFingerprinter），旧记录为空
+ALTER TABLE log_analysis ADD COLUMN fingerprint CHARACTER VARYING(64);
@@ -0,0 +1,89 @@
+package com.example.demo.config;
+
+import com.example.demo.model.User;
+import com.example.demo.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * /api/** 只接受 HTTP Basic：浏览器的登录会话不能用来调用接口（跨站页面无法借用会话 Cookie）；
+ * 未配置抓取账号时 /actuator/prometheus 对所有人关闭
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class ApiSecurityTests {
+
+	private static final String EMAIL = "api-security@example.com";
+
+	private static final String PASSWORD = "api-password";
+
+	private static final String JOB = "{\"rawLog\": \"java.lang.NullPointerException\", \"logType\": \"JAVA\"}";
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private UserService userService;
+
+	/** 已登录的浏览器会话 */
+	private MockHttpSession loggedInSession() {
+		User user = userService.findByEmail(EMAIL).orElseGet(() -> userService.register(EMAIL, PASSWORD));
+		UserPrincipal principal = new UserPrincipal(user);
+		MockHttpSession session = new MockHttpSession();
+		session.setAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY,
+				new SecurityContextImpl(new UsernamePasswordAuthenticationToken(principal, null,
+						principal.getAuthorities())));
+		return session;
+	}
+
+	@Test
+	void sessionCookieIsNotAcceptedForApi() throws Exception {
+		MockHttpSession session = loggedInSession();
+
+		mockMvc.perform(post("/api/jobs").session(session).contentType(MediaType.APPLICATION_JSON).content(JOB))
+				.andExpect(status().isUnauthorized());
+		mockMvc.perform(get("/api/jobs/none").session(session))
+				.andExpect(status().isUnauthorized());
+		// 页面仍然使用登录会话
+		mockMvc.perform(get("/settings").session(session))
+				.andExpect(status().isOk());
+	}
+
+	@Test
+	void basicCredentialsAreAcceptedWithoutCsrfToken() throws Exception {
+		loggedInSession();
+		String basic = Base64.getEncoder().encodeToString((EMAIL + ":" + PASSWORD).getBytes(StandardCharsets.UTF_8));
+
+		mockMvc.perform(post("/api/jobs").header(HttpHeaders.AUTHORIZATION, "Basic " + basic)
+						.contentType(MediaType.APPLICATION_JSON).content(JOB))
+				.andExpect(status().isAccepted());
+	}
+
+	@Test
+	void prometheusIsClosedWithoutScrapeCredentials() throws Exception {
+		loggedInSession();
+		String basic = Base64.getEncoder().encodeToString((EMAIL + ":" + PASSWORD).getBytes(StandardCharsets.UTF_8));
+
+		// 未配置抓取账号：普通用户也不能读取指标
+		mockMvc.perform(get("/actuator/prometheus").header(HttpHeaders.AUTHORIZATION, "Basic " + basic))
+				.andExpect(status().isForbidden());
+		mockMvc.perform(get("/actuator/health"))
+				.andExpect(status().isOk());
+	}
+}
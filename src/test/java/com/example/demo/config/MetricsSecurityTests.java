@@ -0,0 +1,56 @@
+package com.example.demo.config;
+
+import com.example.demo.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * /actuator/prometheus 只接受专用的抓取账号；自助注册的用户不能读取指标，health 公开
+ */
+@SpringBootTest(properties = { "logsage.metrics.username=scraper", "logsage.metrics.password=scrape-secret" })
+@AutoConfigureMockMvc
+class MetricsSecurityTests {
+
+	private static final String EMAIL = "metrics-user@example.com";
+
+	private static final String PASSWORD = "metrics-password";
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private UserService userService;
+
+	private static String basic(String username, String password) {
+		return "Basic " + Base64.getEncoder()
+				.encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void onlyScrapeAccountReadsMetrics() throws Exception {
+		userService.findByEmail(EMAIL).orElseGet(() -> userService.register(EMAIL, PASSWORD));
+
+		mockMvc.perform(get("/actuator/health"))
+				.andExpect(status().isOk());
+		mockMvc.perform(get("/actuator/prometheus"))
+				.andExpect(status().isUnauthorized());
+		// 注册用户的账号在这里不是有效凭据
+		mockMvc.perform(get("/actuator/prometheus").header(HttpHeaders.AUTHORIZATION, basic(EMAIL, PASSWORD)))
+				.andExpect(status().isUnauthorized());
+		mockMvc.perform(get("/actuator/prometheus").header(HttpHeaders.AUTHORIZATION, basic("scraper", "wrong")))
+				.andExpect(status().isUnauthorized());
+		mockMvc.perform(get("/actuator/prometheus")
+						.header(HttpHeaders.AUTHORIZATION, basic("scraper", "scrape-secret")))
+				.andExpect(status().isOk());
+	}
+}
@@ -0,0 +1,57 @@
+package com.example.demo.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Flyway 迁移后的表结构：实体校验通过（上下文能启动），热点查询都走索引
+ */
+@SpringBootTest
+class QueryPlanCheckTests {
+
+	@Autowired
+	private QueryPlanCheck queryPlanCheck;
+
+	@Test
+	void hotQueriesUseIndexes() {
+		Map<String, String> plans = queryPlanCheck.explainAll();
+		assertEquals(queryPlanCheck.queries().keySet(), plans.keySet());
+		plans.forEach((name, plan) -> assertFalse(QueryPlanCheck.isFullScan(plan), name + ":\n" + plan));
+	}
+
+	@Test
+	void historyQueriesUseCompositeIndexes() {
+		Map<String, String> plans = queryPlanCheck.explainAll();
+		assertEquals(Set.of("IDX_LOG_ANALYSIS_USER_CREATED"), indexesUsed(plans.get("history")));
+		assertEquals(Set.of("IDX_LOG_ANALYSIS_USER_CATEGORY_CREATED"), indexesUsed(plans.get("historyByCategory")));
+	}
+
+	@Test
+	void plansComeFromRepositorySql() {
+		// Hibernate 生成的语句带未绑定的参数，说明检查的是仓库查询本身而不是手写的等价 SQL
+		Map<String, String> plans = queryPlanCheck.explainAll();
+		assertTrue(plans.get("history").contains("?"), plans.get("history"));
+		assertTrue(plans.get("userByEmail").contains("?"), plans.get("userByEmail"));
+	}
+
+	/** H2 计划中每张表的访问方式写在注释里：PUBLIC.索引名: 条件 */
+	private static Set<String> indexesUsed(String plan) {
+		Set<String> indexes = new TreeSet<>();
+		Matcher matcher = Pattern.compile("/\\* PUBLIC\\.(\\w+)").matcher(plan);
+		while (matcher.find()) {
+			indexes.add(matcher.group(1).toUpperCase());
+		}
+		return indexes;
+	}
+}
@@ -0,0 +1,50 @@
+package com.example.demo.config;
+
+import com.example.demo.model.User;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 会话中的登录用户：认证后清除密码，保存设置后原地更新默认选项
+ */
+class UserPrincipalTests {
+
+	private static User user() {
+		User user = new User("a@example.com", "{bcrypt}hash");
+		user.setId(7L);
+		return user;
+	}
+
+	@Test
+	void carriesIdAndDefaults() {
+		UserPrincipal principal = new UserPrincipal(user());
+		assertEquals(7L, principal.getId());
+		assertEquals("a@example.com", principal.getUsername());
+		assertEquals("JAVA", principal.getDefaultType());
+		assertEquals(true, principal.getDefaultSanitize());
+		assertEquals("FAST", principal.getDefaultDepth());
+		assertEquals("ROLE_USER", principal.getAuthorities().iterator().next().getAuthority());
+	}
+
+	@Test
+	void eraseCredentialsDropsPassword() {
+		UserPrincipal principal = new UserPrincipal(user());
+		principal.eraseCredentials();
+		assertNull(principal.getPassword());
+	}
+
+	@Test
+	void applySettingsUpdatesInPlace() {
+		UserPrincipal principal = new UserPrincipal(user());
+		User saved = user();
+		saved.setDefaultType("SPRING");
+		saved.setDefaultSanitize(false);
+		saved.setDefaultDepth("DEEP");
+		principal.applySettings(saved);
+		assertEquals("SPRING", principal.getDefaultType());
+		assertEquals(false, principal.getDefaultSanitize());
+		assertEquals("DEEP", principal.getDefaultDepth());
+	}
+}
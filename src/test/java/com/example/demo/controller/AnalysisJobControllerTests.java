@@ -0,0 +1,72 @@
+package com.example.demo.controller;
+
+import com.example.demo.service.AnalysisJobService;
+import com.example.demo.service.JobRejectedException;
+import com.example.demo.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doThrow;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * POST /api/jobs：输入不合法返回 400，只有队列已满或进行中的任务过多返回 429
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class AnalysisJobControllerTests {
+
+	private static final String EMAIL = "jobs-status@example.com";
+
+	private static final String PASSWORD = "jobs-password";
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private UserService userService;
+
+	@MockitoSpyBean
+	private AnalysisJobService analysisJobService;
+
+	private MockHttpServletRequestBuilder submit(String body) {
+		userService.findByEmail(EMAIL).orElseGet(() -> userService.register(EMAIL, PASSWORD));
+		String basic = Base64.getEncoder().encodeToString((EMAIL + ":" + PASSWORD).getBytes(StandardCharsets.UTF_8));
+		return post("/api/jobs").header(HttpHeaders.AUTHORIZATION, "Basic " + basic)
+				.contentType(MediaType.APPLICATION_JSON).content(body);
+	}
+
+	@Test
+	void invalidInputIs400AndOverloadIs429() throws Exception {
+		mockMvc.perform(submit("{\"rawLog\": \" \", \"logType\": \"JAVA\"}"))
+				.andExpect(status().isBadRequest());
+
+		String job = "{\"rawLog\": \"java.lang.NullPointerException\", \"logType\": \"JAVA\"}";
+		doThrow(new IllegalArgumentException("日志长度超过 8000 字符限制")).when(analysisJobService)
+				.submit(anyLong(), any(), any(), anyBoolean(), anyBoolean(), any(), any());
+		mockMvc.perform(submit(job))
+				.andExpect(status().isBadRequest())
+				.andExpect(jsonPath("$.error").value("日志长度超过 8000 字符限制"));
+
+		doThrow(new JobRejectedException("分析队列已满，请稍后重试")).when(analysisJobService)
+				.submit(anyLong(), any(), any(), anyBoolean(), anyBoolean(), any(), any());
+		mockMvc.perform(submit(job))
+				.andExpect(status().isTooManyRequests())
+				.andExpect(jsonPath("$.error").value("分析队列已满，请稍后重试"));
+	}
+}
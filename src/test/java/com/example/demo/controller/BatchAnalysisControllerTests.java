@@ -0,0 +1,127 @@
+package com.example.demo.controller;
+
+import com.example.demo.service.AiClient;
+import com.example.demo.service.DailyQuota;
+import com.example.demo.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doThrow;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * /api/batch：JSON 数组与 NDJSON 两种请求体，额度不足返回 429，其他失败返回 500
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class BatchAnalysisControllerTests {
+
+	private static final String PASSWORD = "batch-password";
+
+	private static final String NPE = "java.lang.NullPointerException\\n\\tat com.example.A.run(A.java:1)";
+
+	private static final String SQL = "java.sql.SQLException: Table not found\\n\\tat com.example.B.run(B.java:2)";
+
+	private static final String IO = "java.io.IOException: Broken pipe\\n\\tat com.example.C.run(C.java:3)";
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private UserService userService;
+
+	@Autowired
+	private DailyQuota dailyQuota;
+
+	@MockitoSpyBean
+	private AiClient aiClient;
+
+	/** 注册用户并返回其 Basic 认证头 */
+	private String basic(String email) {
+		userService.findByEmail(email).orElseGet(() -> userService.register(email, PASSWORD));
+		return "Basic " + Base64.getEncoder().encodeToString((email + ":" + PASSWORD).getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String item(String log) {
+		return "{\"rawLog\": \"" + log + "\", \"logType\": \"JAVA\"}";
+	}
+
+	private MockHttpServletRequestBuilder batch(String email, MediaType type, String body) {
+		return post("/api/batch").header(HttpHeaders.AUTHORIZATION, basic(email)).contentType(type).content(body);
+	}
+
+	@Test
+	void jsonArrayAndNdjsonGiveSameItemsInOrder() throws Exception {
+		mockMvc.perform(batch("batch-json@example.com", MediaType.APPLICATION_JSON,
+						"[" + item(NPE) + ", {\"logType\": \"JAVA\"}, " + item(SQL) + "]"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.analyzed").value(2))
+				.andExpect(jsonPath("$.failed").value(1))
+				.andExpect(jsonPath("$.items[0].index").value(0))
+				.andExpect(jsonPath("$.items[0].report.title").value(containsString("NullPointerException")))
+				.andExpect(jsonPath("$.items[1].status").value("ERROR"))
+				.andExpect(jsonPath("$.items[2].report.title").value(containsString("SQLException")));
+
+		mockMvc.perform(batch("batch-ndjson@example.com", MediaType.APPLICATION_NDJSON,
+						item(NPE) + "\n{\"logType\": \"JAVA\"}\n" + item(SQL) + "\n"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.analyzed").value(2))
+				.andExpect(jsonPath("$.failed").value(1))
+				.andExpect(jsonPath("$.items[0].report.title").value(containsString("NullPointerException")))
+				.andExpect(jsonPath("$.items[1].status").value("ERROR"))
+				.andExpect(jsonPath("$.items[2].report.title").value(containsString("SQLException")));
+	}
+
+	@Test
+	void malformedNdjsonLineIsRejected() throws Exception {
+		mockMvc.perform(batch("batch-ndjson-bad@example.com", MediaType.APPLICATION_NDJSON,
+						item(NPE) + "\n{not json}\n"))
+				.andExpect(status().isBadRequest())
+				.andExpect(jsonPath("$.error").value(containsString("第 2 行")));
+	}
+
+	@Test
+	void quotaExceededIs429AndOtherFailuresAre500() throws Exception {
+		String email = "batch-quota@example.com";
+		String auth = basic(email);
+		Long userId = userService.findByEmail(email).orElseThrow().getId();
+		dailyQuota.tryConsume(userId, dailyQuota.getLimit() - 1);
+		mockMvc.perform(batch(email, MediaType.APPLICATION_JSON, "[" + item(NPE) + ", " + item(SQL) + "]"))
+				.andExpect(status().isTooManyRequests());
+
+		doThrow(new RuntimeException("AI 服务暂时不可用")).when(aiClient).analyzeLog(
+				argThat(log -> log != null && log.contains("Table not found")), any(), any(), any(), anyBoolean(),
+				any(), any());
+		mockMvc.perform(post("/api/batch").header(HttpHeaders.AUTHORIZATION, auth)
+						.contentType(MediaType.APPLICATION_JSON).content("[" + item(SQL) + "]"))
+				.andExpect(status().isInternalServerError())
+				.andExpect(jsonPath("$.error").value("批量分析失败，请稍后重试"));
+
+		// 内部异常信息不返回给调用方
+		doThrow(new DataIntegrityViolationException("Unique index or primary key violation: UK_ANALYSIS_CACHE"))
+				.when(aiClient).analyzeLog(argThat(log -> log != null && log.contains("Broken pipe")), any(), any(),
+						any(), anyBoolean(), any(), any());
+		mockMvc.perform(post("/api/batch").header(HttpHeaders.AUTHORIZATION, auth)
+						.contentType(MediaType.APPLICATION_JSON).content("[" + item(IO) + "]"))
+				.andExpect(status().isInternalServerError())
+				.andExpect(jsonPath("$.error").value(not(containsString("UK_ANALYSIS_CACHE"))));
+	}
+}
@@ -0,0 +1,136 @@
+package com.example.demo.controller;
+
+import com.example.demo.config.UserPrincipal;
+import com.example.demo.model.User;
+import com.example.demo.service.DailyQuota;
+import com.example.demo.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * /analyze/stream：部分结果按生成顺序推送，最后是 done；失败时只推送 error；流式结果同样可以保存为报告
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class LogAnalysisControllerTests {
+
+	private static final String PASSWORD = "stream-password";
+
+	private static final Pattern CSRF = Pattern.compile("name=\"_csrf\" value=\"([^\"]+)\"");
+
+	private static final Pattern EVENT = Pattern.compile("^event: (\\w+)$", Pattern.MULTILINE);
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private UserService userService;
+
+	@Autowired
+	private DailyQuota dailyQuota;
+
+	/** 已登录的浏览器会话 */
+	private MockHttpSession loggedInSession(User user) {
+		UserPrincipal principal = new UserPrincipal(user);
+		MockHttpSession session = new MockHttpSession();
+		session.setAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY,
+				new SecurityContextImpl(new UsernamePasswordAuthenticationToken(principal, null,
+						principal.getAuthorities())));
+		return session;
+	}
+
+	/** 按页面的方式提交：先打开分析页取得 CSRF 令牌，再读取整个事件流 */
+	private String stream(MockHttpSession session, String rawLog) throws Exception {
+		String page = mockMvc.perform(get("/analyze").session(session))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+		Matcher csrf = CSRF.matcher(page);
+		assertTrue(csrf.find());
+
+		MvcResult started = mockMvc.perform(post("/analyze/stream").session(session)
+						.param("_csrf", csrf.group(1))
+						.param("rawLog", rawLog)
+						.param("logType", "JAVA"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		return mockMvc.perform(asyncDispatch(started))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+	}
+
+	private static List<String> events(String body) {
+		List<String> events = new ArrayList<>();
+		Matcher matcher = EVENT.matcher(body);
+		while (matcher.find()) {
+			events.add(matcher.group(1));
+		}
+		return events;
+	}
+
+	@Test
+	void sectionsArriveBeforeDone() throws Exception {
+		User user = userService.findByEmail("stream-ok@example.com")
+				.orElseGet(() -> userService.register("stream-ok@example.com", PASSWORD));
+
+		String body = stream(loggedInSession(user),
+				"java.lang.NullPointerException\n\tat com.example.StreamA.run(StreamA.java:1)");
+
+		List<String> events = events(body);
+		assertEquals("done", events.get(events.size() - 1), body);
+		assertEquals(events.size() - 1, events.stream().filter("section"::equals).count(), body);
+		assertTrue(events.size() > 1, body);
+		assertTrue(body.contains("\"section\":\"tldr\""), body);
+	}
+
+	@Test
+	void streamedResultCanBeSavedAsReport() throws Exception {
+		User user = userService.findByEmail("stream-ok@example.com")
+				.orElseGet(() -> userService.register("stream-ok@example.com", PASSWORD));
+
+		String page = mockMvc.perform(get("/analyze").session(loggedInSession(user)))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+		// 流式结果区域带有同样的保存表单（含 CSRF 令牌），完成后由页面填入日志并显示
+		Matcher form = Pattern.compile("<form id=\"streamSaveForm\".*?</form>", Pattern.DOTALL).matcher(page);
+		assertTrue(form.find(), page);
+		assertTrue(CSRF.matcher(form.group()).find(), form.group());
+		assertTrue(form.group().contains("name=\"saveAsReport\" value=\"true\""), form.group());
+	}
+
+	@Test
+	void failureSendsErrorEvent() throws Exception {
+		User user = userService.findByEmail("stream-error@example.com")
+				.orElseGet(() -> userService.register("stream-error@example.com", PASSWORD));
+		dailyQuota.tryConsume(user.getId(), dailyQuota.getLimit() - dailyQuota.used(user.getId()));
+
+		String body = stream(loggedInSession(user),
+				"java.lang.NullPointerException\n\tat com.example.StreamB.run(StreamB.java:1)");
+
+		assertEquals(List.of("error"), events(body), body);
+		assertTrue(body.contains("今日分析次数已达上限"), body);
+		assertFalse(body.contains("event: done"), body);
+	}
+}
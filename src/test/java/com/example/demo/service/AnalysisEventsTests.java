@@ -0,0 +1,102 @@
+package com.example.demo.service;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 录制中每个分析请求提交一个 logsage.AnalysisRequest（来源、分类、缓存结果），各阶段与数据库查询各一个 logsage.AnalysisStage
+ */
+@SpringBootTest
+class AnalysisEventsTests {
+
+	private static final long USER_ID = 7007L;
+
+	private static final String LOG = "java.lang.NullPointerException: order is null\n"
+			+ "\tat com.example.JfrProbe.run(JfrProbe.java:7)\n";
+
+	@Autowired
+	private LogAnalysisService logAnalysisService;
+
+	private final List<RecordedEvent> requests = new CopyOnWriteArrayList<>();
+
+	private final List<RecordedEvent> stages = new CopyOnWriteArrayList<>();
+
+	/** 等到收到 count 个本用户的请求事件（阶段事件在同一线程上先于请求事件提交） */
+	private void awaitRequests(int count) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (requests.size() < count && System.nanoTime() < deadline) {
+			Thread.sleep(20);
+		}
+	}
+
+	@Test
+	void recordsOneRequestEventWithStages() throws Exception {
+		try (RecordingStream stream = new RecordingStream()) {
+			stream.enable("logsage.AnalysisRequest");
+			stream.enable("logsage.AnalysisStage");
+			stream.onEvent("logsage.AnalysisRequest", event -> {
+				if (event.getLong("userId") == USER_ID) {
+					requests.add(event);
+				}
+			});
+			stream.onEvent("logsage.AnalysisStage", event -> {
+				if (event.getLong("userId") == USER_ID) {
+					stages.add(event);
+				}
+			});
+			stream.startAsync();
+
+			logAnalysisService.analyzeLog(USER_ID, LOG, "JAVA", true, true, "FAST", null);
+			awaitRequests(1);
+
+			assertEquals(1, requests.size());
+			RecordedEvent request = requests.get(0);
+			assertEquals("text", request.getString("source"));
+			assertEquals("JAVA", request.getString("logType"));
+			assertEquals(LOG.length(), request.getLong("logSize"));
+			assertEquals("NPE", request.getString("category"));
+			assertEquals("miss", request.getString("cacheOutcome"));
+			assertTrue(request.getBoolean("succeeded"));
+			Set<String> stageNames = stages.stream().map(event -> event.getString("stage")).collect(Collectors.toSet());
+			assertTrue(stageNames.containsAll(Set.of("sanitize", "hash", "cache_lookup", "usage", "ai", "persist",
+					"rules", "db")), stageNames.toString());
+			assertTrue(queryNames().contains("AnalysisCacheRepository.findByUserIdAndLogHash"), queryNames().toString());
+
+			// 流式提交记为 stream；第二次命中进程内缓存
+			logAnalysisService.analyzeLog(USER_ID, LOG, "JAVA", true, true, "FAST", null, section -> {
+			});
+			awaitRequests(2);
+
+			assertEquals(2, requests.size());
+			assertEquals("stream", requests.get(1).getString("source"));
+			assertEquals("memory_hit", requests.get(1).getString("cacheOutcome"));
+
+			// 请求之外的查询（历史列表）也记录，用户 ID 取自查询参数
+			logAnalysisService.getHistory(USER_ID, null, null, null, 10);
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+			while (!queryNames().contains("LogAnalysisRepository.findHistoryPage") && System.nanoTime() < deadline) {
+				Thread.sleep(20);
+			}
+			assertTrue(queryNames().contains("LogAnalysisRepository.findHistoryPage"), queryNames().toString());
+		}
+	}
+
+	private Set<String> queryNames() {
+		return stages.stream()
+				.filter(event -> "db".equals(event.getString("stage")))
+				.map(event -> event.getString("detail"))
+				.collect(Collectors.toSet());
+	}
+}
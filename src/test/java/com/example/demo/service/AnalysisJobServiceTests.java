@@ -0,0 +1,135 @@
+package com.example.demo.service;
+
+import com.example.demo.model.AnalysisJob;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 每用户进行中任务上限：并发提交不会超过上限，任务结束或取消后释放名额
+ */
+class AnalysisJobServiceTests {
+
+	private static final int MAX_PER_USER = 3;
+
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	private AnalysisJobService service;
+
+	@BeforeEach
+	void setUp() {
+		LogAnalysisService logAnalysisService = mock(LogAnalysisService.class);
+		when(logAnalysisService.analyzeLog(anyLong(), any(), any(), anyBoolean(), anyBoolean(), any(), any()))
+				.thenAnswer(invocation -> {
+					// 分析一直进行到测试放行
+					release.await(10, TimeUnit.SECONDS);
+					return null;
+				});
+		service = new AnalysisJobService();
+		ReflectionTestUtils.setField(service, "logAnalysisService", logAnalysisService);
+		ReflectionTestUtils.setField(service, "analysisMetrics", mock(AnalysisMetrics.class));
+		ReflectionTestUtils.setField(service, "workers", 2);
+		ReflectionTestUtils.setField(service, "queueCapacity", 100);
+		ReflectionTestUtils.setField(service, "maxPerUser", MAX_PER_USER);
+		service.init();
+	}
+
+	@AfterEach
+	void tearDown() {
+		release.countDown();
+		service.shutdown();
+	}
+
+	private AnalysisJob submit(long userId) {
+		return service.submit(userId, "java.lang.NullPointerException", "JAVA", true, true, "FAST", null);
+	}
+
+	@Test
+	void concurrentSubmitsNeverExceedCap() throws Exception {
+		ExecutorService clients = Executors.newFixedThreadPool(16);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<Boolean>> results = new ArrayList<>();
+		for (int i = 0; i < 16; i++) {
+			results.add(clients.submit(() -> {
+				start.await();
+				try {
+					submit(1L);
+					return true;
+				} catch (JobRejectedException e) {
+					return false;
+				}
+			}));
+		}
+		start.countDown();
+		int accepted = 0;
+		for (Future<Boolean> result : results) {
+			if (result.get(10, TimeUnit.SECONDS)) {
+				accepted++;
+			}
+		}
+		clients.shutdown();
+
+		assertEquals(MAX_PER_USER, accepted);
+		// 其他用户不受影响
+		submit(2L);
+	}
+
+	@Test
+	void invalidInputIsNotRejectedAsOverload() {
+		assertThrows(IllegalArgumentException.class,
+				() -> service.submit(1L, " ", "JAVA", true, true, "FAST", null));
+		assertThrows(IllegalArgumentException.class,
+				() -> service.submit(1L, "x".repeat(LogAnalysisService.MAX_INPUT_CHARS + 1), "JAVA", true, true, "FAST",
+						null));
+		// 不占用名额
+		for (int i = 0; i < MAX_PER_USER; i++) {
+			submit(1L);
+		}
+	}
+
+	@Test
+	void cancelAndCompletionReleaseSlots() throws Exception {
+		List<AnalysisJob> jobs = new ArrayList<>();
+		for (int i = 0; i < MAX_PER_USER; i++) {
+			jobs.add(submit(1L));
+		}
+		assertThrows(JobRejectedException.class, () -> submit(1L));
+
+		// 取消（无论排队中还是执行中）立即释放名额，重复取消不会多释放
+		service.cancel(jobs.get(0).getId(), 1L);
+		service.cancel(jobs.get(0).getId(), 1L);
+		jobs.add(submit(1L));
+		assertThrows(JobRejectedException.class, () -> submit(1L));
+
+		// 其余任务完成后名额全部释放
+		release.countDown();
+		for (AnalysisJob job : jobs) {
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+			while (!job.isFinished() && System.nanoTime() < deadline) {
+				Thread.sleep(10);
+			}
+			assertTrue(job.isFinished(), job.getId());
+		}
+		for (int i = 0; i < MAX_PER_USER; i++) {
+			submit(1L);
+		}
+	}
+}
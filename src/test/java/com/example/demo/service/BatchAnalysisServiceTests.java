@@ -0,0 +1,137 @@
+package com.example.demo.service;
+
+import com.example.demo.model.AnalysisCache;
+import com.example.demo.repository.AnalysisCacheRepository;
+import com.example.demo.repository.LogAnalysisRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+
+/**
+ * 批量分析：结果顺序、批内去重、整批扣减与退还额度、与并发请求写入相同缓存键
+ */
+@SpringBootTest
+class BatchAnalysisServiceTests {
+
+	@Autowired
+	private BatchAnalysisService batchAnalysisService;
+
+	@Autowired
+	private LogAnalysisService logAnalysisService;
+
+	@Autowired
+	private LogAnalysisRepository logAnalysisRepository;
+
+	@Autowired
+	private DailyQuota dailyQuota;
+
+	@MockitoSpyBean
+	private AiClient aiClient;
+
+	@MockitoSpyBean
+	private AnalysisCacheRepository analysisCacheRepository;
+
+	private static final String NPE = "java.lang.NullPointerException\n\tat com.example.OrderService.load(OrderService.java:42)";
+
+	private static final String SQL = "java.sql.SQLException: Table not found\n\tat com.example.OrderDao.find(OrderDao.java:10)";
+
+	private static final String IO = "java.io.IOException: Broken pipe\n\tat com.example.Upload.write(Upload.java:7)";
+
+	private static BatchAnalysisService.Item item(String log) {
+		return new BatchAnalysisService.Item(log, "JAVA", true, true, "FAST", null);
+	}
+
+	private String cacheKey(String log) {
+		String sanitized = logAnalysisService.sanitizeLog(log);
+		LogParser parser = new LogParser();
+		return logAnalysisService.cacheKey(sanitized, logAnalysisService.fingerprint(sanitized),
+				parser.classify(parser.parse(sanitized), sanitized), "JAVA",
+				logAnalysisService.buildOptionsJson(true, true, "FAST"));
+	}
+
+	@Test
+	void resultsFollowInputOrderAndDuplicatesAreAnalyzedOnce() {
+		List<BatchAnalysisService.Item> items = List.of(item(NPE), item(SQL), item(NPE),
+				new BatchAnalysisService.Item("", "JAVA", null, null, null, null), item(IO));
+
+		BatchAnalysisService.BatchResult result = batchAnalysisService.analyze(8001L, items);
+
+		assertEquals(3, result.analyzed());
+		assertEquals(1, result.failed());
+		List<BatchAnalysisService.ItemResult> results = result.items();
+		for (int i = 0; i < items.size(); i++) {
+			assertEquals(i, results.get(i).index());
+		}
+		assertEquals(List.of("OK", "OK", "OK", "ERROR", "OK"),
+				results.stream().map(BatchAnalysisService.ItemResult::status).toList());
+		assertFalse(results.get(0).cached());
+		assertTrue(results.get(2).cached());
+		assertEquals(results.get(0).report().getId(), results.get(2).report().getId());
+		assertNotEquals(results.get(0).report().getId(), results.get(1).report().getId());
+		assertEquals(3, dailyQuota.used(8001L));
+	}
+
+	@Test
+	void insufficientQuotaRejectsWholeBatchWithoutConsuming() {
+		long userId = 8002L;
+		assertNotNull(dailyQuota.tryConsume(userId, dailyQuota.getLimit() - 2));
+		int used = dailyQuota.used(userId);
+
+		assertThrows(QuotaExceededException.class,
+				() -> batchAnalysisService.analyze(userId, List.of(item(NPE), item(SQL), item(IO))));
+		assertEquals(used, dailyQuota.used(userId));
+
+		// 批内重复只算一次：3 条中只有 2 条需要分析，刚好用完
+		BatchAnalysisService.BatchResult result = batchAnalysisService.analyze(userId,
+				List.of(item(NPE), item(SQL), item(NPE)));
+		assertEquals(2, result.analyzed());
+		assertEquals(dailyQuota.getLimit(), dailyQuota.used(userId));
+	}
+
+	@Test
+	void failedAnalysisReleasesConsumedQuota() {
+		long userId = 8003L;
+		doThrow(new RuntimeException("AI 服务暂时不可用")).when(aiClient).analyzeLog(
+				argThat(log -> log != null && log.contains("Broken pipe")), any(), any(), any(), anyBoolean(), any(),
+				any());
+
+		RuntimeException e = assertThrows(RuntimeException.class,
+				() -> batchAnalysisService.analyze(userId, List.of(item(NPE), item(IO))));
+		assertFalse(e instanceof QuotaExceededException);
+		assertEquals(0, dailyQuota.used(userId));
+		assertTrue(logAnalysisRepository.findByUserIdOrderByCreatedAtDesc(userId).isEmpty());
+	}
+
+	@Test
+	void concurrentCacheEntryOnlySkipsThatItem() {
+		long userId = 8004L;
+		// 另一个请求在本批检查之后为相同内容写入了缓存：让两次检查都看不到它
+		doReturn(List.of()).when(analysisCacheRepository).findByUserIdAndLogHashIn(eq(userId), any());
+		analysisCacheRepository.save(new AnalysisCache(userId, cacheKey(NPE), -1L));
+
+		BatchAnalysisService.BatchResult result = batchAnalysisService.analyze(userId, List.of(item(NPE), item(SQL)));
+
+		assertEquals(List.of("OK", "OK"), result.items().stream().map(BatchAnalysisService.ItemResult::status).toList());
+		assertEquals(2, logAnalysisRepository.findByUserIdOrderByCreatedAtDesc(userId).size());
+		assertEquals(-1L, analysisCacheRepository.findByUserIdAndLogHash(userId, cacheKey(NPE)).orElseThrow()
+				.getAnalysisId());
+		assertEquals(result.items().get(1).report().getId(),
+				analysisCacheRepository.findByUserIdAndLogHash(userId, cacheKey(SQL)).orElseThrow().getAnalysisId());
+	}
+}
@@ -0,0 +1,68 @@
+package com.example.demo.service;
+
+import com.example.demo.repository.UsageDailyRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 退还只作用于扣减时的那一个计数：跨过零点的退还不会让第二天多出一次
+ */
+class DailyQuotaTests {
+
+	private static final LocalDate DAY = LocalDate.of(2024, 1, 15);
+
+	private final AtomicReference<LocalDate> today = new AtomicReference<>(DAY);
+
+	private DailyQuota quota;
+
+	@BeforeEach
+	void setUp() {
+		UsageDailyRepository repository = mock(UsageDailyRepository.class);
+		when(repository.findByUserIdAndDate(anyLong(), any())).thenReturn(Optional.empty());
+		quota = new DailyQuota();
+		ReflectionTestUtils.setField(quota, "usageDailyRepository", repository);
+		ReflectionTestUtils.setField(quota, "analysisMetrics", mock(AnalysisMetrics.class));
+		ReflectionTestUtils.setField(quota, "dailyLimit", 2);
+		ReflectionTestUtils.setField(quota, "today", (Supplier<LocalDate>) today::get);
+	}
+
+	@Test
+	void releaseAfterMidnightRefundsTheOriginalDay() {
+		DailyQuota.Reservation reservation = quota.tryConsume(1L);
+		assertNotNull(reservation);
+		assertEquals(1, quota.used(1L));
+
+		today.set(DAY.plusDays(1));
+		reservation.release();
+		// 第二天不受影响，仍然只有上限次数
+		assertEquals(0, quota.used(1L));
+		assertNotNull(quota.tryConsume(1L, 2));
+		assertNull(quota.tryConsume(1L));
+
+		today.set(DAY);
+		assertEquals(0, quota.used(1L));
+	}
+
+	@Test
+	void repeatedReleaseOnlyRefundsOnce() {
+		DailyQuota.Reservation first = quota.tryConsume(1L);
+		assertNotNull(quota.tryConsume(1L));
+		first.release();
+		first.release();
+		assertEquals(1, quota.used(1L));
+	}
+}
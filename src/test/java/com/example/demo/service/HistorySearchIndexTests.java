@@ -0,0 +1,107 @@
+package com.example.demo.service;
+
+import com.example.demo.model.LogAnalysis;
+import com.example.demo.repository.IndexSourceRow;
+import com.example.demo.repository.LogAnalysisRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 倒排索引的匹配、交集、排序与用户隔离
+ */
+class HistorySearchIndexTests {
+
+	private final HistorySearchIndex index = new HistorySearchIndex();
+
+	private void add(long id, long userId, String title, String log, String category) {
+		LogAnalysis analysis = new LogAnalysis();
+		analysis.setId(id);
+		analysis.setUserId(userId);
+		analysis.setTitle(title);
+		analysis.setSanitizedLog(log);
+		analysis.setErrorCategory(category);
+		analysis.setCreatedAt(LocalDateTime.of(2024, 1, 1, 0, 0).plusMinutes(id));
+		index.index(analysis);
+	}
+
+	@Test
+	void matchesFragmentsInsideTokensAndIntersects() {
+		add(1, 1, "NullPointerException 分析", "java.lang.NullPointerException at Foo.bar", "NPE");
+		add(2, 1, "启动失败", "Web server failed to start. Port 8080 was already in use.", "PORT");
+		add(3, 1, "SQLException 分析", "java.sql.SQLException: Table not found, port 3306", "SQL");
+		add(4, 2, "NullPointerException 分析", "java.lang.NullPointerException", "NPE");
+
+		assertEquals(List.of(1L), index.search(1L, "nullpointer", null));
+		assertEquals(List.of(2L), index.search(1L, "Port 8080", null));
+		assertEquals(List.of(3L, 2L), index.search(1L, "port", null));
+		assertEquals(List.of(3L), index.search(1L, "port", "SQL"));
+		assertEquals(List.of(), index.search(1L, "timeout", null));
+		assertEquals(List.of(4L), index.search(2L, "NullPointer", null));
+	}
+
+	@Test
+	void ranksTitleMatchesFirstThenNewest() {
+		add(1, 1, "BeanCreationException 分析", "Error creating bean", "BEAN");
+		add(2, 1, "其他", "BeanCreationException once", "BEAN");
+		add(3, 1, "其他", "BeanCreationException again", "BEAN");
+
+		assertEquals(List.of(1L, 3L, 2L), index.search(1L, "beancreation", null));
+	}
+
+	@Test
+	void shortFragmentsMatchTokenPrefixes() {
+		add(1, 1, "连接失败", "db timeout on io thread", "CONFIG");
+		add(2, 1, "连接失败", "dbcp pool exhausted", "CONFIG");
+		add(3, 1, "其他", "java.io.IOException: Broken pipe", "CONFIG");
+
+		assertEquals(List.of(2L, 1L), index.search(1L, "db", null));
+		assertEquals(List.of(3L, 1L), index.search(1L, "io", null));
+		assertEquals(List.of(1L), index.search(1L, "db t", null));
+		assertEquals(List.of(), index.search(1L, "xy", null));
+	}
+
+	@Test
+	void tokensBeyondDictionaryLimitStillMatchWholeWord() {
+		ReflectionTestUtils.setField(index, "maxTerms", 3);
+		add(1, 1, "a", "alpha beta", "CONFIG");
+		add(2, 1, "a", "gamma delta", "CONFIG");
+
+		assertEquals(List.of(1L), index.search(1L, "lph", null));
+		assertEquals(List.of(2L), index.search(1L, "delta", null));
+		assertEquals(List.of(), index.search(1L, "elt", null));
+	}
+
+	@Test
+	void rebuildRetriesAfterFailureAndResumes() {
+		IndexSourceRow row = mock(IndexSourceRow.class);
+		when(row.getId()).thenReturn(1L);
+		when(row.getUserId()).thenReturn(1L);
+		when(row.getTitle()).thenReturn("SQLException 分析");
+		when(row.getSanitizedLog()).thenReturn("java.sql.SQLException");
+		when(row.getErrorCategory()).thenReturn("SQL");
+		LogAnalysisRepository repository = mock(LogAnalysisRepository.class);
+		when(repository.findIndexSource(eq(0L), any(Limit.class)))
+				.thenThrow(new RuntimeException("database unavailable"))
+				.thenReturn(List.of(row));
+		when(repository.findIndexSource(eq(1L), any(Limit.class))).thenReturn(List.of());
+		ReflectionTestUtils.setField(index, "logAnalysisRepository", repository);
+		ReflectionTestUtils.setField(index, "retryDelayMs", 1L);
+
+		index.rebuildWithRetry();
+
+		assertTrue(index.isReady());
+		assertEquals(List.of(1L), index.search(1L, "sqlexception", null));
+	}
+}
@@ -0,0 +1,150 @@
+package com.example.demo.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 对本地桩服务验证：结果解析、重试、总时限与熔断
+ */
+class HttpAiClientTests {
+
+	private static final String RESULT = """
+			{"tldr":"空指针","topCauses":[{"cause":"对象未初始化","confidence":0.9,"evidence":"NPE"}],
+			 "suggestedFixes":[{"fix":"添加空值检查","risk":"低"}],"needMoreInfo":"无","extra":1}
+			""";
+
+	private HttpServer server;
+
+	private final AtomicInteger requests = new AtomicInteger();
+
+	/** 第 n 次请求（从 1 开始）的处理方式 */
+	private volatile Handler handler = (n, exchange) -> respond(exchange, 200, RESULT);
+
+	private final AtomicReference<String> lastBody = new AtomicReference<>();
+
+	interface Handler {
+		void handle(int n, HttpExchange exchange) throws IOException;
+	}
+
+	@BeforeEach
+	void startServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.createContext("/analyze", exchange -> {
+			lastBody.set(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+			handler.handle(requests.incrementAndGet(), exchange);
+		});
+		server.start();
+	}
+
+	@AfterEach
+	void stopServer() {
+		server.stop(0);
+	}
+
+	private HttpAiClient client(long deadlineMs, int maxRetries, int failureThreshold) {
+		HttpAiClient client = new HttpAiClient();
+		ReflectionTestUtils.setField(client, "url", "http://127.0.0.1:" + server.getAddress().getPort() + "/analyze");
+		ReflectionTestUtils.setField(client, "apiKey", "");
+		ReflectionTestUtils.setField(client, "connectTimeoutMs", 1000L);
+		ReflectionTestUtils.setField(client, "deadlineMs", deadlineMs);
+		ReflectionTestUtils.setField(client, "maxConcurrent", 4);
+		ReflectionTestUtils.setField(client, "acquireTimeoutMs", 100L);
+		ReflectionTestUtils.setField(client, "maxRetries", maxRetries);
+		ReflectionTestUtils.setField(client, "retryBackoffMs", 10L);
+		ReflectionTestUtils.setField(client, "failureThreshold", failureThreshold);
+		ReflectionTestUtils.setField(client, "breakerOpenMs", 60_000L);
+		client.init();
+		return client;
+	}
+
+	private static AiClient.AnalysisResult analyze(HttpAiClient client) {
+		return client.analyzeLog("java.lang.NullPointerException", new LogClassifier().classify("NullPointerException"),
+				null, "JAVA", true, "FAST", null);
+	}
+
+	private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, bytes.length);
+		exchange.getResponseBody().write(bytes);
+		exchange.close();
+	}
+
+	@Test
+	void parsesResult() {
+		AiClient.AnalysisResult result = analyze(client(2000, 0, 5));
+		assertEquals("空指针", result.getTldr());
+		assertEquals("对象未初始化", result.getTopCauses().get(0).cause());
+		assertEquals("低", result.getSuggestedFixes().get(0).risk());
+		assertTrue(lastBody.get().contains("\"signals\":[\"NULL_POINTER\"]"), lastBody.get());
+	}
+
+	@Test
+	void retriesServerErrors() {
+		handler = (n, exchange) -> respond(exchange, n < 3 ? 503 : 200, n < 3 ? "{}" : RESULT);
+		assertEquals("空指针", analyze(client(2000, 2, 5)).getTldr());
+		assertEquals(3, requests.get());
+	}
+
+	@Test
+	void clientErrorsAreNotRetried() {
+		handler = (n, exchange) -> respond(exchange, 400, "{}");
+		HttpAiClient client = client(2000, 2, 1);
+		assertThrows(RuntimeException.class, () -> analyze(client));
+		assertEquals(1, requests.get());
+		assertEquals(CircuitBreaker.State.CLOSED, client.getCircuitState());
+	}
+
+	@Test
+	void malformedSuccessBodyIsNotRetried() {
+		handler = (n, exchange) -> respond(exchange, 200, "{\"tldr\": ");
+		RuntimeException e = assertThrows(RuntimeException.class, () -> analyze(client(2000, 2, 5)));
+		assertTrue(e.getMessage().contains("无法解析"), e.getMessage());
+		assertEquals(1, requests.get());
+	}
+
+	@Test
+	void deadlineBoundsSlowBackend() {
+		handler = (n, exchange) -> {
+			try {
+				Thread.sleep(3000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			respond(exchange, 200, RESULT);
+		};
+		HttpAiClient client = client(300, 2, 5);
+		long start = System.nanoTime();
+		assertThrows(RuntimeException.class, () -> analyze(client));
+		assertTrue(System.nanoTime() - start < 2_000_000_000L);
+	}
+
+	@Test
+	void breakerOpensAndFailsFast() {
+		handler = (n, exchange) -> respond(exchange, 503, "{}");
+		HttpAiClient client = client(2000, 0, 2);
+		assertThrows(RuntimeException.class, () -> analyze(client));
+		assertThrows(RuntimeException.class, () -> analyze(client));
+		assertEquals(CircuitBreaker.State.OPEN, client.getCircuitState());
+
+		RuntimeException e = assertThrows(RuntimeException.class, () -> analyze(client));
+		assertTrue(e.getMessage().contains("暂不可用"), e.getMessage());
+		assertEquals(2, requests.get());
+	}
+}
@@ -0,0 +1,306 @@
+package com.example.demo.service;
+
+import com.example.demo.model.AnalysisReport;
+import com.example.demo.model.HistoryPage;
+import com.example.demo.model.LogAnalysis;
+import com.example.demo.repository.LogAnalysisRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * 分析流程的端到端行为（H2 内存库，FakeAiClient）
+ */
+@SpringBootTest
+class LogAnalysisServiceTests {
+
+	@Autowired
+	private LogAnalysisService logAnalysisService;
+
+	@Autowired
+	private LogAnalysisRepository logAnalysisRepository;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Autowired
+	private DailyQuota dailyQuota;
+
+	@Autowired
+	private AiClient aiClient;
+
+	@Autowired
+	private HistorySearchIndex historySearchIndex;
+
+	private static final String LOG = """
+			java.lang.NullPointerException: Cannot invoke "String.length()" because "name" is null
+				at com.example.UserService.load(UserService.java:42)
+			connect 10.0.0.12:3306 user=ops@example.com
+			""";
+
+	private static InputStream upload(String text) {
+		return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void uploadStoresCompressedBodyAsBlob() throws Exception {
+		String log = LOG.repeat(2000);
+		AnalysisReport report = logAnalysisService.analyzeUpload(7001L, upload(log), "JAVA", true, true, "FAST",
+				"重启过服务");
+
+		String stored = transactionTemplate.execute(status -> {
+			LogAnalysis analysis = logAnalysisRepository.findById(report.getId()).orElseThrow();
+			try (InputStream in = new GZIPInputStream(analysis.getLogBodyGz().getBinaryStream())) {
+				return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+			} catch (IOException | SQLException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		String sanitized = logAnalysisService.sanitizeLog(log);
+		assertEquals(sanitized, stored);
+		LogAnalysis analysis = logAnalysisRepository.findById(report.getId()).orElseThrow();
+		assertEquals(sanitized.length(), analysis.getLogSize());
+		assertEquals("重启过服务", analysis.getTried());
+		assertTrue(analysis.getSanitizedLog().length() <= LogStreamProcessor.EXCERPT_LIMIT);
+	}
+
+	/** 同一故障：时间、线程名、行号不同 */
+	private static String timeout(String time, String thread, int line) {
+		return "2024-01-15 " + time + " ERROR [" + thread + "] c.e.OrderClient : call failed\n"
+				+ "java.net.SocketTimeoutException: Read timed out\n"
+				+ "\tat com.example.OrderClient.call(OrderClient.java:" + line + ")\n"
+				+ "\tat com.example.OrderService.place(OrderService.java:" + (line + 30) + ")\n";
+	}
+
+	@Test
+	void textAndUploadShareFingerprintCacheKey() throws Exception {
+		long userId = 7002L;
+		AnalysisReport first = logAnalysisService.analyzeLog(userId, timeout("10:30:45", "exec-1", 42), "JAVA", true,
+				true, "FAST", null);
+		AnalysisReport text = logAnalysisService.analyzeLog(userId, timeout("11:02:13", "exec-7", 57), "JAVA", true,
+				true, "FAST", null);
+		AnalysisReport upload = logAnalysisService.analyzeUpload(userId,
+				upload("INFO starting\n".repeat(1000) + timeout("12:00:01", "exec-3", 61)), "JAVA", true, true,
+				"FAST", null);
+
+		assertEquals(first.getId(), text.getId());
+		assertEquals(first.getId(), upload.getId());
+		assertEquals(1, dailyQuota.used(userId));
+
+		// 同类型异常、不同消息是不同的故障
+		AnalysisReport other = logAnalysisService.analyzeLog(userId,
+				timeout("10:30:45", "exec-1", 42).replace("Read timed out", "Connect timed out"), "JAVA", true, true,
+				"FAST", null);
+		assertNotEquals(first.getId(), other.getId());
+	}
+
+	@Test
+	void logsWithDifferentProfilesNeverShareCacheKey() {
+		String options = logAnalysisService.buildOptionsJson(true, true, "FAST");
+		String failure = "java.lang.IllegalStateException: pool exhausted\n\tat com.example.Pool.get(Pool.java:3)\n";
+		String[] logs = {
+				"Web server failed to start. Port 8080 was already in use.",
+				"Web server failed to start. Port 9090 was already in use.",
+				failure,
+				failure + "url=jdbc:h2:mem:orders\n",
+				failure + "check spring.datasource in application.properties\n",
+		};
+		LogParser parser = new LogParser();
+		for (String a : logs) {
+			for (String b : logs) {
+				LogProfile profileA = parser.classify(a);
+				LogProfile profileB = parser.classify(b);
+				if (!profileA.equals(profileB)) {
+					String keyA = logAnalysisService.cacheKey(a, logAnalysisService.fingerprint(a), profileA, "JAVA",
+							options);
+					String keyB = logAnalysisService.cacheKey(b, logAnalysisService.fingerprint(b), profileB, "JAVA",
+							options);
+					assertNotEquals(keyA, keyB, a + " / " + b);
+				}
+			}
+		}
+		// 指纹相同、画像不同：各自分析，分类不串用
+		assertEquals(logAnalysisService.fingerprint(logs[0]), logAnalysisService.fingerprint(logs[1]));
+		AnalysisReport port = logAnalysisService.analyzeLog(7008L, logs[0], "JAVA", true, true, "FAST", null);
+		AnalysisReport other = logAnalysisService.analyzeLog(7008L, logs[1], "JAVA", true, true, "FAST", null);
+		assertNotEquals(port.getId(), other.getId());
+		assertEquals("PORT", port.getErrorCategory());
+		assertEquals("CONFIG", other.getErrorCategory());
+	}
+
+	@Test
+	void unknownCacheKeyModeFailsFast() {
+		LogAnalysisService service = new LogAnalysisService();
+		ReflectionTestUtils.setField(service, "cacheKeyMode", "contents");
+		assertThrows(RuntimeException.class, service::checkCacheKeyMode);
+		ReflectionTestUtils.setField(service, "cacheKeyMode", "CONTENT");
+		assertDoesNotThrow(service::checkCacheKeyMode);
+	}
+
+	@Test
+	void textAnalysisParsesLogOnce() {
+		Object serviceParser = ReflectionTestUtils.getField(logAnalysisService, "logParser");
+		Object aiParser = ReflectionTestUtils.getField(aiClient, "logParser");
+		LogParser parser = spy(new LogParser());
+		LogParser unusedParser = spy(new LogParser());
+		ReflectionTestUtils.setField(logAnalysisService, "logParser", parser);
+		ReflectionTestUtils.setField(aiClient, "logParser", unusedParser);
+		try {
+			AnalysisReport report = logAnalysisService.analyzeLog(7003L, LOG, "JAVA", true, true, "FAST", "重启过服务");
+			assertEquals("NullPointerException 分析", report.getTitle());
+		} finally {
+			ReflectionTestUtils.setField(logAnalysisService, "logParser", serviceParser);
+			ReflectionTestUtils.setField(aiClient, "logParser", aiParser);
+		}
+		// 标题、分类与 AI 共用一次解析
+		verify(parser, times(1)).parse(any());
+		verify(unusedParser, never()).parse(any());
+	}
+
+	@Test
+	void aiCallRunsOutsideTransactionAndFailureReleasesQuota() {
+		long userId = 7004L;
+		AtomicBoolean inTransaction = new AtomicBoolean(true);
+		AtomicBoolean fail = new AtomicBoolean();
+		AiClient probe = (log, profile, rootCause, logType, generateActionList, depth, tried) -> {
+			inTransaction.set(TransactionSynchronizationManager.isActualTransactionActive());
+			if (fail.get()) {
+				throw new RuntimeException("AI 服务暂时不可用");
+			}
+			return aiClient.analyzeLog(log, profile, rootCause, logType, generateActionList, depth, tried);
+		};
+		ReflectionTestUtils.setField(logAnalysisService, "aiClient", probe);
+		try {
+			logAnalysisService.analyzeLog(userId, LOG, "JAVA", true, true, "FAST", null);
+			assertFalse(inTransaction.get());
+			assertEquals(1, dailyQuota.used(userId));
+
+			fail.set(true);
+			assertThrows(RuntimeException.class, () -> logAnalysisService.analyzeLog(userId, LOG, "JAVA", true, true,
+					"FAST", "清过缓存"));
+			assertEquals(1, dailyQuota.used(userId));
+		} finally {
+			ReflectionTestUtils.setField(logAnalysisService, "aiClient", aiClient);
+		}
+	}
+
+	@Test
+	void sameLogFromDifferentUsersCallsAiOnce() throws Exception {
+		String log = timeout("09:15:00", "exec-9", 77).replace("OrderClient", "PaymentClient");
+		AtomicInteger calls = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		AiClient probe = (sanitized, profile, rootCause, logType, generateActionList, depth, tried) -> {
+			calls.incrementAndGet();
+			try {
+				// 等第二个用户的请求加入后再返回
+				release.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return aiClient.analyzeLog(sanitized, profile, rootCause, logType, generateActionList, depth, tried);
+		};
+		ReflectionTestUtils.setField(logAnalysisService, "aiClient", probe);
+		ExecutorService clients = Executors.newFixedThreadPool(2);
+		try {
+			long coalesced = logAnalysisService.getCoalescedRequestCount();
+			Future<AnalysisReport> first = clients.submit(
+					() -> logAnalysisService.analyzeLog(7005L, log, "JAVA", true, true, "FAST", null));
+			Future<AnalysisReport> second = clients.submit(
+					() -> logAnalysisService.analyzeLog(7006L, log, "JAVA", true, true, "FAST", null));
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+			while (logAnalysisService.getCoalescedRequestCount() == coalesced && System.nanoTime() < deadline) {
+				Thread.sleep(10);
+			}
+			release.countDown();
+
+			AnalysisReport a = first.get(10, TimeUnit.SECONDS);
+			AnalysisReport b = second.get(10, TimeUnit.SECONDS);
+			assertEquals(1, calls.get());
+			// 各自保存自己的记录，只有调用 AI 的一方扣次数
+			assertNotEquals(a.getId(), b.getId());
+			assertEquals(Long.valueOf(7005L), logAnalysisRepository.findById(a.getId()).orElseThrow().getUserId());
+			assertEquals(Long.valueOf(7006L), logAnalysisRepository.findById(b.getId()).orElseThrow().getUserId());
+			assertEquals(1, dailyQuota.used(7005L) + dailyQuota.used(7006L));
+		} finally {
+			release.countDown();
+			clients.shutdown();
+			ReflectionTestUtils.setField(logAnalysisService, "aiClient", aiClient);
+		}
+	}
+
+	private static List<Object> ids(HistoryPage page) {
+		return page.items().stream().map(item -> item.get("id")).toList();
+	}
+
+	@Test
+	void historyCursorKeepsItsSource() throws Exception {
+		long userId = 7009L;
+		for (int i = 0; i < 3; i++) {
+			logAnalysisService.analyzeLog(userId, timeout("10:0" + i + ":00", "exec-1", 42)
+					.replace("OrderClient", "Cursor" + i + "Client"), "JAVA", true, true, "FAST", null);
+		}
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (!historySearchIndex.isReady() && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertTrue(historySearchIndex.isReady());
+
+		// 只有标点的搜索词不筛选
+		HistoryPage all = logAnalysisService.getHistory(userId, null, "ALL", null, 10);
+		assertEquals(3, all.items().size());
+		assertEquals(ids(all), ids(logAnalysisService.getHistory(userId, " .-: ", "ALL", null, 10)));
+
+		// 数据库游标：索引已就绪也继续走数据库，不会回到第一页
+		HistoryPage first = logAnalysisService.getHistory(userId, null, "ALL", null, 2);
+		assertTrue(first.nextCursor().startsWith("d."), first.nextCursor());
+		HistoryPage second = logAnalysisService.getHistory(userId, "timed", "ALL", first.nextCursor(), 2);
+		assertEquals(List.of(ids(all).get(2)), ids(second));
+
+		// 索引游标：索引未就绪时拒绝
+		HistoryPage ranked = logAnalysisService.getHistory(userId, "timed", "ALL", null, 2);
+		assertTrue(ranked.nextCursor().startsWith("i."), ranked.nextCursor());
+		ReflectionTestUtils.setField(historySearchIndex, "ready", false);
+		try {
+			assertThrows(RuntimeException.class,
+					() -> logAnalysisService.getHistory(userId, "timed", "ALL", ranked.nextCursor(), 2));
+		} finally {
+			ReflectionTestUtils.setField(historySearchIndex, "ready", true);
+		}
+		assertEquals(1, logAnalysisService.getHistory(userId, "timed", "ALL", ranked.nextCursor(), 2).items().size());
+
+		// 来源不符或格式不对
+		assertThrows(RuntimeException.class, () -> logAnalysisService.getHistory(userId, null, "ALL", "2", 2));
+		assertThrows(RuntimeException.class,
+				() -> logAnalysisService.getHistory(userId, null, "ALL", ranked.nextCursor(), 2));
+	}
+}
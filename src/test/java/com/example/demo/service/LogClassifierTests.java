@@ -0,0 +1,151 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * LogClassifier 必须与原先的 toLowerCase().contains 关键词判断一致
+ */
+class LogClassifierTests {
+
+	private final LogClassifier classifier = new LogClassifier();
+
+	private final LogAnalysisService service = new LogAnalysisService();
+
+	/** 原先 deriveErrorCategory 的关键词列表 */
+	private static String keywordCategory(String log) {
+		String lower = log.toLowerCase();
+		if (lower.contains("nullpointerexception")) {
+			return "NPE";
+		}
+		if (lower.contains("nosuchbeandefinitionexception") || lower.contains("required a bean")
+				|| lower.contains("beancreationexception")) {
+			return "BEAN";
+		}
+		if (lower.contains("bindexception") || lower.contains("address already in use")
+				|| lower.contains("port 8080")) {
+			return "PORT";
+		}
+		if (lower.contains("sqlexception") || lower.contains("sqlsyntaxerrorexception") || lower.contains("jdbc")) {
+			return "SQL";
+		}
+		return "CONFIG";
+	}
+
+	/** 原先 generateTitle 的关键词列表（不含取前 50 个字符的兜底） */
+	private static String keywordTitle(String log) {
+		String lower = log.toLowerCase();
+		if (lower.contains("nullpointerexception")) {
+			return "NullPointerException 分析";
+		} else if (lower.contains("beancreationexception")) {
+			return "Spring BeanCreationException 分析";
+		} else if (lower.contains("sqlexception")) {
+			return "SQLException 分析";
+		} else if (lower.contains("outofmemoryerror")) {
+			return "OutOfMemoryError 分析";
+		}
+		return null;
+	}
+
+	private static String profileTitle(LogProfile profile) {
+		if (profile.has(LogSignal.NULL_POINTER)) {
+			return "NullPointerException 分析";
+		} else if (profile.has(LogSignal.BEAN_CREATION)) {
+			return "Spring BeanCreationException 分析";
+		} else if (profile.has(LogSignal.SQL_EXCEPTION)) {
+			return "SQLException 分析";
+		} else if (profile.has(LogSignal.OUT_OF_MEMORY)) {
+			return "OutOfMemoryError 分析";
+		}
+		return null;
+	}
+
+	private void assertSameAsKeywords(String log) {
+		LogProfile profile = classifier.classify(log);
+		String lower = log.toLowerCase();
+		for (LogSignal signal : LogSignal.values()) {
+			assertEquals(lower.contains(signal.getKeyword()), profile.has(signal), signal + " in: " + log);
+		}
+		assertEquals(keywordCategory(log), service.deriveErrorCategory(profile), log);
+		assertEquals(keywordTitle(log), profileTitle(profile), log);
+	}
+
+	@Test
+	void matchesKeywordListsOnSamples() {
+		String[] cases = {
+				"",
+				"java.lang.NullPointerException: Cannot invoke \"String.length()\"",
+				"org.springframework.beans.factory.BeanCreationException: Error creating bean",
+				"NoSuchBeanDefinitionException: No qualifying bean; Field x required a bean of type",
+				"java.net.BindException: Address already in use",
+				"Web server failed to start. Port 8080 was already in use.",
+				"java.sql.SQLSyntaxErrorException: Table 'shop.order' doesn't exist (jdbc:mysql://db/shop)",
+				"java.lang.OutOfMemoryError: Java heap space",
+				"Failed to bind properties under 'server' in application.properties",
+				"Could not resolve placeholder 'db.url'",
+				"NULLPOINTEREXCEPTION sqlexceptio jdb port  8080",
+				"中文日志 NullPointer异常 SQLException中",
+				"sqlsqlexception jjdbc beanbeancreationexception",
+		};
+		for (String c : cases) {
+			assertSameAsKeywords(c);
+		}
+	}
+
+	@Test
+	void matchesKeywordListsOnRandomInput() {
+		// 关键词、关键词的前缀与后缀（制造部分匹配和失败链跳转）、随机大小写、非 ASCII 字符
+		String[] tokens = new String[LogSignal.values().length * 3 + 8];
+		int t = 0;
+		for (LogSignal signal : LogSignal.values()) {
+			String keyword = signal.getKeyword();
+			tokens[t++] = keyword;
+			tokens[t++] = keyword.substring(0, keyword.length() / 2);
+			tokens[t++] = keyword.substring(keyword.length() / 2);
+		}
+		String[] noise = { " ", "\n", "\tat ", ".", ":", "中", "é", "x" };
+		System.arraycopy(noise, 0, tokens, t, noise.length);
+
+		Random random = new Random(42);
+		for (int i = 0; i < 100_000; i++) {
+			StringBuilder sb = new StringBuilder();
+			int n = random.nextInt(12);
+			for (int j = 0; j < n; j++) {
+				for (char c : tokens[random.nextInt(tokens.length)].toCharArray()) {
+					sb.append(random.nextBoolean() ? Character.toUpperCase(c) : c);
+				}
+			}
+			assertSameAsKeywords(sb.toString());
+		}
+	}
+
+	@Test
+	void incrementalScanMatchesWholeScan() {
+		String log = "Caused by: org.springframework.beans.factory.BeanCreationException\n"
+				+ "Caused by: java.net.BindException: Address already in use";
+		for (int split = 0; split <= log.length(); split++) {
+			LogClassifier.Scanner scanner = classifier.newScanner();
+			scanner.feed(log, 0, split);
+			scanner.feed(log, split, log.length());
+			assertEquals(classifier.classify(log), scanner.profile(), "split at " + split);
+		}
+	}
+
+	@Test
+	void redactionDoesNotChangeTitleKeywords() {
+		// 标题按脱敏后日志的画像判断：脱敏只替换 IP、邮箱、密码值，不改变异常类名
+		String[] cases = {
+				"java.lang.NullPointerException at 10.0.0.12 for ops@example.com",
+				"BeanCreationException: password=s3cret pwd = x datasource 192.168.1.1",
+				"java.sql.SQLException: Access denied for user 'app'@'10.1.1.1' (using password: YES)",
+				"java.lang.OutOfMemoryError: Java heap space on host 172.16.0.5",
+		};
+		LogRedactor redactor = new LogRedactor();
+		for (String c : cases) {
+			assertEquals(keywordTitle(c), profileTitle(classifier.classify(redactor.redact(c))), c);
+		}
+	}
+}
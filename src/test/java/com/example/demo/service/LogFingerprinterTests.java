@@ -0,0 +1,73 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * 只差易变片段的同一故障指纹相同，不同故障指纹不同
+ */
+class LogFingerprinterTests {
+
+	private final LogFingerprinter fingerprinter = new LogFingerprinter();
+
+	private static String npe(String time, String thread, int line, String lambda) {
+		return "2024-01-15 " + time + " ERROR 12345 --- [" + thread + "] c.e.d.Foo : request failed\n"
+				+ "java.lang.NullPointerException: Cannot invoke \"String.length()\" because \"name\" is null\n"
+				+ "\tat com.example.demo.Foo.bar(Foo.java:" + line + ")\n"
+				+ "\tat com.example.demo.Foo$$Lambda/" + lambda + ".apply(Unknown Source)\n"
+				+ "\tat java.base/java.util.Optional.map(Optional.java:260)\n";
+	}
+
+	@Test
+	void ignoresVolatileTokens() {
+		assertEquals(fingerprinter.fingerprint(npe("10:30:45.123", "http-nio-8080-exec-1", 42, "0x0000000801234567")),
+				fingerprinter.fingerprint(npe("11:02:13.987", "http-nio-8080-exec-7", 57, "0x00000008019abcde")));
+	}
+
+	@Test
+	void keepsExceptionChainAndFrames() {
+		assertEquals("java.lang.NullPointerException: Cannot invoke \"String.length()\" because \"name\" is null\n"
+				+ "  at com.example.demo.Foo.bar\n"
+				+ "  at com.example.demo.Foo$$Lambda.apply\n"
+				+ "  at java.util.Optional.map\n",
+				fingerprinter.normalize(npe("10:30:45.123", "main", 42, "0x1")));
+	}
+
+	@Test
+	void differentFailuresDiffer() {
+		String other = npe("10:30:45.123", "main", 42, "0x1").replace("Foo.bar", "Foo.baz");
+		assertNotEquals(fingerprinter.fingerprint(npe("10:30:45.123", "main", 42, "0x1")),
+				fingerprinter.fingerprint(other));
+	}
+
+	@Test
+	void keepsNormalizedExceptionMessage() {
+		String missingTable = "java.sql.SQLSyntaxErrorException: Table 'shop.orders' doesn't exist\n"
+				+ "\tat com.example.OrderDao.find(OrderDao.java:10)\n";
+		String missingColumn = "java.sql.SQLSyntaxErrorException: Unknown column 'price' in 'field list'\n"
+				+ "\tat com.example.OrderDao.find(OrderDao.java:10)\n";
+		assertNotEquals(fingerprinter.fingerprint(missingTable), fingerprinter.fingerprint(missingColumn));
+
+		// 消息中的时间、编号等易变片段不影响指纹
+		assertEquals(
+				fingerprinter.fingerprint("java.lang.IllegalStateException: request 1234 timed out at 10:30:45 [exec-1]"),
+				fingerprinter.fingerprint("java.lang.IllegalStateException: request 98 timed out at 11:02:13 [exec-7]"));
+	}
+
+	@Test
+	void limitsFramesPerException() {
+		String log = "java.lang.IllegalStateException: x\n\tat a.B.c(B.java:1)\n\tat a.B.d(B.java:2)\n"
+				+ "Caused by: java.io.IOException: y\n\tat a.C.e(C.java:3)\n";
+		assertEquals("java.lang.IllegalStateException: x\n  at a.B.c\njava.io.IOException: y\n  at a.C.e\n",
+				new LogFingerprinter(1).normalize(log));
+	}
+
+	@Test
+	void stripsVolatileTokensWithoutStackTrace() {
+		assertEquals(
+				fingerprinter.fingerprint("2024-01-15 10:30:45 [main] Port 8080 was already in use, id=3f2a9c1e-1b2c-4d5e-8f90-a1b2c3d4e5f6"),
+				fingerprinter.fingerprint("2024-03-02 08:11:09 [restartedMain] Port 9090 was already in use, id=0a1b2c3d-4e5f-4a6b-8c7d-0e1f2a3b4c5d"));
+	}
+}
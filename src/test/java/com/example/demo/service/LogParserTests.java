@@ -0,0 +1,87 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 事件切分、异常链与根因
+ */
+class LogParserTests {
+
+	private final LogParser parser = new LogParser();
+
+	private static final String SPRING_LOG = """
+			2026-01-12 09:02:10.001  INFO 4410 --- [           main] c.e.shop.ShopApplication : Starting ShopApplication
+			2026-01-12 09:02:11.532 ERROR 4410 --- [           main] o.s.boot.SpringApplication : Application run failed
+			org.springframework.beans.factory.BeanCreationException: Error creating bean with name 'orderRepository'
+				at org.springframework.beans.factory.support.AbstractBeanFactory.getBean(AbstractBeanFactory.java:208)
+			Caused by: java.sql.SQLException: Access denied for user 'shop'
+				at com.mysql.cj.jdbc.exceptions.SQLError.createSQLException(SQLError.java:130)
+				at com.zaxxer.hikari.pool.HikariPool.checkFailFast(HikariPool.java:562)
+				... 21 common frames omitted
+			""";
+
+	@Test
+	void splitsEventsAndExceptionChain() {
+		List<LogParser.LogEvent> events = parser.parse(SPRING_LOG).events();
+		assertEquals(2, events.size());
+
+		LogParser.LogEvent failed = events.get(1);
+		assertTrue(failed.timestamp().contentEquals("2026-01-12 09:02:11.532"));
+		assertTrue(failed.level().contentEquals("ERROR"));
+		assertTrue(failed.logger().contentEquals("o.s.boot.SpringApplication"));
+		assertEquals("Application run failed", failed.message().toString());
+		assertEquals(2, failed.exceptions().size());
+		assertEquals(List.of("com.mysql.cj.jdbc.exceptions.SQLError.createSQLException",
+				"com.zaxxer.hikari.pool.HikariPool.checkFailFast"),
+				failed.exceptions().get(1).frames().stream().map(TextSlice::toString).toList());
+		assertFalse(events.get(0).hasException());
+	}
+
+	@Test
+	void rootCauseIsLastCausedBy() {
+		LogParser.ParsedLog parsed = parser.parse(SPRING_LOG);
+		LogParser.ExceptionInfo root = parsed.rootCause();
+		assertEquals("java.sql.SQLException", root.className().toString());
+		assertEquals("SQLException", root.simpleName().toString());
+		assertEquals("Access denied for user 'shop'", root.message().toString());
+		assertTrue(parser.rootCauseProfile(parsed).has(LogSignal.SQL_EXCEPTION));
+		assertFalse(parser.rootCauseProfile(parsed).has(LogSignal.BEAN_CREATION));
+	}
+
+	@Test
+	void slicesPointIntoInput() {
+		LogParser.ExceptionInfo root = parser.parse(SPRING_LOG).rootCause();
+		assertEquals(SPRING_LOG.indexOf("java.sql.SQLException"), root.className().start());
+		assertEquals(root.className().toString(),
+				SPRING_LOG.substring(root.className().start(), root.className().end()));
+	}
+
+	@Test
+	void suppressedIsNotRootCause() {
+		String log = """
+				java.lang.IllegalStateException: close failed
+					at a.B.close(B.java:1)
+					Suppressed: java.io.IOException: stream closed
+						at a.C.flush(C.java:2)
+				""";
+		assertEquals("java.lang.IllegalStateException", parser.parse(log).rootCause().className().toString());
+	}
+
+	@Test
+	void logbackFormatAndPlainText() {
+		LogParser.LogEvent event = parser.parse("10:30:45.123 [main] WARN c.e.Foo - slow query").events().get(0);
+		assertTrue(event.level().contentEquals("WARN"));
+		assertTrue(event.logger().contentEquals("c.e.Foo"));
+		assertEquals("slow query", event.message().toString());
+
+		assertNull(parser.parse("Web server failed to start. Port 8080 was already in use.").rootCause());
+		assertTrue(parser.classify("Web server failed to start. Port 8080 was already in use.").has(LogSignal.PORT_8080));
+	}
+}
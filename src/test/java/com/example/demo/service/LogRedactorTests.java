@@ -0,0 +1,64 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * LogRedactor 必须与原先的 replaceAll 链逐字符一致
+ */
+class LogRedactorTests {
+
+	private final LogRedactor redactor = new LogRedactor();
+
+	private static String chainedReplaceAll(String rawLog) {
+		return rawLog
+				.replaceAll("\\b\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}\\b", "[IP]")
+				.replaceAll("\\b[A-Za-z0-9._%+-]+@[A-Za-z0-9.-]+\\.[A-Z|a-z]{2,}\\b", "[EMAIL]")
+				.replaceAll("password\\s*=\\s*[^\\s]+", "password=[HIDDEN]")
+				.replaceAll("pwd\\s*=\\s*[^\\s]+", "pwd=[HIDDEN]");
+	}
+
+	@Test
+	void redactsKnownPatterns() {
+		assertEquals("connect [IP]:3306 user=[EMAIL] password=[HIDDEN] pwd=[HIDDEN]",
+				redactor.redact("connect 10.0.0.12:3306 user=ops@example.com password = s3cret pwd=x"));
+	}
+
+	@Test
+	void followsChainedReplacementSemantics() {
+		String[] cases = {
+				"a.1.2.3.4@x.com",
+				"1.2.3.4.a@y.com",
+				"a@1.2.3.4.com",
+				"a@b.c|1.2.3.4",
+				"a@b.password =x",
+				"pwd=password = x",
+				"pwd=password=x",
+				"1234.1.1.1",
+				"x@y.com.x@y.com",
+				"1.2.3.4中 1.2.3.4́",
+		};
+		for (String c : cases) {
+			assertEquals(chainedReplaceAll(c), redactor.redact(c), c);
+		}
+	}
+
+	@Test
+	void matchesChainedReplaceAllOnRandomInput() {
+		String[] tokens = { "1", "12", "123", "1234", ".", "@", "a", "x", "com", "Z", "|", "_", "%", "+", "-",
+				"password", "pwd", "=", " ", "\n", "\t", "中", "́", "[", "]", "1.2.3.4", "a@b.com", "p" };
+		Random random = new Random(42);
+		for (int i = 0; i < 200_000; i++) {
+			StringBuilder sb = new StringBuilder();
+			int n = random.nextInt(24);
+			for (int j = 0; j < n; j++) {
+				sb.append(tokens[random.nextInt(tokens.length)]);
+			}
+			String input = sb.toString();
+			assertEquals(chainedReplaceAll(input), redactor.redact(input), input);
+		}
+	}
+}
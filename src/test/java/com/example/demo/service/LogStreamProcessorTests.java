@@ -0,0 +1,93 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 逐块处理的结果必须与整段脱敏、分类、计算哈希一致
+ */
+class LogStreamProcessorTests {
+
+	private final LogStreamProcessor processor = new LogStreamProcessor();
+
+	private final LogAnalysisService service = new LogAnalysisService();
+
+	private static final String LOG = """
+			2024-01-01 10:00:00 ERROR 1 --- [main] o.s.boot.SpringApplication : Application run failed
+			java.lang.NullPointerException: Cannot invoke "String.length()" because "name" is null
+				at com.example.UserService.load(UserService.java:42)
+				at com.example.UserController.get(UserController.java:17)
+			connect 10.0.0.12:3306 user=ops@example.com password
+			= s3cret pwd =
+			x
+			java.lang.NullPointerException: Cannot invoke "String.length()" because "name" is null
+				at com.example.UserService.load(UserService.java:42)
+			""";
+
+	@Test
+	void chunkedProcessingMatchesWholeText() throws IOException {
+		String log = LOG.repeat(50);
+		String sanitized = service.sanitizeLog(log);
+
+		try (LogStreamProcessor.Result result = processor.process(trickle(log, 7), true, "|JAVA|{}")) {
+			assertEquals(sanitized, gunzip(result));
+			assertEquals(Files.size(result.compressedBody()), result.compressedSize());
+			assertEquals(service.calculateLogHash(sanitized, "JAVA", "{}"), result.contentHash());
+			assertEquals(new LogClassifier().classify(sanitized), result.profile());
+			assertEquals(sanitized.length(), result.totalChars());
+		}
+	}
+
+	@Test
+	void closeDeletesCompressedBody() throws IOException {
+		Path body;
+		try (LogStreamProcessor.Result result = processor.process(trickle(LOG, 64), true, "")) {
+			body = result.compressedBody();
+			assertTrue(Files.exists(body));
+		}
+		assertFalse(Files.exists(body));
+	}
+
+	@Test
+	void excerptKeepsEachExceptionBlockOnce() throws IOException {
+		String log = LOG.repeat(50);
+
+		String excerpt;
+		try (LogStreamProcessor.Result result = processor.process(trickle(log, 4096), true, "")) {
+			excerpt = result.excerpt();
+		}
+
+		assertTrue(excerpt.length() <= LogStreamProcessor.EXCERPT_LIMIT);
+		assertTrue(excerpt.contains("NullPointerException"));
+		assertTrue(excerpt.contains("at com.example.UserService.load"));
+		assertEquals(excerpt.indexOf("NullPointerException"), excerpt.lastIndexOf("NullPointerException"));
+		assertFalse(excerpt.contains("s3cret"));
+	}
+
+	/** 每次最多返回 step 个字节，模拟网络分片 */
+	private static InputStream trickle(String text, int step) {
+		return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)) {
+			@Override
+			public synchronized int read(byte[] b, int off, int len) {
+				return super.read(b, off, Math.min(len, step));
+			}
+		};
+	}
+
+	private static String gunzip(LogStreamProcessor.Result result) throws IOException {
+		try (InputStream in = new GZIPInputStream(result.openCompressedBody())) {
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 规则编译、匹配、预编码与热加载
+ */
+class RuleKnowledgeBaseTests {
+
+	private final LogClassifier classifier = new LogClassifier();
+
+	private static final String ONE_RULE = """
+			{"rules":[{"name":"npe","signals":["NULL_POINTER"],"tldr":"空指针",
+			  "causes":[{"cause":"未初始化","confidence":0.9,"evidence":"NPE"}]}],
+			 "fallback":{"name":"generic","tldr":"{logType} 错误"}}
+			""";
+
+	private static final String TWO_RULES = """
+			{"rules":[{"name":"npe","signals":["NULL_POINTER"],"tldr":"空指针"},
+			          {"name":"sql","signals":["SQL_EXCEPTION"],"tldr":"SQL"}],
+			 "fallback":{"name":"generic","tldr":"{logType} 错误"}}
+			""";
+
+	@Test
+	void matchesFirstRuleWithSharedSignal() {
+		RuleSet rules = new RuleKnowledgeBase().current();
+		assertEquals("sql", rules.match(classifier.classify("java.sql.SQLSyntaxErrorException: bad")).getName());
+		assertEquals("null-pointer",
+				rules.match(classifier.classify("NullPointerException ... SQLException")).getName());
+		assertEquals("generic", rules.match(LogProfile.EMPTY).getName());
+		assertEquals("检测到 JAVA 相关错误，需要进一步分析日志详情。", rules.match(LogProfile.EMPTY).tldr("JAVA", null));
+		assertEquals("根因为 IllegalStateException，需要结合堆栈进一步分析。",
+				rules.match(LogProfile.EMPTY).tldr("JAVA", "IllegalStateException"));
+	}
+
+	@Test
+	void precomputedEncodingMatchesCodec() {
+		RuleSet.Rule rule = new RuleKnowledgeBase().current().match(classifier.classify("NullPointerException"));
+		assertEquals(rule.fixes("FAST").size() + 1, rule.fixes("DEEP").size());
+		assertArrayEquals(new AnalysisResultCodec().encode(rule.getCauses(), rule.getSteps(), rule.fixes("DEEP")),
+				rule.encoded("DEEP", true));
+		assertArrayEquals(new AnalysisResultCodec().encode(rule.getCauses(), null, rule.fixes("FAST")),
+				rule.encoded("FAST", false));
+	}
+
+	@Test
+	void fakeAiClientReusesRuleFragments() {
+		FakeAiClient client = new FakeAiClient();
+		AiClient.AnalysisResult first = client.analyzeLog("java.lang.NullPointerException", "JAVA", true, "FAST", null);
+		AiClient.AnalysisResult second = client.analyzeLog("java.lang.NullPointerException", "JAVA", true, "FAST", null);
+		assertSame(first.getTopCauses(), second.getTopCauses());
+		assertSame(first.getEncoded(), second.getEncoded());
+
+		AiClient.AnalysisResult tried = client.analyzeLog("java.lang.NullPointerException", "JAVA", true, "FAST",
+				"已经检查了异常堆栈");
+		assertNull(tried.getEncoded());
+	}
+
+	@Test
+	void reloadSwapsSnapshotAndKeepsOldOnError(@TempDir Path dir) throws IOException {
+		Path file = dir.resolve("rules.json");
+		Files.writeString(file, ONE_RULE);
+		RuleKnowledgeBase knowledgeBase = new RuleKnowledgeBase();
+		knowledgeBase.watch(file);
+		RuleSet before = knowledgeBase.current();
+		assertEquals(1, before.getRules().size());
+		assertFalse(knowledgeBase.reloadIfChanged());
+
+		write(file, TWO_RULES, 1);
+		assertTrue(knowledgeBase.reloadIfChanged());
+		assertEquals(2, knowledgeBase.current().getRules().size());
+		assertNotNull(before.match(classifier.classify("NullPointerException")));
+
+		write(file, "{\"rules\":[{\"name\":\"x\",\"signals\":[\"NO_SUCH_SIGNAL\"],\"tldr\":\"x\"}],"
+				+ "\"fallback\":{\"name\":\"g\",\"tldr\":\"g\"}}", 2);
+		assertFalse(knowledgeBase.reloadIfChanged());
+		assertEquals(2, knowledgeBase.current().getRules().size());
+	}
+
+	@Test
+	void invalidRuleFileFailsOnWatch(@TempDir Path dir) throws IOException {
+		Path file = dir.resolve("rules.json");
+		Files.writeString(file, "{\"rules\":[]}");
+		assertThrows(RuntimeException.class, () -> new RuleKnowledgeBase().watch(file));
+	}
+
+	private static void write(Path file, String content, int secondsLater) throws IOException {
+		FileTime previous = Files.getLastModifiedTime(file);
+		Files.writeString(file, content);
+		Files.setLastModifiedTime(file, FileTime.fromMillis(previous.toMillis() + secondsLater * 1000L));
+	}
+}
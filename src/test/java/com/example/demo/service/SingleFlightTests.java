@@ -0,0 +1,105 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 并发的相同 key 只执行一次，等待方得到同一结果或同一异常
+ */
+class SingleFlightTests {
+
+	private static final int CALLERS = 8;
+
+	@Test
+	void concurrentCallsShareOneExecution() throws Exception {
+		SingleFlight<String, Object> flight = new SingleFlight<>();
+		AtomicInteger executions = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(CALLERS);
+		try {
+			List<Future<Object>> results = new ArrayList<>();
+			for (int i = 0; i < CALLERS; i++) {
+				results.add(pool.submit(() -> flight.execute("k", () -> {
+					executions.incrementAndGet();
+					await(release);
+					return new Object();
+				})));
+			}
+			// 等所有调用方都进入等待后再放行执行方
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			while (flight.coalescedCount() < CALLERS - 1 && System.nanoTime() < deadline) {
+				Thread.sleep(5);
+			}
+			release.countDown();
+
+			Object first = results.get(0).get(5, TimeUnit.SECONDS);
+			for (Future<Object> result : results) {
+				assertSame(first, result.get(5, TimeUnit.SECONDS));
+			}
+			assertEquals(1, executions.get());
+			assertEquals(CALLERS - 1, flight.coalescedCount());
+			assertEquals(0, flight.inFlightCount());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	void waitersReceiveTheSameException() throws Exception {
+		SingleFlight<String, Object> flight = new SingleFlight<>();
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService pool = Executors.newSingleThreadExecutor();
+		try {
+			Future<?> leader = pool.submit(() -> flight.execute("k", () -> {
+				started.countDown();
+				await(release);
+				throw new RuntimeException("今日分析次数已达上限");
+			}));
+			assertTrue(started.await(5, TimeUnit.SECONDS));
+			// 当前线程成为等待方之后再放行执行方
+			Thread releaser = new Thread(() -> {
+				while (flight.coalescedCount() == 0) {
+					Thread.onSpinWait();
+				}
+				release.countDown();
+			});
+			releaser.start();
+			RuntimeException e = assertThrows(RuntimeException.class,
+					() -> flight.execute("k", Object::new));
+			assertEquals("今日分析次数已达上限", e.getMessage());
+			assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	void keyIsReleasedAfterCompletion() {
+		SingleFlight<String, Integer> flight = new SingleFlight<>();
+		assertEquals(1, flight.execute("k", () -> 1));
+		assertEquals(2, flight.execute("k", () -> 2));
+		assertEquals(0, flight.coalescedCount());
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package com.example.demo.service;
+
+import com.example.demo.model.SuggestedFix;
+import com.example.demo.model.VerificationStep;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * 索引过滤与逐条比较的判定一致
+ */
+class TriedIndexTests {
+
+	private static final List<String> TRIED = List.of(
+			"已经检查了异常堆栈",
+			"Restarted the service and checked CONFIG",
+			"mvn dependency:tree 看过了",
+			"netstat -ano | findstr :8080",
+			"在出错位置加了断点",
+			"前端页面偶尔白屏，刷新后恢复正常",
+			"abcd",
+			"   ");
+
+	@Test
+	void matchesPairwiseDefinition() {
+		RuleSet rules = new RuleKnowledgeBase().current();
+		List<RuleSet.Rule> all = new ArrayList<>(rules.getRules());
+		all.add(rules.match(LogProfile.EMPTY));
+		for (RuleSet.Rule rule : all) {
+			for (String tried : TRIED) {
+				long triedBits = rule.getTriedIndex().match(tried);
+				for (String depth : new String[] { "FAST", "DEEP" }) {
+					assertEquals(pairwiseSteps(rule.getSteps(), tried),
+							rule.getTriedIndex().filter(rule.getSteps(), triedBits), rule.getName() + " / " + tried);
+					assertEquals(pairwiseFixes(rule.fixes(depth), tried),
+							rule.getTriedIndex().filter(rule.fixes(depth), triedBits), rule.getName() + " / " + tried);
+				}
+			}
+		}
+	}
+
+	@Test
+	void keepsOriginalWhenEverythingWasTried() {
+		List<SuggestedFix> fixes = List.of(new SuggestedFix("重启服务", "低"), new SuggestedFix("检查配置", "低"));
+		TriedIndex index = new TriedIndex(List.of(), List.of(fixes));
+		assertSame(fixes, index.filter(fixes, index.match("重启过，也检查了配置")));
+		assertEquals(List.of(fixes.get(1)), index.filter(fixes, index.match("重启过了")));
+	}
+
+	private static List<VerificationStep> pairwiseSteps(List<VerificationStep> steps, String tried) {
+		if (tried.trim().isEmpty()) {
+			return steps;
+		}
+		String triedLower = tried.toLowerCase();
+		List<VerificationStep> filtered = new ArrayList<>();
+		for (VerificationStep step : steps) {
+			boolean isTried = (step.step() != null && TriedIndex.similar(step.step().toLowerCase(), triedLower))
+					|| (step.command() != null && TriedIndex.similar(step.command().toLowerCase(), triedLower));
+			if (!isTried) {
+				filtered.add(step);
+			}
+		}
+		return filtered.isEmpty() ? steps : filtered;
+	}
+
+	private static List<SuggestedFix> pairwiseFixes(List<SuggestedFix> fixes, String tried) {
+		if (tried.trim().isEmpty()) {
+			return fixes;
+		}
+		String triedLower = tried.toLowerCase();
+		List<SuggestedFix> filtered = new ArrayList<>();
+		for (SuggestedFix fix : fixes) {
+			if (fix.fix() == null || !TriedIndex.similar(fix.fix().toLowerCase(), triedLower)) {
+				filtered.add(fix);
+			}
+		}
+		return filtered.isEmpty() ? fixes : filtered;
+	}
+}